@@ -0,0 +1,141 @@
+package com.ichbingrumpig.pathfinder.benchmarks;
+
+import com.ichbingrumpig.pathfinder.core.GridPathfinder;
+import com.ichbingrumpig.pathfinder.core.OnPathComputedListener;
+import com.ichbingrumpig.pathfinder.core.PathSearch;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures single searches on the calling thread, the way a game server or the worker threads run them.
+ *
+ * {@link #search()} reports the throughput and, in sample mode, the latency percentiles.
+ * {@link #expandedNodes(Counters)} counts the nodes the engine expands, which does not depend
+ * on the machine and is the first number to compare when an engine changes.
+ * Run with the gc profiler (the default of the build) for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    /** The seed of all maps and queries, so every run measures the same searches */
+    private static final long SEED = 20171031L;
+
+    /** The number of different queries the benchmark cycles through */
+    private static final int QUERIES = 64;
+
+    /** The width and height of the board */
+    @Param({"64", "256", "1024", "2048"})
+    public int size;
+
+    /** One of the layouts of {@link BenchmarkMap} */
+    @Param({BenchmarkMap.OPEN, BenchmarkMap.MAZE, BenchmarkMap.RANDOM_10, BenchmarkMap.RANDOM_25,
+            BenchmarkMap.RANDOM_40, BenchmarkMap.TERRAIN})
+    public String layout;
+
+    /** One of the distances of {@link BenchmarkMap#queries(String, int, long)} */
+    @Param({BenchmarkMap.SHORT, BenchmarkMap.MEDIUM, BenchmarkMap.LONG})
+    public String distance;
+
+    /**
+     * One of the GridPathfinder.ENGINE_ constants. The parallel engine uses one thread per processor,
+     * so compare it on the big boards, where long queries are spread over the threads
+     */
+    @Param({"0", "1", "2", "3"})
+    public int engine;
+
+    /** The pathfinder under test */
+    private GridPathfinder pathfinder;
+
+    /** The queries as startX, startY, destX, destY, one after another */
+    private int[] queries;
+
+    /** The index of the next query */
+    private int next = 0;
+
+    /**
+     * Counts the expanded nodes per iteration.
+     * Divide {@link #expandedNodes} by {@link #searches} for the nodes per search.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        /** The number of finished searches */
+        public long searches;
+
+        /** The number of nodes all of these searches have expanded */
+        public long expandedNodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            searches = 0;
+            expandedNodes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkMap map = BenchmarkMap.generate(layout, size, SEED);
+        queries = map.queries(distance, QUERIES, SEED);
+        pathfinder = new GridPathfinder();
+        pathfinder.setEngine(engine);
+        pathfinder.setGrid(size, size, map);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pathfinder.shutdown();
+    }
+
+    @Benchmark
+    public int[] search() {
+        int q = nextQuery();
+        return pathfinder.findPathNow(queries[q], queries[q + 1], queries[q + 2], queries[q + 3]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public PathSearch expandedNodes(Counters counters) {
+        int q = nextQuery();
+        PathSearch search = pathfinder.startSearch(queries[q], queries[q + 1], queries[q + 2], queries[q + 3], IGNORE);
+        search.resume(0, 0);
+        counters.searches++;
+        counters.expandedNodes += search.getExpandedNodes();
+        return search;
+    }
+
+    /**
+     * @return The index of the next query in {@link #queries}
+     */
+    private int nextQuery() {
+        int q = next;
+        next = (next + 4) % queries.length;
+        return q;
+    }
+
+    /** Listener for searches whose path is not needed */
+    private static final OnPathComputedListener IGNORE = new OnPathComputedListener() {
+        @Override
+        public void onPathComputed(int[] path) {
+        }
+    };
+}
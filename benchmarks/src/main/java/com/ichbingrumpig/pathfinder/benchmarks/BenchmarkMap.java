@@ -0,0 +1,275 @@
+package com.ichbingrumpig.pathfinder.benchmarks;
+
+import com.ichbingrumpig.pathfinder.core.CellRules;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A square board for the benchmarks, generated from a seed so every run measures the same maps.
+ *
+ * Layouts:
+ * {@link #OPEN}: no blocked cells at all.
+ * {@link #MAZE}: a maze with corridors three cells wide and walls one cell thick.
+ * {@link #RANDOM_10}, {@link #RANDOM_25}, {@link #RANDOM_40}: 10, 25 or 40 percent of the cells blocked at random.
+ * {@link #TERRAIN}: open land with swamps (travelling factor 2), alien landing sites (factor 3)
+ * and towns (blocked), like the rules of the example game.
+ */
+public final class BenchmarkMap implements CellRules {
+
+    /** The layouts */
+    public static final String OPEN = "open", MAZE = "maze", RANDOM_10 = "random10", RANDOM_25 = "random25",
+            RANDOM_40 = "random40", TERRAIN = "terrain";
+
+    /** The distances between start and destination of the queries */
+    public static final String SHORT = "short", MEDIUM = "medium", LONG = "long";
+
+    /** The travelling factors of the terrain layout, as in the example game */
+    private static final float SWAMP_FACTOR = 2f, ALIEN_FACTOR = 3f;
+
+    /** The distance between two corridors of the maze */
+    private static final int MAZE_PITCH = 4;
+
+    /** The width and height of the board */
+    public final int size;
+
+    /** If a cell is blocked, indexed by y * size + x */
+    private final boolean[] blocked;
+
+    /** The travelling factor of every cell, indexed by y * size + x */
+    private final float[] factors;
+
+    /** The connected area of every free cell, -1 for blocked cells. Queries only connect cells of the same area */
+    private int[] areas;
+
+    private BenchmarkMap(int size) {
+        this.size = size;
+        blocked = new boolean[size * size];
+        factors = new float[size * size];
+        Arrays.fill(factors, 1f);
+    }
+
+    /**
+     * Generates a board.
+     *
+     * @param layout One of the layout constants
+     * @param size The width and height of the board
+     * @param seed The seed of the random generator. The same seed always gives the same board
+     * @return The board
+     */
+    public static BenchmarkMap generate(String layout, int size, long seed) {
+        BenchmarkMap map = new BenchmarkMap(size);
+        Random random = new Random(seed);
+        switch (layout) {
+            case OPEN:
+                break;
+            case MAZE:
+                map.carveMaze(random);
+                break;
+            case RANDOM_10:
+                map.blockRandomly(random, 0.10f);
+                break;
+            case RANDOM_25:
+                map.blockRandomly(random, 0.25f);
+                break;
+            case RANDOM_40:
+                map.blockRandomly(random, 0.40f);
+                break;
+            case TERRAIN:
+                map.placeTerrain(random);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown layout " + layout);
+        }
+        map.labelAreas();
+        return map;
+    }
+
+    @Override
+    public boolean isBlocked(int x, int y) {
+        return blocked[y * size + x];
+    }
+
+    @Override
+    public float getTravellingFactor(int x, int y) {
+        return factors[y * size + x];
+    }
+
+    /**
+     * Picks queries between free cells that are connected to each other.
+     * The distance is measured in the larger of the horizontal and vertical steps:
+     * {@link #SHORT} up to an eighth of the board, {@link #MEDIUM} a quarter to half of it
+     * and {@link #LONG} at least three quarters of it.
+     *
+     * @param distance One of {@link #SHORT}, {@link #MEDIUM} and {@link #LONG}
+     * @param count The number of queries
+     * @param seed The seed of the random generator. The same seed always gives the same queries
+     * @return The queries as startX, startY, destX, destY, one after another
+     */
+    public int[] queries(String distance, int count, long seed) {
+        int min, max;
+        switch (distance) {
+            case SHORT:
+                min = Math.max(size / 16, 2);
+                max = Math.max(size / 8, 4);
+                break;
+            case MEDIUM:
+                min = size / 4;
+                max = size / 2;
+                break;
+            case LONG:
+                min = size * 3 / 4;
+                max = size - 1;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown distance " + distance);
+        }
+        Random random = new Random(seed);
+        int[] queries = new int[count * 4];
+        for (int i = 0; i < count; i++) {
+            int attempts = 0;
+            while (true) {
+                if (++attempts > 1000000) throw new IllegalStateException("No " + distance + " queries on this board.");
+                int startX = random.nextInt(size), startY = random.nextInt(size);
+                int area = areas[startY * size + startX];
+                if (area < 0) continue;
+                // One axis covers the distance, the other one at most as much
+                int steps = min + random.nextInt(max - min + 1);
+                int other = random.nextInt(2 * steps + 1) - steps;
+                boolean horizontal = random.nextBoolean();
+                int sign = random.nextBoolean() ? 1 : -1;
+                int destX = startX + (horizontal ? sign * steps : other);
+                int destY = startY + (horizontal ? other : sign * steps);
+                if (destX < 0 || destY < 0 || destX >= size || destY >= size) continue;
+                if (areas[destY * size + destX] != area) continue;
+                queries[i * 4] = startX;
+                queries[i * 4 + 1] = startY;
+                queries[i * 4 + 2] = destX;
+                queries[i * 4 + 3] = destY;
+                break;
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Blocks cells at random.
+     * @param density The share of blocked cells
+     */
+    private void blockRandomly(Random random, float density) {
+        for (int n = 0; n < blocked.length; n++) {
+            blocked[n] = random.nextFloat() < density;
+        }
+    }
+
+    /**
+     * Carves a perfect maze, so every corridor is connected to every other one, with a depth-first search.
+     */
+    private void carveMaze(Random random) {
+        Arrays.fill(blocked, true);
+        final int cells = (size - 1) / MAZE_PITCH;
+        if (cells < 1) {
+            Arrays.fill(blocked, false);
+            return;
+        }
+        boolean[] visited = new boolean[cells * cells];
+        int[] stack = new int[cells * cells];
+        int[] candidates = new int[4];
+        int top = 0;
+        stack[top++] = 0;
+        visited[0] = true;
+        openRoom(0, 0);
+        while (top > 0) {
+            int cell = stack[top - 1];
+            int cx = cell % cells, cy = cell / cells;
+            int count = 0;
+            if (cx > 0 && !visited[cell - 1]) candidates[count++] = cell - 1;
+            if (cx < cells - 1 && !visited[cell + 1]) candidates[count++] = cell + 1;
+            if (cy > 0 && !visited[cell - cells]) candidates[count++] = cell - cells;
+            if (cy < cells - 1 && !visited[cell + cells]) candidates[count++] = cell + cells;
+            if (count == 0) {
+                top--;
+                continue;
+            }
+            int next = candidates[random.nextInt(count)];
+            int nx = next % cells, ny = next / cells;
+            visited[next] = true;
+            openRoom(nx, ny);
+            // Removes the wall between both rooms
+            int wallX = Math.max(cx, nx) * MAZE_PITCH, wallY = Math.max(cy, ny) * MAZE_PITCH;
+            for (int i = 1; i < MAZE_PITCH; i++) {
+                if (nx != cx) blocked[(cy * MAZE_PITCH + i) * size + wallX] = false;
+                else blocked[wallY * size + cx * MAZE_PITCH + i] = false;
+            }
+            stack[top++] = next;
+        }
+    }
+
+    /** Frees the inside of a room of the maze */
+    private void openRoom(int cx, int cy) {
+        for (int y = cy * MAZE_PITCH + 1; y < (cy + 1) * MAZE_PITCH; y++) {
+            for (int x = cx * MAZE_PITCH + 1; x < (cx + 1) * MAZE_PITCH; x++) {
+                blocked[y * size + x] = false;
+            }
+        }
+    }
+
+    /**
+     * Places round swamps and alien landing sites and square towns on open land.
+     */
+    private void placeTerrain(Random random) {
+        int patches = Math.max(size / 8, 4);
+        for (int i = 0; i < patches; i++) {
+            float factor = random.nextBoolean() ? SWAMP_FACTOR : ALIEN_FACTOR;
+            int radius = 2 + random.nextInt(Math.max(size / 16, 2));
+            int centerX = random.nextInt(size), centerY = random.nextInt(size);
+            for (int y = Math.max(centerY - radius, 0); y <= Math.min(centerY + radius, size - 1); y++) {
+                for (int x = Math.max(centerX - radius, 0); x <= Math.min(centerX + radius, size - 1); x++) {
+                    int dx = x - centerX, dy = y - centerY;
+                    if (dx * dx + dy * dy <= radius * radius) factors[y * size + x] = factor;
+                }
+            }
+        }
+        int towns = Math.max(size / 32, 2);
+        for (int i = 0; i < towns; i++) {
+            int side = 2 + random.nextInt(Math.max(size / 32, 2));
+            int left = random.nextInt(size), top = random.nextInt(size);
+            for (int y = top; y < Math.min(top + side, size); y++) {
+                for (int x = left; x < Math.min(left + side, size); x++) {
+                    blocked[y * size + x] = true;
+                    factors[y * size + x] = 1f;
+                }
+            }
+        }
+    }
+
+    /**
+     * Labels the areas of free cells connected via any of their eight neighbors.
+     */
+    private void labelAreas() {
+        areas = new int[size * size];
+        Arrays.fill(areas, -1);
+        int[] queue = new int[size * size];
+        int label = 0;
+        for (int seed = 0; seed < areas.length; seed++) {
+            if (blocked[seed] || areas[seed] >= 0) continue;
+            int head = 0, tail = 0;
+            queue[tail++] = seed;
+            areas[seed] = label;
+            while (head < tail) {
+                int n = queue[head++];
+                int x = n % size, y = n / size;
+                for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, size - 1); ny++) {
+                    for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, size - 1); nx++) {
+                        int neighbor = ny * size + nx;
+                        if (!blocked[neighbor] && areas[neighbor] < 0) {
+                            areas[neighbor] = label;
+                            queue[tail++] = neighbor;
+                        }
+                    }
+                }
+            }
+            label++;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.ichbingrumpig.pathfinder.benchmarks;
+
+import com.ichbingrumpig.pathfinder.core.GridPathfinder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the benchmark maps are reproducible and all of their queries have a path.
+ */
+public class BenchmarkMapTest {
+
+    private static final String[] LAYOUTS = {BenchmarkMap.OPEN, BenchmarkMap.MAZE, BenchmarkMap.RANDOM_10,
+            BenchmarkMap.RANDOM_25, BenchmarkMap.RANDOM_40, BenchmarkMap.TERRAIN};
+
+    private static final String[] DISTANCES = {BenchmarkMap.SHORT, BenchmarkMap.MEDIUM, BenchmarkMap.LONG};
+
+    @Test
+    public void sameSeedGivesTheSameMap() throws Exception {
+        for (String layout : LAYOUTS) {
+            BenchmarkMap first = BenchmarkMap.generate(layout, 64, 3);
+            BenchmarkMap second = BenchmarkMap.generate(layout, 64, 3);
+            for (int y = 0; y < 64; y++) {
+                for (int x = 0; x < 64; x++) {
+                    assertEquals(first.isBlocked(x, y), second.isBlocked(x, y));
+                    assertEquals(first.getTravellingFactor(x, y), second.getTravellingFactor(x, y), 0f);
+                }
+            }
+            assertArrayEquals(first.queries(BenchmarkMap.LONG, 8, 3), second.queries(BenchmarkMap.LONG, 8, 3));
+        }
+    }
+
+    @Test
+    public void everyQueryHasAPath() throws Exception {
+        GridPathfinder pathfinder = new GridPathfinder();
+        // Searches all eight neighbors of every node, including those on the left border
+        pathfinder.setEngine(GridPathfinder.ENGINE_JUMP_POINT);
+        for (String layout : LAYOUTS) {
+            BenchmarkMap map = BenchmarkMap.generate(layout, 64, 1);
+            pathfinder.setGrid(64, 64, map);
+            for (String distance : DISTANCES) {
+                int[] queries = map.queries(distance, 8, 1);
+                for (int q = 0; q < queries.length; q += 4) {
+                    assertNotNull(layout + " " + distance,
+                            pathfinder.findPathNow(queries[q], queries[q + 1], queries[q + 2], queries[q + 3]));
+                }
+            }
+        }
+        pathfinder.shutdown();
+    }
+}
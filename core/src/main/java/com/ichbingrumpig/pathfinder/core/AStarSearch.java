@@ -0,0 +1,521 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * Implementation of the A* pathfinding algorithm.
+ *
+ * The search runs in steps: {@link #step(int, long)} expands nodes until the path is found,
+ * no path is possible or the given budget is used up. In the latter case the open and closed
+ * sets stay in the {@link SearchWorkspace} and the next call continues where the search stopped.
+ */
+class AStarSearch {
+    /** Results of {@link #step(int, long)} */
+    static final int SUSPENDED = 0, FOUND = 1, NOT_FOUND = 2, CANCELLED = 3;
+
+    /** The cost for travelling vertically or horizontally */
+    static final int V_H_COST = 10;
+
+    /** The cost of travelling diagonally */
+    static final int DIAGONAL_COST = 14;
+
+    /**
+     * The number of rounds after which a search checks the grid for changes,
+     * for cancellation and its time budget. Must be a power of two
+     */
+    private static final int CHECK_INTERVAL = 256;
+
+    /**
+     * The number of times a search starts over because the grid changed under it. After that it keeps going
+     * and checks the cells of its path before reporting it
+     */
+    private static final int MAX_RESTARTS = 3;
+
+    /** The length of a diagonal step */
+    private static final double SQRT_2 = Math.sqrt(2);
+
+    /** The grid snapshot this search runs on */
+    final GridModel model;
+
+    /** The starting coordinates */
+    final int startX, startY;
+
+    /** The destination coordinates */
+    final int destX, destY;
+
+    /** The minimal cost of a step vertically or horizontally and diagonally, see {@link #octileDistance(int, int)} */
+    final int minStraightCost, minDiagonalCost;
+
+    /** The neighbors of every node, as set on the grid when the search was created */
+    final Neighborhood neighbors;
+
+    /** The estimate of the remaining cost. One of the GridPathfinder.HEURISTIC_ constants */
+    private int heuristicType = GridPathfinder.HEURISTIC_OCTILE;
+
+    /** The estimate is multiplied with this weight. Above 1 the search is faster, but the path may be that much more expensive */
+    private float heuristicWeight = 1f;
+
+    /** The landmarks of GridPathfinder.HEURISTIC_LANDMARKS. Null for other heuristics */
+    private Landmarks landmarks;
+
+    /** The width and height of the unit in cells. The path leads its top-left cell */
+    int agentSize = 1;
+
+    /** The node states of this search. Null until the first step */
+    SearchWorkspace workspace;
+
+    /** Stored the rounds the while-loop has made. For debugging purposes. */
+    private int rounds = 0;
+
+    /** The number of nodes added to the open set so far */
+    private int generated = 0;
+
+    /** Set before the first step to measure {@link #getSetupNanos()} */
+    boolean timed = false;
+
+    /** The time the first step took before expanding the first node. Only measured if {@link #timed} */
+    private long setupNanos = 0;
+
+    /** The version of the grid the search has checked its nodes against */
+    private int gridVersion;
+
+    /** The number of times the search has started over because the grid changed */
+    private int restarts = 0;
+
+    /** Receives the region of the grid that changed while searching */
+    private final int[] changedRegion = new int[4];
+
+    /** Set from any thread to stop the search at its next check */
+    private volatile boolean cancelled = false;
+
+    /** The result of the search once it has finished. {@link #SUSPENDED} until then */
+    private int status = SUSPENDED;
+
+    /**
+     * Constructor for a new search.
+     *
+     * @param model The grid snapshot to search on
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     */
+    AStarSearch(GridModel model, int startX, int startY, int destX, int destY) {
+        this.model = model;
+        this.startX = startX;
+        this.startY = startY;
+        this.destX = destX;
+        this.destY = destY;
+        neighbors = model.getNeighborhood();
+        float minFactor = Math.min(model.getMinTravellingFactor(), 1f);
+        minStraightCost = (int) (V_H_COST * minFactor);
+        minDiagonalCost = Math.min((int) (neighbors.diagonalCost * minFactor), 2 * minStraightCost);
+    }
+
+    /**
+     * Selects how the remaining cost is estimated. Must be called before the first step.
+     * The octile distance is used by default.
+     *
+     * @param heuristic One of the GridPathfinder.HEURISTIC_ constants
+     * @param weight The estimate is multiplied with this weight. 1 for the cheapest path
+     * @param landmarks The landmarks for GridPathfinder.HEURISTIC_LANDMARKS. May be null for other heuristics
+     */
+    void setHeuristic(int heuristic, float weight, Landmarks landmarks) {
+        this.heuristicType = heuristic;
+        this.heuristicWeight = weight;
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Sets the size of the unit the path is searched for. Must be called before the first step.
+     * The search only enters nodes where the unit fits with its top-left cell, see {@link GridModel#fits(int, int)}.
+     *
+     * @param agentSize The width and height of the unit in cells. 1 by default
+     */
+    void setAgentSize(int agentSize) {
+        this.agentSize = agentSize;
+    }
+
+    /**
+     * Runs the whole search at once.
+     *
+     * @param workspace A reset workspace holding the node states of this search
+     * @return If a path was found. The path can be followed from the destination
+     *          back to the start via {@link SearchWorkspace#parent}.
+     */
+    boolean search(SearchWorkspace workspace) {
+        this.workspace = workspace;
+        return step(0, 0) == FOUND;
+    }
+
+    /**
+     * Stops the search from any thread. A running step returns {@link #CANCELLED} at its next check.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return The engine this search runs on. One of the GridPathfinder.ENGINE_ constants
+     */
+    int getEngine() {
+        return GridPathfinder.ENGINE_A_STAR;
+    }
+
+    /**
+     * @return The rounds the search has made so far
+     */
+    int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return The number of nodes the search has added to the open set so far
+     */
+    int getGeneratedNodes() {
+        return generated;
+    }
+
+    /**
+     * Only valid before the workspace is released.
+     * @return The largest number of nodes in the open set at once
+     */
+    int getPeakOpenNodes() {
+        return workspace == null ? 0 : workspace.open.getPeakSize();
+    }
+
+    /**
+     * @return The time the first step took before expanding the first node in nanoseconds.
+     *          0 unless {@link #timed} has been set
+     */
+    long getSetupNanos() {
+        return setupNanos;
+    }
+
+    /**
+     * @return The version of the grid the search has checked its nodes against
+     */
+    int getGridVersion() {
+        return gridVersion;
+    }
+
+    /**
+     * Continues the search.
+     * Acquires a workspace from the pool on the first step. The caller releases it once the search has finished.
+     * Fails at once, before acquiring a workspace, if the start and the destination lie in different areas.
+     *
+     * @param maxExpansions The maximum number of nodes to expand in this step. 0 for no limit
+     * @param maxNanos The maximum time to spend in this step in nanoseconds. 0 for no limit
+     * @return {@link #SUSPENDED} if the budget was used up, otherwise the result of the search
+     */
+    int step(int maxExpansions, long maxNanos) {
+        if (status != SUSPENDED) return status;
+        if (rounds == 0) {
+            long setupStart = timed ? System.nanoTime() : 0;
+            boolean possible = setUp();
+            if (timed) setupNanos += System.nanoTime() - setupStart;
+            if (!possible) return status = NOT_FOUND;
+        }
+
+        final SearchWorkspace workspace = this.workspace;
+        final int width = model.width;
+        final long deadline = maxNanos > 0 ? System.nanoTime() + maxNanos : 0;
+        final int lastRound = maxExpansions > 0 ? rounds + maxExpansions : Integer.MAX_VALUE;
+
+        while (true) {
+            if (rounds == lastRound) return SUSPENDED;
+            rounds++;
+
+            // Grab node from the open set with lowest f-cost
+            int current = workspace.open.poll();
+
+            // No path possible, unless the grid has changed in the meantime
+            if (current < 0) {
+                if (cancelled) return status = CANCELLED;
+                if (restartIfGridChanged()) continue;
+                return status = NOT_FOUND;
+            }
+
+            int x = current % width;
+            int y = current / width;
+
+            // Path was found, unless the grid has changed under it
+            if (x == destX && y == destY) {
+                if (restartIfGridChanged()) continue;
+                // Changes after the last restart may have blocked the path
+                if (gridVersion != model.getVersion() && !isPathOpen()) return status = NOT_FOUND;
+                return status = FOUND;
+            }
+
+            if ((rounds & (CHECK_INTERVAL - 1)) == 0) {
+                if (cancelled) return status = CANCELLED;
+                if (restartIfGridChanged()) continue;
+                if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+                    // The node is expanded when the search continues
+                    workspace.open.add(current, workspace.finalCost[current], workspace.finalCost[current] - workspace.gCost[current]);
+                    return SUSPENDED;
+                }
+            }
+
+            // Add the current node to the closed set
+            workspace.close(current);
+            expand(current, x, y);
+        }
+    }
+
+    /**
+     * Prepares the first step.
+     * @return False if no path is possible
+     */
+    private boolean setUp() {
+        // Nodes in different areas can't be connected, however many nodes are expanded
+        if (!model.areConnected(startY * model.width + startX, destY * model.width + destX)) return false;
+        if (workspace == null) workspace = SearchWorkspace.acquire(model);
+        return begin();
+    }
+
+    /**
+     * Evaluates the neighbors of a node that has just been added to the closed set.
+     * Walks the steps of the {@link Neighborhood}, and only checks the coordinates of nodes on the border of the board.
+     *
+     * @param current The node index of the node
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     */
+    void expand(int current, int x, int y) {
+        final Neighborhood neighbors = this.neighbors;
+        final int[] stepX = neighbors.stepX, stepY = neighbors.stepY;
+        final boolean interior = neighbors.isInterior(x, y);
+        final int first = neighbors.first(y);
+        for (int i = first; i < first + neighbors.count; i++) {
+            int nx = x + stepX[i], ny = y + stepY[i];
+            if (!interior && !neighbors.isOnBoard(nx, ny)) continue;
+            if (neighbors.checksCorners && !(model.fits(current + neighbors.sideX[i], agentSize) && model.fits(current + neighbors.sideY[i], agentSize))) continue;
+            checkAndUpdateCost(current, current + neighbors.offsets[i], nx, ny, neighbors.costs[i]);
+        }
+    }
+
+    /**
+     * Only valid once the path has been found and before the workspace is released.
+     * @return The number of nodes on the path
+     */
+    int countPathNodes() {
+        final int width = model.width;
+        final int[] parent = workspace.parent;
+        // Jump point search links nodes further apart, so the nodes in between are counted as well
+        int count = 1;
+        for (int n = destY * width + destX; parent[n] >= 0; n = parent[n]) {
+            count += Math.max(Math.abs(parent[n] % width - n % width), Math.abs(parent[n] / width - n / width));
+        }
+        return count;
+    }
+
+    /**
+     * Writes the node indices of the path from the start to the destination, filling in the nodes between jump points.
+     * Only valid once the path has been found and before the workspace is released.
+     *
+     * @param nodes Receives the nodes
+     * @param count The number of nodes on the path, see {@link #countPathNodes()}
+     */
+    void collectPath(int[] nodes, int count) {
+        final int width = model.width;
+        final int[] parent = workspace.parent;
+        final int dest = destY * width + destX;
+        int i = count - 1;
+        int x = destX, y = destY;
+        nodes[i--] = dest;
+        for (int n = parent[dest]; n >= 0; n = parent[n]) {
+            int stepX = Integer.signum(n % width - x), stepY = Integer.signum(n / width - y);
+            while (y * width + x != n) {
+                x += stepX;
+                y += stepY;
+                nodes[i--] = y * width + x;
+            }
+        }
+    }
+
+    /**
+     * Adds the starting node to the open set.
+     * Called when the search starts and whenever it starts over.
+     * @return False if the starting node is blocked
+     */
+    boolean begin() {
+        gridVersion = model.getVersion();
+        int start = startY * model.width + startX;
+        if (!materialise(start, startX, startY)) return false;
+        workspace.gCost[start] = 0;
+        workspace.parent[start] = -1;
+        workspace.open.add(start, workspace.finalCost[start], workspace.finalCost[start]);
+        generated++;
+        return true;
+    }
+
+    /**
+     * Checks if the grid has changed at nodes this search has already looked at.
+     * If so, the search starts over on the updated grid.
+     * Once it has started over {@link #MAX_RESTARTS} times, it keeps the version it has checked against,
+     * so the cache does not take its path for one found on the current grid.
+     *
+     * @return If the search has started over
+     */
+    private boolean restartIfGridChanged() {
+        int version = model.getVersion();
+        if (version == gridVersion || restarts == MAX_RESTARTS) return false;
+        if (!model.getChangedRegion(gridVersion, changedRegion)) return false;
+        gridVersion = version;
+
+        if (!hasLookedAt(changedRegion)) return false;
+        restarts++;
+        workspace.reset();
+        if (!begin()) workspace.open.clear();
+        return true;
+    }
+
+    /**
+     * Only valid once the path has been found and before the workspace is released.
+     * @return If every node of the path can still be entered
+     */
+    private boolean isPathOpen() {
+        int[] nodes = new int[countPathNodes()];
+        collectPath(nodes, nodes.length);
+        for (int n : nodes) {
+            if (!canEnter(n, n % model.width, n / model.width)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param region The left, top, right and bottom coordinate of a region of the grid. Right and bottom are exclusive
+     * @return If the search has looked at a node of the region, so its costs may no longer hold
+     */
+    boolean hasLookedAt(int[] region) {
+        for (int y = region[1]; y < region[3]; y++) {
+            for (int x = region[0]; x < region[2]; x++) {
+                if (workspace.isMaterialised(y * model.width + x)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets up a node the search has reached for the first time.
+     * Sets its heuristic cost as final cost.
+     *
+     * @param n The node index
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @return False if the node can't be entered. Those nodes are added to the closed set.
+     */
+    private boolean materialise(int n, int x, int y) {
+        if (!canEnter(n, x, y)) {
+            workspace.close(n);
+            return false;
+        }
+        workspace.materialise(n);
+        workspace.finalCost[n] = heuristic(x, y);
+        return true;
+    }
+
+    /**
+     * @param n The node index
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @return If the search may enter the node
+     */
+    boolean canEnter(int n, int x, int y) {
+        return model.fits(n, agentSize);
+    }
+
+    /**
+     * Estimates the cost of travelling from a node to the destination.
+     * Only called once a node is reached, never for the whole grid.
+     *
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @return The heuristic cost h(n)
+     */
+    int heuristic(int x, int y) {
+        int dx = Math.abs(x - destX), dy = Math.abs(y - destY);
+        int h;
+        switch (heuristicType) {
+            case GridPathfinder.HEURISTIC_EUCLIDEAN:
+                // A diagonal step covers a distance of sqrt(2)
+                h = (int) (Math.sqrt(dx * dx + dy * dy) * Math.min(minStraightCost, minDiagonalCost / SQRT_2));
+                break;
+            case GridPathfinder.HEURISTIC_LANDMARKS:
+                h = octileDistance(dx, dy, minStraightCost, minDiagonalCost);
+                if (landmarks != null && landmarks.isValid(model)) {
+                    h = Math.max(h, landmarks.lowerBound(y * model.width + x, destY * model.width + destX));
+                }
+                break;
+            case GridPathfinder.HEURISTIC_MANHATTAN:
+                h = (dx + dy) * V_H_COST;
+                break;
+            default:
+                h = octileDistance(dx, dy, minStraightCost, minDiagonalCost);
+        }
+        return heuristicWeight == 1f ? h : (int) (h * heuristicWeight);
+    }
+
+    /**
+     * Octile distance to the destination, which never overestimates the cost of travelling there.
+     *
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @return The cost of the cheapest path to the destination if no node were blocked
+     */
+    int octileDistance(int x, int y) {
+        return octileDistance(Math.abs(x - destX), Math.abs(y - destY), minStraightCost, minDiagonalCost);
+    }
+
+    /**
+     * @param dx The horizontal distance
+     * @param dy The vertical distance
+     * @param straightCost The cost of a vertical or horizontal step
+     * @param diagonalCost The cost of a diagonal step
+     * @return The cost of the cheapest path covering the distance
+     */
+    static int octileDistance(int dx, int dy, int straightCost, int diagonalCost) {
+        return straightCost * Math.abs(dx - dy) + diagonalCost * Math.min(dx, dy);
+    }
+
+    /**
+     * Evaluates the cost of travelling to the neighbor n at [x, y].
+     * @param current The node index of the current node
+     * @param n The node index of @current's neighbor
+     * @param x The x-coordinate of @current's neighbor
+     * @param y The y-coordinate of @current's neighbor
+     * @param cost The cost of travelling
+     */
+    void checkAndUpdateCost(int current, int n, int x, int y, int cost) {
+        //                 cost of travelling to @current   +        n's travelling cost
+        int nGCost = workspace.gCost[current] + (int) (cost * model.getTravellingFactor(n));
+        relax(current, n, x, y, nGCost);
+    }
+
+    /**
+     * Makes @current the parent of the node n at [x, y] if that is the cheapest way to reach it so far.
+     * @param current The node index of the current node
+     * @param n The node index of the node
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @param nGCost The cost of travelling from the start to the node via @current
+     */
+    void relax(int current, int n, int x, int y, int nGCost) {
+        final SearchWorkspace workspace = this.workspace;
+        boolean nIsInOpen = workspace.isMaterialised(n);
+        if (workspace.isClosed(n) || (!nIsInOpen && !materialise(n, x, y))) return;
+
+        if (!nIsInOpen) {
+            workspace.gCost[n] = nGCost;
+            workspace.finalCost[n] += nGCost;
+            workspace.parent[n] = current;
+            // Of nodes with the same final cost, the one closest to the destination is expanded first
+            workspace.open.add(n, workspace.finalCost[n], workspace.finalCost[n] - nGCost);
+            generated++;
+        } else if (nGCost < workspace.gCost[n]) {
+            workspace.finalCost[n] += nGCost - workspace.gCost[n];
+            workspace.gCost[n] = nGCost;
+            workspace.parent[n] = current;
+            workspace.open.decreaseKey(n, workspace.finalCost[n]);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * Describes the cells of the board to a {@link GridPathfinder}.
+ *
+ * The rules are asked for every cell once when the grid is set and again for every cell
+ * of a region passed to {@link GridPathfinder#updateCells(int, int, int, int)}.
+ * Searches never call them, so they don't need to be thread-safe.
+ */
+public interface CellRules {
+
+    /**
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @return If the cell at [x, y] is blocked
+     */
+    boolean isBlocked(int x, int y);
+
+    /**
+     * The factor the cost of entering a cell is multiplied with.
+     * Travelling half as fast means double the costs, so a factor of 2.
+     * Only asked for cells that are not blocked.
+     *
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @return The travelling factor of the cell at [x, y], 1 for normal cells
+     */
+    float getTravellingFactor(int x, int y);
+}
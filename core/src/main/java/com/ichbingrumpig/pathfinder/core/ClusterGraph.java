@@ -0,0 +1,432 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.Arrays;
+
+/**
+ * The abstract graph of hierarchical pathfinding (HPA*).
+ *
+ * The grid is split into square clusters. Wherever free nodes face each other across
+ * the border of two clusters, entrances are placed: one in the middle of narrow openings,
+ * one at each end of wide ones. For every cluster the cost of travelling between each pair
+ * of its entrances without leaving the cluster is precomputed.
+ *
+ * {@link #findCorridor(int, int, boolean[])} searches this small graph instead of the grid
+ * and returns the clusters a path runs through. {@link HierarchicalSearch} then only has to
+ * search the grid within those clusters. When the grid changes, only the clusters touching
+ * the changed region are rebuilt, the next time a corridor is needed. Only the rebuilding
+ * is synchronized, so corridors are searched on several threads at once.
+ */
+class ClusterGraph implements GridModel.OnGridChangedListener {
+
+    /** Openings between clusters at least this wide get an entrance at each end */
+    private static final int WIDE_ENTRANCE = 6;
+
+    /** The grid this graph abstracts */
+    final GridModel model;
+
+    /** The width and height of a cluster */
+    private final int clusterSize;
+
+    /** The number of clusters horizontally and vertically */
+    private final int clustersX, clustersY;
+
+    /** The node indices of the entrances on the border of each cluster to its right neighbor, in pairs of inside and outside */
+    private final int[][] rightBorders;
+
+    /** The node indices of the entrances on the border of each cluster to its bottom neighbor, in pairs of inside and outside */
+    private final int[][] bottomBorders;
+
+    /** The entrances of each cluster and the distances between them. Replaced as a whole when a cluster is rebuilt */
+    private final Cluster[] clusters;
+
+    /** Clusters that have to be rebuilt before the next search */
+    private final boolean[] dirty;
+
+    /** If any cluster is dirty. Read without the lock, so up to date graphs are searched without waiting */
+    private volatile boolean hasDirty = true;
+
+    /** The costs of the nodes within a cluster, used while rebuilding clusters */
+    private final int[] localCosts;
+
+    /** The open set of the searches within a cluster, used while rebuilding clusters */
+    private final NodeHeap localOpen;
+
+    /**
+     * Constructor. The clusters are built with the first search.
+     *
+     * @param model The grid to abstract. The graph keeps itself up to date with its changes
+     * @param clusterSize The width and height of a cluster
+     */
+    ClusterGraph(GridModel model, int clusterSize) {
+        if (clusterSize < 2) throw new IllegalArgumentException("Clusters must be at least 2 nodes wide.");
+        this.model = model;
+        this.clusterSize = clusterSize;
+        clustersX = (model.width + clusterSize - 1) / clusterSize;
+        clustersY = (model.height + clusterSize - 1) / clusterSize;
+        int clusters = clustersX * clustersY;
+        rightBorders = new int[clusters][];
+        bottomBorders = new int[clusters][];
+        this.clusters = new Cluster[clusters];
+        dirty = new boolean[clusters];
+        Arrays.fill(dirty, true);
+        localCosts = new int[clusterSize * clusterSize];
+        localOpen = new NodeHeap(clusterSize * clusterSize);
+        model.addOnGridChangedListener(this);
+    }
+
+    /**
+     * @return The number of clusters
+     */
+    int getClusterCount() {
+        return clustersX * clustersY;
+    }
+
+    /**
+     * @param x The x-coordinate of a node
+     * @param y The y-coordinate of a node
+     * @return The cluster the node belongs to
+     */
+    int clusterOf(int x, int y) {
+        return (y / clusterSize) * clustersX + x / clusterSize;
+    }
+
+    /**
+     * @param cluster The cluster
+     * @return If the cluster will be rebuilt before the next search
+     */
+    synchronized boolean isDirty(int cluster) {
+        return dirty[cluster];
+    }
+
+    @Override
+    public synchronized void onGridChanged(GridModel model, int version, int left, int top, int right, int bottom) {
+        // Nodes next to the region decide about entrances as well
+        int firstX = Math.max(left - 1, 0) / clusterSize, lastX = Math.min(right, model.width - 1) / clusterSize;
+        int firstY = Math.max(top - 1, 0) / clusterSize, lastY = Math.min(bottom, model.height - 1) / clusterSize;
+        for (int cy = firstY; cy <= lastY; cy++) {
+            for (int cx = firstX; cx <= lastX; cx++) {
+                dirty[cy * clustersX + cx] = true;
+            }
+        }
+        hasDirty = true;
+    }
+
+    /**
+     * Builds all clusters that are not up to date.
+     */
+    void prepare() {
+        if (!hasDirty) return;
+        synchronized (this) {
+            if (hasDirty) rebuildDirtyClusters();
+        }
+    }
+
+    /**
+     * Builds the dirty clusters and the clusters next to them. Only called while holding the lock.
+     */
+    private void rebuildDirtyClusters() {
+        int clusters = getClusterCount();
+        // Borders touching a dirty cluster, then all clusters whose entrances may have moved
+        boolean[] rebuild = new boolean[clusters];
+        for (int c = 0; c < clusters; c++) {
+            if (!dirty[c]) continue;
+            int cx = c % clustersX, cy = c / clustersX;
+            computeBorders(c);
+            if (cx > 0) computeBorders(c - 1);
+            if (cy > 0) computeBorders(c - clustersX);
+            rebuild[c] = true;
+            if (cx > 0) rebuild[c - 1] = true;
+            if (cx < clustersX - 1) rebuild[c + 1] = true;
+            if (cy > 0) rebuild[c - clustersX] = true;
+            if (cy < clustersY - 1) rebuild[c + clustersX] = true;
+        }
+        for (int c = 0; c < clusters; c++) {
+            if (rebuild[c]) computeCluster(c);
+        }
+        Arrays.fill(dirty, false);
+        hasDirty = false;
+    }
+
+    /**
+     * Searches the abstract graph for a path and marks the clusters it runs through.
+     *
+     * @param start The node index of the starting node
+     * @param dest The node index of the destination node
+     * @param corridor Receives the clusters of the path, indexed by cluster
+     * @return False if the abstract graph knows no path
+     */
+    boolean findCorridor(int start, int dest, boolean[] corridor) {
+        prepare();
+        Arrays.fill(corridor, false);
+        final int width = model.width;
+        final int startCluster = clusterOf(start % width, start / width);
+        final int destCluster = clusterOf(dest % width, dest / width);
+        // Clusters rebuilt by other threads meanwhile are replaced as a whole, so these stay consistent
+        final Cluster startEntrances = clusters[startCluster], destEntrances = clusters[destCluster];
+        int[] costs = new int[clusterSize * clusterSize];
+        NodeHeap open = new NodeHeap(clusterSize * clusterSize);
+
+        // Costs from the start to the entrances of its cluster, and to the destination if it is close
+        int[] cells = startEntrances.entrances;
+        int[] startCosts = new int[cells.length];
+        searchCluster(startCluster, start, false, costs, open);
+        for (int i = 0; i < cells.length; i++) startCosts[i] = costs[local(startCluster, cells[i])];
+        int directCost = startCluster == destCluster ? costs[local(startCluster, dest)] : -1;
+
+        // Costs from the entrances of the destination's cluster to the destination
+        cells = destEntrances.entrances;
+        int[] destCosts = new int[cells.length];
+        searchCluster(destCluster, dest, true, costs, open);
+        for (int i = 0; i < cells.length; i++) destCosts[i] = costs[local(destCluster, cells[i])];
+
+        final int destX = dest % width, destY = dest / width;
+        int minStraightCost = (int) (AStarSearch.V_H_COST * Math.min(model.getMinTravellingFactor(), 1f));
+        int minDiagonalCost = Math.min((int) (AStarSearch.DIAGONAL_COST * Math.min(model.getMinTravellingFactor(), 1f)), 2 * minStraightCost);
+
+        SearchWorkspace workspace = SearchWorkspace.acquire(model);
+        try {
+            workspace.materialise(start);
+            workspace.gCost[start] = 0;
+            workspace.parent[start] = -1;
+            workspace.finalCost[start] = 0;
+            workspace.open.add(start, 0);
+            int current;
+            while ((current = workspace.open.poll()) >= 0) {
+                if (current == dest) {
+                    for (int n = dest; n >= 0; n = workspace.parent[n]) corridor[clusterOf(n % width, n / width)] = true;
+                    return true;
+                }
+                workspace.close(current);
+                int g = workspace.gCost[current];
+                int cluster = clusterOf(current % width, current / width);
+
+                if (current == start) {
+                    cells = startEntrances.entrances;
+                    for (int i = 0; i < cells.length; i++) {
+                        if (startCosts[i] >= 0) relax(workspace, current, cells[i], g + startCosts[i], destX, destY, minStraightCost, minDiagonalCost);
+                    }
+                    if (directCost >= 0) relax(workspace, current, dest, g + directCost, destX, destY, minStraightCost, minDiagonalCost);
+                }
+
+                Cluster here = cluster == destCluster ? destEntrances : clusters[cluster];
+                cells = here.entrances;
+                int count = cells.length;
+                for (int i = 0; i < count; i++) {
+                    if (cells[i] != current) continue;
+                    // Into the neighboring cluster
+                    int partner = here.partners[i];
+                    relax(workspace, current, partner, g + (int) (AStarSearch.V_H_COST * model.getTravellingFactor(partner)),
+                            destX, destY, minStraightCost, minDiagonalCost);
+                    // To the other entrances of this cluster
+                    for (int j = 0; j < count; j++) {
+                        int distance = here.distances[i * count + j];
+                        if (distance >= 0) relax(workspace, current, cells[j], g + distance, destX, destY, minStraightCost, minDiagonalCost);
+                    }
+                    if (cluster == destCluster && destCosts[i] >= 0) {
+                        relax(workspace, current, dest, g + destCosts[i], destX, destY, minStraightCost, minDiagonalCost);
+                    }
+                }
+            }
+            return false;
+        } finally {
+            SearchWorkspace.release(workspace);
+        }
+    }
+
+    /**
+     * Makes @current the parent of node @n in the abstract search if that is the cheapest way to reach it so far.
+     */
+    private void relax(SearchWorkspace workspace, int current, int n, int nGCost, int destX, int destY, int minStraightCost, int minDiagonalCost) {
+        if (workspace.isClosed(n)) return;
+        if (!workspace.isMaterialised(n)) {
+            workspace.materialise(n);
+            workspace.gCost[n] = nGCost;
+            int h = AStarSearch.octileDistance(Math.abs(n % model.width - destX), Math.abs(n / model.width - destY),
+                    minStraightCost, minDiagonalCost);
+            // Slightly favours nodes closer to the destination among those of equal cost
+            workspace.finalCost[n] = nGCost + h + (h >> 7);
+            workspace.parent[n] = current;
+            workspace.open.add(n, workspace.finalCost[n]);
+        } else if (nGCost < workspace.gCost[n]) {
+            workspace.finalCost[n] += nGCost - workspace.gCost[n];
+            workspace.gCost[n] = nGCost;
+            workspace.parent[n] = current;
+            workspace.open.decreaseKey(n, workspace.finalCost[n]);
+        }
+    }
+
+    /**
+     * Finds the entrances on the right and bottom border of a cluster.
+     * @param cluster The cluster
+     */
+    private void computeBorders(int cluster) {
+        int cx = cluster % clustersX, cy = cluster / clustersX;
+        int left = cx * clusterSize, top = cy * clusterSize;
+        int right = Math.min(left + clusterSize, model.width), bottom = Math.min(top + clusterSize, model.height);
+        final int width = model.width;
+
+        int[] border = new int[0];
+        if (cx < clustersX - 1) {
+            int runStart = -1;
+            for (int y = top; y <= bottom; y++) {
+                boolean open = y < bottom && !model.isBlocked(y * width + right - 1) && !model.isBlocked(y * width + right);
+                if (open && runStart < 0) runStart = y;
+                if (!open && runStart >= 0) {
+                    for (int y1 : positions(runStart, y - 1)) {
+                        border = append(border, y1 * width + right - 1, y1 * width + right);
+                    }
+                    runStart = -1;
+                }
+            }
+        }
+        rightBorders[cluster] = border;
+
+        border = new int[0];
+        if (cy < clustersY - 1) {
+            int runStart = -1;
+            for (int x = left; x <= right; x++) {
+                boolean open = x < right && !model.isBlocked((bottom - 1) * width + x) && !model.isBlocked(bottom * width + x);
+                if (open && runStart < 0) runStart = x;
+                if (!open && runStart >= 0) {
+                    for (int x1 : positions(runStart, x - 1)) {
+                        border = append(border, (bottom - 1) * width + x1, bottom * width + x1);
+                    }
+                    runStart = -1;
+                }
+            }
+        }
+        bottomBorders[cluster] = border;
+    }
+
+    /**
+     * @return The positions of the entrances along an opening from @first to @last
+     */
+    private static int[] positions(int first, int last) {
+        if (last - first + 1 >= WIDE_ENTRANCE) return new int[] {first, last};
+        return new int[] {(first + last) / 2};
+    }
+
+    private static int[] append(int[] array, int a, int b) {
+        int[] result = Arrays.copyOf(array, array.length + 2);
+        result[array.length] = a;
+        result[array.length + 1] = b;
+        return result;
+    }
+
+    /**
+     * Collects the entrances of a cluster from its four borders and computes the distances between them.
+     * @param cluster The cluster
+     */
+    private void computeCluster(int cluster) {
+        int cx = cluster % clustersX, cy = cluster / clustersX;
+        int[] pairs = new int[0];
+        pairs = appendPairs(pairs, rightBorders[cluster], false);
+        pairs = appendPairs(pairs, bottomBorders[cluster], false);
+        if (cx > 0) pairs = appendPairs(pairs, rightBorders[cluster - 1], true);
+        if (cy > 0) pairs = appendPairs(pairs, bottomBorders[cluster - clustersX], true);
+
+        int count = pairs.length / 2;
+        int[] cells = new int[count];
+        int[] outside = new int[count];
+        for (int i = 0; i < count; i++) {
+            cells[i] = pairs[2 * i];
+            outside[i] = pairs[2 * i + 1];
+        }
+        int[] clusterDistances = new int[count * count];
+        for (int i = 0; i < count; i++) {
+            searchCluster(cluster, cells[i], false, localCosts, localOpen);
+            for (int j = 0; j < count; j++) {
+                clusterDistances[i * count + j] = localCosts[local(cluster, cells[j])];
+            }
+        }
+        clusters[cluster] = new Cluster(cells, outside, clusterDistances);
+    }
+
+    /**
+     * Appends the pairs of a border, swapped if the cluster is on the outside of the border.
+     */
+    private static int[] appendPairs(int[] pairs, int[] border, boolean swap) {
+        int[] result = Arrays.copyOf(pairs, pairs.length + border.length);
+        for (int i = 0; i < border.length; i += 2) {
+            result[pairs.length + i] = swap ? border[i + 1] : border[i];
+            result[pairs.length + i + 1] = swap ? border[i] : border[i + 1];
+        }
+        return result;
+    }
+
+    /**
+     * @return The index of a node within the arrays of a cluster search
+     */
+    private int local(int cluster, int node) {
+        int x = node % model.width - (cluster % clustersX) * clusterSize;
+        int y = node / model.width - (cluster / clustersX) * clusterSize;
+        return y * clusterSize + x;
+    }
+
+    /**
+     * Dijkstra's algorithm within the bounds of a cluster.
+     *
+     * @param cluster The cluster
+     * @param source The node index to start from
+     * @param reverse If the costs are those of travelling to the source instead of from it
+     * @param localCosts Receives the cost of each node of the cluster, see {@link #local(int, int)}. -1 for unreachable nodes
+     * @param localOpen The open set of the search
+     */
+    private void searchCluster(int cluster, int source, boolean reverse, int[] localCosts, NodeHeap localOpen) {
+        final int width = model.width;
+        int left = (cluster % clustersX) * clusterSize, top = (cluster / clustersX) * clusterSize;
+        int right = Math.min(left + clusterSize, width), bottom = Math.min(top + clusterSize, model.height);
+        Arrays.fill(localCosts, -1);
+        localOpen.clear();
+        if (model.isBlocked(source)) return;
+        localCosts[local(cluster, source)] = 0;
+        localOpen.add(local(cluster, source), 0);
+
+        int current;
+        while ((current = localOpen.poll()) >= 0) {
+            int cost = localCosts[current];
+            int x = left + current % clusterSize, y = top + current / clusterSize;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int nx = x + dx, ny = y + dy;
+                    if ((dx == 0 && dy == 0) || nx < left || ny < top || nx >= right || ny >= bottom) continue;
+                    int n = ny * width + nx;
+                    if (model.isBlocked(n)) continue;
+                    // Travelling costs depend on the node that is entered
+                    int step = (int) ((dx != 0 && dy != 0 ? AStarSearch.DIAGONAL_COST : AStarSearch.V_H_COST)
+                            * model.getTravellingFactor(reverse ? y * width + x : n));
+                    int localN = (ny - top) * clusterSize + nx - left;
+                    int nCost = cost + step;
+                    if (localCosts[localN] < 0) {
+                        localCosts[localN] = nCost;
+                        localOpen.add(localN, nCost);
+                    } else if (nCost < localCosts[localN] && localOpen.contains(localN)) {
+                        localCosts[localN] = nCost;
+                        localOpen.decreaseKey(localN, nCost);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The entrances of one cluster and the distances between them. Never changed once built.
+     */
+    private static final class Cluster {
+
+        /** The node indices of the entrances. A node on two borders has two entries */
+        final int[] entrances;
+
+        /** The node index of the node in the neighboring cluster each entrance leads to */
+        final int[] partners;
+
+        /** The cost of travelling from entrance i to entrance j at [i * entrances + j]. -1 if impossible */
+        final int[] distances;
+
+        Cluster(int[] entrances, int[] partners, int[] distances) {
+            this.entrances = entrances;
+            this.partners = partners;
+            this.distances = distances;
+        }
+    }
+}
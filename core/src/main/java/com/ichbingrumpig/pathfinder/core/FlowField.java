@@ -0,0 +1,167 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.Arrays;
+
+/**
+ * The cost of travelling from every node of the grid to the nearest of one or more targets,
+ * together with the direction to take from every node.
+ *
+ * A flow field is computed once with a single reverse Dijkstra search from the targets,
+ * using the same travelling costs as the searches for single paths. Afterwards any number
+ * of units can follow it to the nearest target, one step at a time and in constant time per step,
+ * without searching on their own. Create flow fields via
+ * {@link GridPathfinder#createFlowField(int, int)} or {@link GridPathfinder#createFlowField(int[], int[])}.
+ *
+ * A flow field is a snapshot: once the grid changes, create a new one.
+ */
+public final class FlowField {
+
+    /** The cost of nodes no target can be reached from */
+    public static final int UNREACHABLE = -1;
+
+    /** Marks nodes without a direction in {@link #directions} */
+    private static final byte NO_DIRECTION = -1;
+
+    /** The board dimensions */
+    private final int width, height;
+
+    /** The neighbors of every node the field was computed with */
+    private final Neighborhood neighbors;
+
+    /** The cost of travelling from each node to the nearest target, {@link #UNREACHABLE} if none can be reached */
+    private final int[] costs;
+
+    /** The direction to take from each node, a step of {@link #neighbors} */
+    private final byte[] directions;
+
+    private FlowField(int width, int height, Neighborhood neighbors) {
+        this.width = width;
+        this.height = height;
+        this.neighbors = neighbors;
+        costs = new int[width * height];
+        directions = new byte[width * height];
+        Arrays.fill(costs, UNREACHABLE);
+        Arrays.fill(directions, NO_DIRECTION);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from all targets at once, backwards along the travelling costs.
+     *
+     * @param model The grid snapshot
+     * @param targets The node indices of the targets
+     * @return The flow field towards the nearest target
+     */
+    static FlowField compute(GridModel model, int[] targets) {
+        final int width = model.width;
+        final Neighborhood neighbors = model.getNeighborhood();
+        final FlowField field = new FlowField(width, model.height, neighbors);
+        final int[] costs = field.costs;
+        final NodeHeap open = new NodeHeap(model.size());
+
+        for (int target : targets) {
+            if (model.isBlocked(target) || costs[target] == 0) continue;
+            costs[target] = 0;
+            open.add(target, 0);
+        }
+
+        int current;
+        while ((current = open.poll()) >= 0) {
+            int x = current % width;
+            int y = current / width;
+            int cost = costs[current];
+            // Travelling costs depend on the node that is entered, which is @current for all neighbors
+            float factor = model.getTravellingFactor(current);
+            int first = neighbors.first(y);
+            for (int step = first; step < first + neighbors.count; step++) {
+                int n = neighbors.neighbor(model, current, x, y, step);
+                if (n < 0 || model.isBlocked(n)) continue;
+                // Every step can be taken back at the same cost, in the opposite direction
+                int direction = neighbors.opposite[step];
+                int nCost = cost + (int) (neighbors.costs[step] * factor);
+                if (costs[n] == UNREACHABLE) {
+                    costs[n] = nCost;
+                    field.directions[n] = (byte) direction;
+                    open.add(n, nCost);
+                } else if (nCost < costs[n] && open.contains(n)) {
+                    costs[n] = nCost;
+                    field.directions[n] = (byte) direction;
+                    open.decreaseKey(n, nCost);
+                }
+            }
+        }
+        return field;
+    }
+
+    /**
+     * @return The cost of travelling from each node to the nearest target, {@link #UNREACHABLE} if none can be reached.
+     *          Not to be changed
+     */
+    int[] getCosts() {
+        return costs;
+    }
+
+    /**
+     * @return The width of the board
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height of the board
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @return The cost of travelling from the node to the nearest target or {@link #UNREACHABLE}
+     */
+    public int getCost(int x, int y) {
+        return costs[y * width + x];
+    }
+
+    /**
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @return If a target can be reached from the node
+     */
+    public boolean isReachable(int x, int y) {
+        return costs[y * width + x] != UNREACHABLE;
+    }
+
+    /**
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @return The horizontal step to take from the node towards the nearest target: -1, 0 or 1.
+     *          0 on targets and nodes no target can be reached from.
+     */
+    public int getStepX(int x, int y) {
+        byte direction = directions[y * width + x];
+        return direction == NO_DIRECTION ? 0 : neighbors.stepX[direction];
+    }
+
+    /**
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @return The vertical step to take from the node towards the nearest target: -1, 0 or 1.
+     *          0 on targets and nodes no target can be reached from.
+     */
+    public int getStepY(int x, int y) {
+        byte direction = directions[y * width + x];
+        return direction == NO_DIRECTION ? 0 : neighbors.stepY[direction];
+    }
+
+    /**
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @return The index (y * width + x) of the node to travel to next,
+     *          or -1 on targets and nodes no target can be reached from
+     */
+    public int getNextNode(int x, int y) {
+        byte direction = directions[y * width + x];
+        return direction == NO_DIRECTION ? -1 : y * width + x + neighbors.offsets[direction];
+    }
+}
@@ -0,0 +1,585 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A compiled snapshot of the game grid.
+ *
+ * {@link GridPathfinder#setGrid(int, int, CellRules)} compiles the {@link CellRules} once into
+ * a bit-packed mask of blocked nodes and an array of travelling factors, both in
+ * row-major order (index = y * width + x). A second mask marks the nodes next to
+ * travelling factors other than 1, so {@link JumpPointSearch} knows where it may skip ahead.
+ * Searches only read this snapshot, so they never call back into the rules
+ * and any number of searches can share one model.
+ *
+ * When the game grid changes, {@link #update(CellRules, int, int, int, int)} recompiles
+ * only the changed region in place and increments the {@link #getVersion() version}.
+ * Running searches compare the version against the one they started with and ask
+ * {@link #getChangedRegion(int, int[])} which part of the grid has changed since.
+ *
+ * Every free node carries the label of the area it belongs to, i.e. the nodes that can reach
+ * each other over free nodes, so searches between different areas fail without expanding a single node.
+ * Updates only relabel the areas that touch the changed region.
+ *
+ * Every node also carries its clearance: the size of the largest square of free nodes with the node as its
+ * top-left corner, up to {@link GridPathfinder#MAX_AGENT_SIZE}. Units larger than one cell fit wherever the
+ * clearance is at least their size. Updates only recompute the nodes above and left of the changed region.
+ */
+final class GridModel {
+
+    /** The number of changes {@link #getChangedRegion(int, int[])} can look back on */
+    private static final int CHANGE_HISTORY = 32;
+
+    /** Marks local areas that may join or split areas in {@link #relabelAreas(int, int, int, int)} */
+    private static final int SHARED_AREA = -1;
+
+    /** The board dimensions */
+    final int width, height;
+
+    /** One bit per node, set if the node is blocked */
+    private final int[] blocked;
+
+    /** The travelling factor of every node */
+    private final float[] travellingFactors;
+
+    /** One bit per node, set if the node or one of its neighbors is free and has a travelling factor other than 1 */
+    private final int[] irregular;
+
+    /** The clearance of every node. 0 for blocked nodes */
+    private final byte[] clearance;
+
+    /** The neighbors of every node. New searches take the one set when they are created */
+    private volatile Neighborhood neighborhood;
+
+    /** No free node has a smaller travelling factor. Only ever lowered by updates */
+    private volatile float minTravellingFactor = 1f;
+
+    /** Incremented after every update, once all of its changes have been written */
+    private volatile int version = 0;
+
+    /** The regions of the last changes as left, top, right, bottom. Indexed by version % CHANGE_HISTORY */
+    private final int[] changedRegions = new int[CHANGE_HISTORY * 4];
+
+    /**
+     * The area label of every node. 0 for blocked nodes, nodes with the same label can reach each other.
+     * Computed when first needed. Guarded by this model
+     */
+    private int[] areas;
+
+    /** The label the next area gets. Labels are never reused until all areas are labelled again */
+    private int nextArea = 1;
+
+    /** The nodes still to be labelled while an area is filled. Grows when needed */
+    private int[] fillStack = new int[256];
+
+    /** Workspaces of finished searches on this model, ready to be reused. See {@link SearchWorkspace#acquire(GridModel)} */
+    final ConcurrentLinkedQueue<SearchWorkspace> workspaces = new ConcurrentLinkedQueue<>();
+
+    /** Listeners notified after every update */
+    final CopyOnWriteArrayList<OnGridChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Callback for changes of the grid.
+     */
+    interface OnGridChangedListener {
+
+        /**
+         * Invoked after a region of the grid has been updated.
+         * The region's right and bottom coordinates are exclusive.
+         *
+         * @param model The updated model
+         * @param version The version of the model after the update
+         */
+        void onGridChanged(GridModel model, int version, int left, int top, int right, int bottom);
+    }
+
+    /** Constructor for a model where every node is free and has a travelling factor of 1
+     *
+     * @param width The width of the board
+     * @param height The height of the board
+     */
+    GridModel(int width, int height) {
+        this.width = width;
+        this.height = height;
+        blocked = new int[(width * height + 31) >>> 5];
+        travellingFactors = new float[width * height];
+        Arrays.fill(travellingFactors, 1f);
+        irregular = new int[blocked.length];
+        clearance = new byte[width * height];
+        computeClearance(0, 0, width, height);
+        neighborhood = new Neighborhood(GridPathfinder.NEIGHBORS_8, width, height);
+    }
+
+    /**
+     * Compiles the rules of every cell into a new model.
+     *
+     * @param width The width of the board
+     * @param height The height of the board
+     * @param rules The rules of the cells
+     * @return The compiled model
+     */
+    static GridModel compile(int width, int height, CellRules rules) {
+        GridModel model = new GridModel(width, height);
+        synchronized (model) {
+            model.compileRegion(rules, 0, 0, width, height);
+            model.computeClearance(0, 0, width, height);
+            model.labelAreas();
+        }
+        return model;
+    }
+
+    /**
+     * @param width The width of the board
+     * @param height The height of the board
+     * @return The number of bytes {@link #write(ByteBuffer)} writes for a board of this size
+     */
+    static long storedSize(int width, int height) {
+        long size = (long) width * height;
+        // The clearances are padded to whole ints, so the landmarks after them stay aligned
+        return 8 + 2 * 4 * ((size + 31) >>> 5) + 8 * size + 4 * ((size + 3) >>> 2);
+    }
+
+    /**
+     * Writes the compiled grid, its area labels and clearances, see {@link GridStore}.
+     * @param buffer Receives the grid at its position, which is moved past it
+     */
+    synchronized void write(ByteBuffer buffer) {
+        if (areas == null) labelAreas();
+        buffer.putFloat(minTravellingFactor);
+        buffer.putInt(nextArea);
+        GridStore.putInts(buffer, blocked);
+        GridStore.putInts(buffer, irregular);
+        buffer.asFloatBuffer().put(travellingFactors);
+        buffer.position(buffer.position() + 4 * travellingFactors.length);
+        GridStore.putInts(buffer, areas);
+        buffer.put(clearance);
+        buffer.position(buffer.position() + (-clearance.length & 3));
+    }
+
+    /**
+     * Reads a grid written by {@link #write(ByteBuffer)} into a new model, which is updated like a compiled one.
+     *
+     * @param buffer Holds the grid at its position, which is moved past it
+     * @param width The width of the board
+     * @param height The height of the board
+     * @return The model
+     */
+    static GridModel read(ByteBuffer buffer, int width, int height) {
+        GridModel model = new GridModel(width, height);
+        synchronized (model) {
+            model.minTravellingFactor = buffer.getFloat();
+            model.nextArea = buffer.getInt();
+            GridStore.getInts(buffer, model.blocked);
+            GridStore.getInts(buffer, model.irregular);
+            buffer.asFloatBuffer().get(model.travellingFactors);
+            buffer.position(buffer.position() + 4 * model.travellingFactors.length);
+            model.areas = new int[model.size()];
+            GridStore.getInts(buffer, model.areas);
+            buffer.get(model.clearance);
+            buffer.position(buffer.position() + (-model.clearance.length & 3));
+        }
+        return model;
+    }
+
+    /**
+     * Recompiles a region of the grid in place after the game grid has changed there.
+     * The region is clipped to the board. Its right and bottom coordinates are exclusive.
+     *
+     * @param rules The rules of the cells
+     */
+    void update(CellRules rules, int left, int top, int right, int bottom) {
+        left = Math.max(left, 0);
+        top = Math.max(top, 0);
+        right = Math.min(right, width);
+        bottom = Math.min(bottom, height);
+        if (left >= right || top >= bottom) return;
+
+        int newVersion;
+        synchronized (this) {
+            boolean blockingChanged = compileRegion(rules, left, top, right, bottom);
+            // Travelling factors don't change the areas or clearances
+            if (blockingChanged) {
+                if (areas != null) relabelAreas(left, top, right, bottom);
+                computeClearance(left - GridPathfinder.MAX_AGENT_SIZE + 1, top - GridPathfinder.MAX_AGENT_SIZE + 1, right, bottom);
+            }
+            newVersion = version + 1;
+            int slot = (newVersion % CHANGE_HISTORY) * 4;
+            changedRegions[slot] = left;
+            changedRegions[slot + 1] = top;
+            changedRegions[slot + 2] = right;
+            changedRegions[slot + 3] = bottom;
+            // Publishes the changes above to every search reading the version afterwards
+            version = newVersion;
+        }
+        for (OnGridChangedListener listener : listeners) {
+            listener.onGridChanged(this, newVersion, left, top, right, bottom);
+        }
+    }
+
+    /**
+     * @return If a node of the region has become blocked or free
+     */
+    private boolean compileRegion(CellRules rules, int left, int top, int right, int bottom) {
+        float minFactor = minTravellingFactor;
+        boolean blockingChanged = false;
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                int node = y * width + x;
+                boolean isBlocked = rules.isBlocked(x, y);
+                if (isBlocked != isBlocked(node)) blockingChanged = true;
+                setBit(blocked, node, isBlocked);
+                float factor = isBlocked ? 1f : rules.getTravellingFactor(x, y);
+                travellingFactors[node] = factor;
+                minFactor = Math.min(minFactor, factor);
+            }
+        }
+        minTravellingFactor = minFactor;
+        // The neighbors of the region may have become regular or irregular as well
+        compileIrregular(left - 1, top - 1, right + 1, bottom + 1);
+        return blockingChanged;
+    }
+
+    /**
+     * Labels the free nodes of a changed region and of the areas around it.
+     *
+     * The free nodes of the region and the ring of nodes around it are split into local areas first.
+     * A local area touching only one area on the ring, which no other local area touches, just takes
+     * over its label. Otherwise areas may have been joined or split, and the local area is filled
+     * over the whole board with a new label. Areas that don't touch the region keep their labels.
+     * Guarded by this model
+     */
+    private void relabelAreas(int left, int top, int right, int bottom) {
+        if (nextArea > Integer.MAX_VALUE - size()) {
+            // Running out of labels
+            labelAreas();
+            return;
+        }
+        // Labels from here on have been given in this pass
+        final int firstNew = nextArea;
+        final int windowLeft = Math.max(left - 1, 0), windowTop = Math.max(top - 1, 0);
+        final int windowRight = Math.min(right + 1, width), windowBottom = Math.min(bottom + 1, height);
+        final int windowWidth = windowRight - windowLeft;
+        // The local area of every node of the window, starting at 1. 0 for blocked nodes
+        final int[] local = new int[windowWidth * (windowBottom - windowTop)];
+        // The label on the ring of each local area. 0 if it touches none, SHARED_AREA if it touches several
+        int[] labels = new int[16];
+        // The local area each label on the ring belongs to. SHARED_AREA if several
+        HashMap<Integer, Integer> owners = new HashMap<>();
+        int localAreas = 0;
+
+        for (int y = windowTop; y < windowBottom; y++) {
+            for (int x = windowLeft; x < windowRight; x++) {
+                int node = y * width + x;
+                if (isBlocked(node)) {
+                    areas[node] = 0;
+                    continue;
+                }
+                if (local[(y - windowTop) * windowWidth + x - windowLeft] != 0) continue;
+                localAreas++;
+                if (localAreas == labels.length) labels = Arrays.copyOf(labels, localAreas * 2);
+
+                // Fills the local area within the window
+                int[] stack = fillStack;
+                int size = 0;
+                int label = 0;
+                local[(y - windowTop) * windowWidth + x - windowLeft] = localAreas;
+                stack[size++] = node;
+                while (size > 0) {
+                    int n = stack[--size];
+                    int nx = n % width, ny = n / width;
+                    if (nx < left || ny < top || nx >= right || ny >= bottom) {
+                        // On the ring, so its label is still valid
+                        int ringLabel = areas[n];
+                        if (label == 0) label = ringLabel;
+                        else if (label != ringLabel) label = SHARED_AREA;
+                        Integer owner = owners.get(ringLabel);
+                        if (owner == null) owners.put(ringLabel, localAreas);
+                        else if (owner != localAreas) owners.put(ringLabel, SHARED_AREA);
+                    }
+                    for (int my = Math.max(ny - 1, windowTop); my < Math.min(ny + 2, windowBottom); my++) {
+                        for (int mx = Math.max(nx - 1, windowLeft); mx < Math.min(nx + 2, windowRight); mx++) {
+                            int slot = (my - windowTop) * windowWidth + mx - windowLeft;
+                            int m = my * width + mx;
+                            if (local[slot] != 0 || isBlocked(m)) continue;
+                            local[slot] = localAreas;
+                            if (size == stack.length) stack = fillStack = Arrays.copyOf(stack, size * 2);
+                            stack[size++] = m;
+                        }
+                    }
+                }
+                labels[localAreas] = label;
+            }
+        }
+
+        // Local areas sharing a label on the ring may have been split apart
+        for (Map.Entry<Integer, Integer> entry : owners.entrySet()) {
+            if (entry.getValue() != SHARED_AREA) continue;
+            for (int y = windowTop; y < windowBottom; y++) {
+                for (int x = windowLeft; x < windowRight; x++) {
+                    int slot = (y - windowTop) * windowWidth + x - windowLeft;
+                    if (local[slot] != 0 && areas[y * width + x] == entry.getKey() && (x < left || y < top || x >= right || y >= bottom)) {
+                        labels[local[slot]] = SHARED_AREA;
+                    }
+                }
+            }
+        }
+
+        for (int y = windowTop; y < windowBottom; y++) {
+            for (int x = windowLeft; x < windowRight; x++) {
+                int localArea = local[(y - windowTop) * windowWidth + x - windowLeft];
+                if (localArea == 0) continue;
+                int node = y * width + x;
+                int label = labels[localArea];
+                if (label == SHARED_AREA) {
+                    if (areas[node] < firstNew) fillArea(node, nextArea++, firstNew);
+                } else {
+                    // Local areas inside the region get a label of their own
+                    if (label == 0) label = labels[localArea] = nextArea++;
+                    areas[node] = label;
+                }
+            }
+        }
+    }
+
+    /**
+     * Labels every area of the board from scratch. Guarded by this model
+     */
+    private void labelAreas() {
+        if (areas == null) areas = new int[size()];
+        else Arrays.fill(areas, 0);
+        nextArea = 1;
+        for (int node = 0; node < areas.length; node++) {
+            if (areas[node] == 0 && !isBlocked(node)) fillArea(node, nextArea++, 1);
+        }
+    }
+
+    /**
+     * Gives every node the seed can reach over free nodes, in all eight directions, the same label.
+     *
+     * @param seed A free node
+     * @param label The new label
+     * @param firstNew Nodes with this label or above have already been labelled in this pass
+     */
+    private void fillArea(int seed, int label, int firstNew) {
+        int[] stack = fillStack;
+        int size = 0;
+        areas[seed] = label;
+        stack[size++] = seed;
+        while (size > 0) {
+            int node = stack[--size];
+            int x = node % width;
+            int y = node / width;
+            for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1); ny++) {
+                for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+                    int n = ny * width + nx;
+                    if (areas[n] >= firstNew || isBlocked(n)) continue;
+                    areas[n] = label;
+                    if (size == stack.length) stack = fillStack = Arrays.copyOf(stack, size * 2);
+                    stack[size++] = n;
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells in constant time if a path between two nodes is possible at all.
+     * Labels the areas of the board on the first call.
+     *
+     * @param start The node index of the start
+     * @param dest The node index of the destination
+     * @return False if either node is blocked or the nodes lie in different areas
+     */
+    synchronized boolean areConnected(int start, int dest) {
+        if (areas == null) labelAreas();
+        return areas[start] != 0 && areas[start] == areas[dest];
+    }
+
+    /**
+     * Recomputes the clearances in the given region, clipped to the board.
+     * A node's square reaches as far as the squares of its right, bottom and bottom-right neighbor plus one,
+     * so the region is computed from its bottom-right corner, and the nodes right of and below it must be up to date.
+     * Guarded by this model
+     */
+    private void computeClearance(int left, int top, int right, int bottom) {
+        left = Math.max(left, 0);
+        top = Math.max(top, 0);
+        right = Math.min(right, width);
+        bottom = Math.min(bottom, height);
+        for (int y = bottom - 1; y >= top; y--) {
+            for (int x = right - 1; x >= left; x--) {
+                int node = y * width + x;
+                if (isBlocked(node)) {
+                    clearance[node] = 0;
+                    continue;
+                }
+                // Nodes on the right and bottom edge of the board only fit a single cell
+                int smallest = x + 1 < width && y + 1 < height
+                        ? Math.min(Math.min(clearance[node + 1], clearance[node + width]), clearance[node + width + 1]) : 0;
+                clearance[node] = (byte) Math.min(smallest + 1, GridPathfinder.MAX_AGENT_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the irregular mask in the given region, clipped to the board.
+     */
+    private void compileIrregular(int left, int top, int right, int bottom) {
+        left = Math.max(left, 0);
+        top = Math.max(top, 0);
+        right = Math.min(right, width);
+        bottom = Math.min(bottom, height);
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                boolean isIrregular = false;
+                for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1) && !isIrregular; ny++) {
+                    for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+                        int n = ny * width + nx;
+                        if (travellingFactors[n] != 1f && !isBlocked(n)) {
+                            isIrregular = true;
+                            break;
+                        }
+                    }
+                }
+                setBit(irregular, y * width + x, isIrregular);
+            }
+        }
+    }
+
+    private static void setBit(int[] mask, int node, boolean value) {
+        if (value) mask[node >>> 5] |= 1 << node;
+        else mask[node >>> 5] &= ~(1 << node);
+    }
+
+    /**
+     * @return The version of the model. Incremented after every update.
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Computes the bounding box of all regions that have changed since the given version.
+     *
+     * @param sinceVersion The version to compare against
+     * @param region Receives the region as left, top, right, bottom.
+     *               The whole board if the changes are too far back to be known.
+     * @return False if nothing has changed since the given version
+     */
+    boolean getChangedRegion(int sinceVersion, int[] region) {
+        int current;
+        synchronized (this) {
+            current = version;
+            if (current == sinceVersion) return false;
+            if (current - sinceVersion > CHANGE_HISTORY) {
+                region[0] = 0;
+                region[1] = 0;
+                region[2] = width;
+                region[3] = height;
+                return true;
+            }
+            region[0] = width;
+            region[1] = height;
+            region[2] = 0;
+            region[3] = 0;
+            for (int v = sinceVersion + 1; v <= current; v++) {
+                int slot = (v % CHANGE_HISTORY) * 4;
+                region[0] = Math.min(region[0], changedRegions[slot]);
+                region[1] = Math.min(region[1], changedRegions[slot + 1]);
+                region[2] = Math.max(region[2], changedRegions[slot + 2]);
+                region[3] = Math.max(region[3], changedRegions[slot + 3]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param listener Notified after every update of this model
+     */
+    void addOnGridChangedListener(OnGridChangedListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener A listener added by {@link #addOnGridChangedListener(OnGridChangedListener)}
+     */
+    void removeOnGridChangedListener(OnGridChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return The number of nodes on the board
+     */
+    int size() {
+        return travellingFactors.length;
+    }
+
+    /**
+     * @param node The node index
+     * @return If the node is blocked
+     */
+    boolean isBlocked(int node) {
+        return (blocked[node >>> 5] & (1 << node)) != 0;
+    }
+
+    /**
+     * @param node The node index
+     * @return The travelling factor of the node
+     */
+    float getTravellingFactor(int node) {
+        return travellingFactors[node];
+    }
+
+    /**
+     * @param node The node index
+     * @return The size of the largest square of free nodes with the node as its top-left corner. 0 if the node is blocked
+     */
+    int getClearance(int node) {
+        return clearance[node];
+    }
+
+    /**
+     * @param node The node index
+     * @param agentSize The width and height of the unit in cells
+     * @return If the unit fits with its top-left corner on the node
+     */
+    boolean fits(int node, int agentSize) {
+        return clearance[node] >= agentSize;
+    }
+
+    /**
+     * @return The neighbors of every node
+     */
+    Neighborhood getNeighborhood() {
+        return neighborhood;
+    }
+
+    /**
+     * Changes the neighbors of every node for searches created afterwards.
+     * The areas stay the same, as every mode only has neighbors among the eight surrounding nodes.
+     *
+     * @param mode One of the GridPathfinder.NEIGHBORS_ constants
+     */
+    void setNeighborhood(int mode) {
+        if (neighborhood.mode != mode) neighborhood = new Neighborhood(mode, width, height);
+    }
+
+    /**
+     * @return A travelling factor no free node is below
+     */
+    float getMinTravellingFactor() {
+        return minTravellingFactor;
+    }
+
+    /**
+     * @param node The node index
+     * @return If the node and all of its free neighbors have a travelling factor of 1
+     */
+    boolean isUniform(int node) {
+        return (irregular[node >>> 5] & (1 << node)) == 0;
+    }
+}
@@ -0,0 +1,811 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The pathfinder on plain Java, without any Android dependency.
+ *
+ * Set the board via {@link #setGrid(int, int, CellRules)}, then find paths with
+ * {@link #findPath(int, int, int, int, int, Object, OnPathComputedListener)} on the worker threads,
+ * with {@link #startSearch(int, int, int, int, OnPathComputedListener)} in slices on the caller's thread
+ * or with {@link #findPathNow(int, int, int, int)} at once on the caller's thread.
+ * Many queries at once are best answered together via {@link #findPaths(List, int, OnBatchCompletedListener)}.
+ * Paths are returned as the node indices (y * width + x) of their cells, from the start to the destination,
+ * either in a new array or written into a reusable {@link WaypointBuffer}.
+ *
+ * The Android library wraps one instance of this class. Game servers and desktop tools
+ * can use it directly and run the very same searches.
+ */
+public final class GridPathfinder {
+
+    /** Priority for searches that are run before all others */
+    public static final int PRIORITY_HIGH = 0;
+
+    /** The default priority of searches */
+    public static final int PRIORITY_NORMAL = 1;
+
+    /** Priority for searches that are only run when no other searches are waiting */
+    public static final int PRIORITY_LOW = 2;
+
+    /** Engine running the A* algorithm on every node */
+    public static final int ENGINE_A_STAR = 0;
+
+    /** Engine running Jump Point Search, which skips ahead where the travelling factor is 1 */
+    public static final int ENGINE_JUMP_POINT = 1;
+
+    /** Engine running hierarchical pathfinding (HPA*), which finds long paths much faster, but not always the optimal one */
+    public static final int ENGINE_HIERARCHICAL = 2;
+
+    /**
+     * Engine spreading each long search over several threads (HDA*), which finds the same paths as {@link #ENGINE_A_STAR} sooner on big boards.
+     * Long searches run without a break, see {@link #setTimeSlice(int, long)}
+     */
+    public static final int ENGINE_PARALLEL = 3;
+
+    /** Waypoints on every cell of the path */
+    public static final int WAYPOINTS_ALL_CELLS = 0;
+
+    /** Waypoints only where the path changes its direction, besides the start and the destination */
+    public static final int WAYPOINTS_CORNERS = 1;
+
+    /** Waypoints of the path pulled tight, each one in line of sight of the one before */
+    public static final int WAYPOINTS_LINE_OF_SIGHT = 2;
+
+    /** Estimates the remaining cost by the octile distance, the cheapest way over an empty board. The default */
+    public static final int HEURISTIC_OCTILE = 0;
+
+    /** Estimates the remaining cost by the straight line distance. Never more than the octile distance, so it expands more nodes */
+    public static final int HEURISTIC_EUCLIDEAN = 1;
+
+    /** Estimates the remaining cost via precomputed costs to a few landmarks (ALT), which is far closer on maps with walls and mazes */
+    public static final int HEURISTIC_LANDMARKS = 2;
+
+    /** Estimates the remaining cost by the Manhattan distance, as former versions did. Overestimates diagonal paths, so paths may be longer */
+    public static final int HEURISTIC_MANHATTAN = 3;
+
+    /** Paths step to all eight surrounding cells, also diagonally past the corners of blocked cells. The default */
+    public static final int NEIGHBORS_8 = 0;
+
+    /** Paths step to all eight surrounding cells, but only diagonally if both cells beside the step are free */
+    public static final int NEIGHBORS_8_NO_CORNER_CUTTING = 1;
+
+    /** Paths only step vertically and horizontally */
+    public static final int NEIGHBORS_4 = 2;
+
+    /** Paths step between hexagonal cells, every odd row shifted half a cell to the right. All six steps cost the same */
+    public static final int NEIGHBORS_HEX = 3;
+
+    /** The largest unit searches can find paths for, in cells per side. See {@link #findPath(int, int, int, int, int, int, Object, OnPathComputedListener)} */
+    public static final int MAX_AGENT_SIZE = 16;
+
+    /** The weight of the heuristic of the approximating search of {@link #findPathProgressively(int, int, int, int, int, Object, Executor, OnPathRefinedListener)} */
+    private static final float APPROXIMATE_WEIGHT = 3f;
+
+    /** The number of landmarks of {@link #HEURISTIC_LANDMARKS} */
+    private static final int LANDMARK_COUNT = 4;
+
+    /** The width and height of the clusters of {@link #ENGINE_HIERARCHICAL} */
+    private static final int CLUSTER_SIZE = 16;
+
+    /** The default maximum number of waiting searches */
+    private static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /** The rules of the cells of the board */
+    private CellRules rules;
+
+    /** The compiled grid all new searches run on. Null until a grid is set */
+    private volatile GridModel gridModel;
+
+    /** Runs the searches on a bounded number of worker threads */
+    private volatile PathScheduler scheduler;
+
+    /** The engine new searches run on. One of the ENGINE_ constants */
+    private volatile int engine = ENGINE_A_STAR;
+
+    /** The neighbors of every cell for new searches. One of the NEIGHBORS_ constants */
+    private volatile int neighborhood = NEIGHBORS_8;
+
+    /** The estimate of the remaining cost of new searches. One of the HEURISTIC_ constants */
+    private volatile int heuristic = HEURISTIC_OCTILE;
+
+    /** The estimate of new searches is multiplied with this weight */
+    private volatile float heuristicWeight = 1f;
+
+    /** The landmarks of the current grid for {@link #HEURISTIC_LANDMARKS}. Null for other heuristics */
+    private volatile Landmarks landmarks;
+
+    /** The abstract graph of the current grid for {@link #ENGINE_HIERARCHICAL}. Created when first needed */
+    private ClusterGraph clusterGraph;
+
+    /** The maximum number of cached paths. 0 if paths are not cached */
+    private int cacheSize = 0;
+
+    /** The cache of recent paths on the current grid. Null if paths are not cached */
+    private volatile PathCache pathCache;
+
+    /** The maximum number of nodes a scheduled search expands before other searches get their turn. 0 for no limit */
+    private volatile int sliceExpansions = 0;
+
+    /** The maximum time a scheduled search runs before other searches get their turn, in nanoseconds. 0 for no limit */
+    private volatile long sliceNanos = 0;
+
+    /** The number of threads one search of {@link #ENGINE_PARALLEL} runs on */
+    private volatile int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /** Runs the helping threads of {@link #ENGINE_PARALLEL}. Created when first needed */
+    private ExecutorService parallelHelpers;
+
+    /** Receive the metrics of every search */
+    private final CopyOnWriteArrayList<OnSearchFinishedListener> searchListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor for a pathfinder with one worker thread per available processor
+     * and up to 256 waiting searches. Set the board via {@link #setGrid(int, int, CellRules)} before searching.
+     */
+    public GridPathfinder() {
+        scheduler = new PathScheduler(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Compiles the board. Searches that are already running finish on the former board.
+     *
+     * @param width The width of the board
+     * @param height The height of the board
+     * @param rules The rules of the cells. Asked again for the regions passed to {@link #updateCells(int, int, int, int)}
+     */
+    public synchronized void setGrid(int width, int height, CellRules rules) {
+        if (width < 1 || height < 1) throw new IllegalArgumentException("The board must be at least one cell wide and high.");
+        this.rules = rules;
+        useGrid(GridModel.compile(width, height, rules), null);
+    }
+
+    /**
+     * Writes the compiled board, the areas of its cells and the landmarks of {@link #HEURISTIC_LANDMARKS}
+     * into a file next to the map, so the next start can load them via {@link #loadGrid(File, long, CellRules)}
+     * instead of computing them again. Landmarks are only written while that heuristic is selected
+     * and the board has not been updated since they were computed.
+     *
+     * @param file The file to write. Replaced if it exists
+     * @param sourceChecksum A checksum of the source the board was compiled from, e.g. of the map file
+     * @throws IOException If the file could not be written
+     */
+    public synchronized void saveGrid(File file, long sourceChecksum) throws IOException {
+        GridStore.write(file, requireGrid("saving the board"), landmarks, sourceChecksum);
+    }
+
+    /**
+     * Loads a board written by {@link #saveGrid(File, long)} instead of compiling it, which is much faster for big boards.
+     * The file is memory mapped: the board is copied from it in bulk, while the landmarks are read from the mapping
+     * itself, so processes loading the same file share them. Searches that are already running finish on the former board.
+     *
+     * A file of an older format or with another source checksum is stale and not loaded. Call
+     * {@link #setGrid(int, int, CellRules)} and {@link #saveGrid(File, long)} then. The checksum only covers
+     * what the caller puts into it, so a change of the rules themselves needs a new checksum as well.
+     *
+     * @param file The file to read
+     * @param sourceChecksum The checksum of the source the board should have been compiled from
+     * @param rules The rules of the cells. Asked for the regions passed to {@link #updateCells(int, int, int, int)}
+     * @return False if the file does not exist or is stale, the former board stays in place then
+     * @throws IOException If the file could not be read
+     */
+    public synchronized boolean loadGrid(File file, long sourceChecksum, CellRules rules) throws IOException {
+        GridStore store = GridStore.read(file, sourceChecksum);
+        if (store == null) return false;
+        this.rules = rules;
+        useGrid(store.model, store.landmarks);
+        return true;
+    }
+
+    /**
+     * Lets new searches run on a board and prepares what the selected engine and heuristic need.
+     *
+     * @param model The compiled board
+     * @param storedLandmarks The landmarks of the board, if they have been loaded with it. May be null
+     */
+    private void useGrid(GridModel model, Landmarks storedLandmarks) {
+        model.setNeighborhood(neighborhood);
+        gridModel = model;
+        if (engine == ENGINE_HIERARCHICAL) getClusterGraph().prepare();
+        if (heuristic != HEURISTIC_LANDMARKS) landmarks = null;
+        // Landmarks stored for other neighbors may overestimate
+        else landmarks = storedLandmarks != null && storedLandmarks.isValid(model) ? storedLandmarks : Landmarks.compute(model, LANDMARK_COUNT);
+        replaceCache(cacheSize > 0 ? new PathCache(model, cacheSize) : null);
+    }
+
+    /**
+     * Replaces the cache of recent paths. The former cache stops following the changes of its grid,
+     * so neither it nor its paths are kept alive by the grid.
+     *
+     * @param cache The new cache. Null if paths are not cached
+     */
+    private void replaceCache(PathCache cache) {
+        PathCache former = pathCache;
+        if (former != null) former.model.removeOnGridChangedListener(former);
+        pathCache = cache;
+    }
+
+    /**
+     * @return The width of the board
+     */
+    public int getWidth() {
+        return requireGrid("reading the board").width;
+    }
+
+    /**
+     * @return The height of the board
+     */
+    public int getHeight() {
+        return requireGrid("reading the board").height;
+    }
+
+    /**
+     * Sets the number of worker threads searches run on and how many searches may wait for a worker.
+     * Searches that are already queued, including those running in time slices, still finish on the former workers.
+     *
+     * @param threads The number of worker threads
+     * @param queueCapacity The maximum number of waiting searches. Further searches are rejected.
+     */
+    public synchronized void configureScheduler(int threads, int queueCapacity) {
+        PathScheduler former = scheduler;
+        scheduler = new PathScheduler(threads, queueCapacity);
+        former.shutdown();
+    }
+
+    /**
+     * Selects the algorithm new searches run on.
+     * {@link #ENGINE_JUMP_POINT} expands far fewer nodes on maps that mostly have a travelling factor of 1
+     * and finds paths of the same cost. {@link #ENGINE_HIERARCHICAL} answers long queries on an abstract
+     * graph of the grid first, which is built once and then only patched where the grid changes.
+     * {@link #ENGINE_PARALLEL} searches long queries on several threads at once, see {@link #setParallelism(int)}.
+     * By default {@link #ENGINE_A_STAR} is used.
+     *
+     * @param engine One of {@link #ENGINE_A_STAR}, {@link #ENGINE_JUMP_POINT}, {@link #ENGINE_HIERARCHICAL} and {@link #ENGINE_PARALLEL}
+     */
+    public void setEngine(int engine) {
+        if (engine < ENGINE_A_STAR || engine > ENGINE_PARALLEL) throw new IllegalArgumentException("Unknown engine " + engine);
+        this.engine = engine;
+        // Cached paths may differ from those of the new engine
+        PathCache cache = pathCache;
+        if (cache != null) cache.clear();
+    }
+
+    /**
+     * Selects the cells a path may step to from each cell, for new searches.
+     * {@link #ENGINE_JUMP_POINT} and {@link #ENGINE_HIERARCHICAL} rely on all eight neighbors,
+     * so they search with {@link #ENGINE_A_STAR} under the other modes. Waypoints assume square cells:
+     * on hexagonal boards every cell of the path is kept, and with four neighbors paths are at most reduced to
+     * their corners. By default {@link #NEIGHBORS_8} is used.
+     *
+     * @param mode One of {@link #NEIGHBORS_8}, {@link #NEIGHBORS_8_NO_CORNER_CUTTING}, {@link #NEIGHBORS_4} and {@link #NEIGHBORS_HEX}
+     */
+    public synchronized void setNeighborhood(int mode) {
+        if (mode < NEIGHBORS_8 || mode > NEIGHBORS_HEX) throw new IllegalArgumentException("Unknown neighborhood " + mode);
+        neighborhood = mode;
+        GridModel model = gridModel;
+        if (model == null) return;
+        model.setNeighborhood(mode);
+        // The costs to the landmarks depend on the neighbors
+        if (heuristic == HEURISTIC_LANDMARKS) landmarks = Landmarks.compute(model, LANDMARK_COUNT);
+        PathCache cache = pathCache;
+        if (cache != null) cache.clear();
+    }
+
+    /**
+     * Sets the number of threads one search of {@link #ENGINE_PARALLEL} runs on: the worker running the search
+     * and helping threads, which are created as needed and end after 30 seconds without work.
+     * Each thread owns the nodes of some tiles of the board and passes the nodes it reaches in other tiles on to their owner.
+     * Queries spanning fewer than 64 cells run on the worker only. By default one thread per available processor is used.
+     *
+     * @param threads The number of threads per search. 1 to search on the worker only
+     */
+    public void setParallelism(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("At least one thread is needed.");
+        parallelism = threads;
+    }
+
+    /**
+     * Selects how new searches estimate the cost from a node to the destination, and how much they trust that estimate.
+     * The better the estimate, the fewer nodes a search expands. With a weight of 1 the cheapest path is found.
+     * A weight above 1 makes searches greedier and much faster on open maps, and the path
+     * costs at most that many times the cheapest one. Nodes of equal cost are always expanded
+     * closest to the destination first. {@link #ENGINE_HIERARCHICAL} keeps its own estimate.
+     *
+     * {@link #HEURISTIC_LANDMARKS} computes the costs from every cell to four landmarks now and whenever
+     * the grid is set, which takes as long as four flow fields and 16 bytes per cell. Once cells are
+     * updated, searches fall back to the octile distance until this method or {@link #setGrid(int, int, CellRules)}
+     * is called again.
+     *
+     * @param heuristic One of {@link #HEURISTIC_OCTILE}, {@link #HEURISTIC_EUCLIDEAN}, {@link #HEURISTIC_LANDMARKS}
+     *                  and {@link #HEURISTIC_MANHATTAN}
+     * @param weight The estimate is multiplied with this weight. At least 1
+     */
+    public synchronized void setHeuristic(int heuristic, float weight) {
+        if (heuristic < HEURISTIC_OCTILE || heuristic > HEURISTIC_MANHATTAN) throw new IllegalArgumentException("Unknown heuristic " + heuristic);
+        if (!(weight >= 1f)) throw new IllegalArgumentException("The weight of the heuristic must be at least 1.");
+        landmarks = heuristic == HEURISTIC_LANDMARKS && gridModel != null ? Landmarks.compute(gridModel, LANDMARK_COUNT) : null;
+        this.heuristic = heuristic;
+        heuristicWeight = weight;
+        // Cached paths may differ from those of the new heuristic
+        PathCache cache = pathCache;
+        if (cache != null) cache.clear();
+    }
+
+    /**
+     * Caches the paths of recent searches, so searches between the same starting and destination
+     * point are answered without searching again. When the cache is full, the least recently used
+     * path is evicted. When the grid changes, only the paths the change may affect are removed.
+     * By default paths are not cached.
+     *
+     * @param maxPaths The maximum number of cached paths. 0 to turn the cache off
+     */
+    public synchronized void setCacheSize(int maxPaths) {
+        if (maxPaths < 0) throw new IllegalArgumentException("The cache size must not be negative.");
+        cacheSize = maxPaths;
+        replaceCache(maxPaths > 0 && gridModel != null ? new PathCache(gridModel, maxPaths) : null);
+    }
+
+    /**
+     * @return The number of searches answered from the cache since it was created or the grid was set
+     */
+    public long getCacheHitCount() {
+        PathCache cache = pathCache;
+        return cache == null ? 0 : cache.getHitCount();
+    }
+
+    /**
+     * @return The number of searches the cache had no path for since it was created or the grid was set
+     */
+    public long getCacheMissCount() {
+        PathCache cache = pathCache;
+        return cache == null ? 0 : cache.getMissCount();
+    }
+
+    /**
+     * Limits how long a search started by {@link #findPath(int, int, int, int, int, Object, OnPathComputedListener)}
+     * keeps a worker thread busy. Once the limit is reached, the search goes back into the queue
+     * so that short searches are not held up by long ones, and continues where it stopped later on.
+     * Only applies to searches started afterwards. By default searches run without a limit.
+     * Long searches of {@link #ENGINE_PARALLEL} run on all their threads at once and can't be split into
+     * time slices, they keep the worker busy until they end or are cancelled.
+     *
+     * @param maxExpansions The maximum number of nodes expanded per time slice. 0 for no limit
+     * @param maxNanos The maximum duration of a time slice in nanoseconds. 0 for no limit
+     */
+    public void setTimeSlice(int maxExpansions, long maxNanos) {
+        if (maxExpansions < 0 || maxNanos < 0) throw new IllegalArgumentException("Time slice limits must not be negative.");
+        sliceExpansions = maxExpansions;
+        sliceNanos = maxNanos;
+    }
+
+    /**
+     * Reports the metrics of every search started afterwards via findPath, startSearch or findPathNow:
+     * its times, the nodes it has expanded, the size of its open set, its path length and result.
+     * Register a {@link SearchStatistics} to add them up. As long as no listener is registered,
+     * searches measure no time and create no metrics.
+     *
+     * @param listener Invoked on the thread of the search once it has finished
+     */
+    public void addOnSearchFinishedListener(OnSearchFinishedListener listener) {
+        searchListeners.add(listener);
+    }
+
+    /**
+     * @param listener A listener added by {@link #addOnSearchFinishedListener(OnSearchFinishedListener)}
+     */
+    public void removeOnSearchFinishedListener(OnSearchFinishedListener listener) {
+        searchListeners.remove(listener);
+    }
+
+    /**
+     * Tells the pathfinder that the cells have changed in the given region.
+     * Only this region of the compiled grid is updated, which is much faster than
+     * setting the grid again. Running searches that have already looked at nodes in this region start over.
+     * The region's right and bottom coordinates are exclusive.
+     */
+    public void updateCells(int left, int top, int right, int bottom) {
+        GridModel model = requireGrid("updating the grid");
+        model.update(rules, left, top, right, bottom);
+    }
+
+    /**
+     * Tells in constant time if a path between two points is possible at all, i.e. if both are free
+     * and lie in the same area of free cells. Searches between points in different areas fail
+     * this way before expanding a single node.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @return False if no path is possible
+     */
+    public boolean isReachable(int startX, int startY, int destX, int destY) {
+        GridModel model = requireGrid("checking reachability");
+        return model.areConnected(startY * model.width + startX, destY * model.width + destX);
+    }
+
+    /**
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @return The size of the largest unit that fits with its top-left cell on the cell, up to {@link #MAX_AGENT_SIZE}. 0 if the cell is blocked
+     */
+    public int getClearance(int x, int y) {
+        GridModel model = requireGrid("reading the board");
+        return model.getClearance(y * model.width + x);
+    }
+
+    /**
+     * Finds a path on the worker threads.
+     *
+     * The search waits for a worker thread together with other searches, ordered by priority.
+     * If a search for the same requester has not finished yet, it is cancelled
+     * and its listener is never called. The listener is invoked on the worker thread.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param priority One of {@link #PRIORITY_HIGH}, {@link #PRIORITY_NORMAL} and {@link #PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
+     * @param listener The callback interface, see {@link OnPathComputedListener#onPathComputed(int[])}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
+     */
+    public SearchHandle findPath(int startX, int startY, int destX, int destY, int priority, Object requester, OnPathComputedListener listener) {
+        return findPath(startX, startY, destX, destY, 1, priority, requester, listener);
+    }
+
+    /**
+     * Finds a path on the worker threads for a unit larger than one cell, e.g. a siege engine covering 3x3 cells.
+     * See {@link #findPath(int, int, int, int, int, Object, OnPathComputedListener)}.
+     *
+     * The unit is placed by its top-left cell: the start, the destination and every cell of the path are where
+     * that cell goes, and the unit covers @agentSize cells to the right and down from there. The search only
+     * enters cells where the whole unit fits, which the compiled board knows from the clearance of every cell,
+     * so the path needs no further checks. Costs are those of the top-left cell. {@link #ENGINE_HIERARCHICAL}
+     * searches such units with {@link #ENGINE_A_STAR}, and their paths are not cached.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param agentSize The width and height of the unit in cells, from 1 to {@link #MAX_AGENT_SIZE}
+     * @param priority One of {@link #PRIORITY_HIGH}, {@link #PRIORITY_NORMAL} and {@link #PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
+     * @param listener The callback interface, see {@link OnPathComputedListener#onPathComputed(int[])}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
+     */
+    public SearchHandle findPath(int startX, int startY, int destX, int destY, int agentSize, int priority, Object requester, OnPathComputedListener listener) {
+        if (priority < PRIORITY_HIGH || priority > PRIORITY_LOW) throw new IllegalArgumentException("Unknown priority " + priority);
+        PathSearch search = measure(new PathSearch(createSearch(startX, startY, destX, destY, agentSize), listener,
+                priority, requester, sliceExpansions, sliceNanos, cacheFor(agentSize)));
+        return scheduler.submit(search) ? search : null;
+    }
+
+    /**
+     * Finds a path on the worker threads and writes its waypoints into a buffer, so no array is allocated for it.
+     * See {@link #findPath(int, int, int, int, int, Object, OnPathComputedListener)}.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param priority One of {@link #PRIORITY_HIGH}, {@link #PRIORITY_NORMAL} and {@link #PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
+     * @param waypoints One of {@link #WAYPOINTS_ALL_CELLS}, {@link #WAYPOINTS_CORNERS} and {@link #WAYPOINTS_LINE_OF_SIGHT}
+     * @param buffer Receives the waypoints. Must not be used until the listener has been invoked
+     * @param listener The callback interface, see {@link OnWaypointsFoundListener#onWaypointsFound(WaypointBuffer)}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
+     */
+    public SearchHandle findPath(int startX, int startY, int destX, int destY, int priority, Object requester,
+                                 int waypoints, WaypointBuffer buffer, OnWaypointsFoundListener listener) {
+        if (priority < PRIORITY_HIGH || priority > PRIORITY_LOW) throw new IllegalArgumentException("Unknown priority " + priority);
+        checkWaypoints(waypoints);
+        PathSearch search = measure(new PathSearch(createSearch(startX, startY, destX, destY, 1), buffer, waypoints, listener,
+                priority, requester, sliceExpansions, sliceNanos, pathCache));
+        return scheduler.submit(search) ? search : null;
+    }
+
+    /**
+     * Finds a path on the worker threads and delivers it in two versions: a quick approximate path first,
+     * so the unit can start moving along it, then the final path. See {@link #findPath(int, int, int, int, int, Object, OnPathComputedListener)}.
+     *
+     * The approximate path comes from a search whose estimate is weighted by 3, which expands far fewer nodes
+     * and costs at most 3 times the cheapest path. The final path is searched with the heuristic and weight set via
+     * {@link #setHeuristic(int, float)} and is stored in the cache. If that weight is already 3 or more, or the cache
+     * holds the path, only the final path is delivered. The search keeps its place in the queue between both versions.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param priority One of {@link #PRIORITY_HIGH}, {@link #PRIORITY_NORMAL} and {@link #PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
+     * @param executor Runs the calls of the listener, e.g. on the game thread. Should run them in order.
+     *                 Null to call the listener on the worker thread
+     * @param listener The callback interface, see {@link OnPathRefinedListener}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
+     */
+    public SearchHandle findPathProgressively(int startX, int startY, int destX, int destY, int priority, Object requester,
+                                              Executor executor, OnPathRefinedListener listener) {
+        if (priority < PRIORITY_HIGH || priority > PRIORITY_LOW) throw new IllegalArgumentException("Unknown priority " + priority);
+        float weight = heuristicWeight;
+        AStarSearch approximation = createSearch(startX, startY, destX, destY, 1, Math.max(weight, APPROXIMATE_WEIGHT));
+        AStarSearch refinement = weight < APPROXIMATE_WEIGHT ? createSearch(startX, startY, destX, destY, 1, weight) : null;
+        PathSearch search = measure(new PathSearch(approximation, refinement, listener, executor,
+                priority, requester, sliceExpansions, sliceNanos, pathCache));
+        return scheduler.submit(search) ? search : null;
+    }
+
+    /**
+     * Finds the paths of many queries together on the worker threads.
+     *
+     * Identical queries are searched only once, and queries sharing a destination with at least three others
+     * are answered by a single search backwards from it. Such paths have the optimal cost, whatever the engine.
+     * The batch already spreads over the workers, so {@link #ENGINE_PARALLEL} searches each query on one thread.
+     * The workers of the batch wait with the single searches, ordered by priority, but are never rejected.
+     *
+     * @param requests The queries. Must not be changed until the batch has completed
+     * @param priority One of {@link #PRIORITY_HIGH}, {@link #PRIORITY_NORMAL} and {@link #PRIORITY_LOW}
+     * @param listener Invoked on a worker thread once all queries have been answered. May be null
+     * @return The batch, to wait for or cancel
+     */
+    public PathBatch findPaths(List<PathRequest> requests, int priority, OnBatchCompletedListener listener) {
+        if (priority < PRIORITY_HIGH || priority > PRIORITY_LOW) throw new IllegalArgumentException("Unknown priority " + priority);
+        GridModel model = requireGrid("finding paths");
+        int engine = this.engine;
+        PathBatch batch = new PathBatch(model, engine, engine == ENGINE_HIERARCHICAL ? getClusterGraph() : null,
+                heuristic, heuristicWeight, landmarks, pathCache, requests, listener);
+        batch.start(scheduler, priority);
+        return batch;
+    }
+
+    /**
+     * Creates a search that is run by the caller instead of a worker thread.
+     * Writes the waypoints into a buffer, see {@link #startSearch(int, int, int, int, OnPathComputedListener)}.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param waypoints One of {@link #WAYPOINTS_ALL_CELLS}, {@link #WAYPOINTS_CORNERS} and {@link #WAYPOINTS_LINE_OF_SIGHT}
+     * @param buffer Receives the waypoints. Must not be used until the listener has been invoked
+     * @param listener The callback interface, see {@link OnWaypointsFoundListener#onWaypointsFound(WaypointBuffer)}. May be null
+     * @return The search, not started yet
+     */
+    public PathSearch startSearch(int startX, int startY, int destX, int destY,
+                                  int waypoints, WaypointBuffer buffer, OnWaypointsFoundListener listener) {
+        checkWaypoints(waypoints);
+        return measure(new PathSearch(createSearch(startX, startY, destX, destY, 1), buffer, waypoints, listener,
+                PRIORITY_NORMAL, null, 0, 0, pathCache));
+    }
+
+    /**
+     * Creates a search that is run by the caller instead of a worker thread.
+     * Call {@link PathSearch#resume(int, long)} with a budget, e.g. once per frame from the game loop,
+     * until it returns true. The listener is invoked from within the last call.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param listener The callback interface, see {@link OnPathComputedListener#onPathComputed(int[])}
+     * @return The search, not started yet
+     */
+    public PathSearch startSearch(int startX, int startY, int destX, int destY, OnPathComputedListener listener) {
+        return measure(new PathSearch(createSearch(startX, startY, destX, destY, 1), listener, PRIORITY_NORMAL, null, 0, 0, pathCache));
+    }
+
+    /**
+     * Finds a path at once on the calling thread.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @return The node indices (y * width + x) of the path from the start to the destination. Null if no path is possible.
+     */
+    public int[] findPathNow(int startX, int startY, int destX, int destY) {
+        return findPathNow(startX, startY, destX, destY, 1);
+    }
+
+    /**
+     * Finds a path at once on the calling thread for a unit larger than one cell.
+     * See {@link #findPath(int, int, int, int, int, int, Object, OnPathComputedListener)}.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param agentSize The width and height of the unit in cells, from 1 to {@link #MAX_AGENT_SIZE}
+     * @return The node indices (y * width + x) of the path of the unit's top-left cell. Null if no path is possible.
+     */
+    public int[] findPathNow(int startX, int startY, int destX, int destY, int agentSize) {
+        final int[][] result = new int[1][];
+        measure(new PathSearch(createSearch(startX, startY, destX, destY, agentSize), new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] path) {
+                result[0] = path;
+            }
+        }, PRIORITY_NORMAL, null, 0, 0, cacheFor(agentSize))).resume(0, 0);
+        return result[0];
+    }
+
+    /**
+     * Finds a path at once on the calling thread and writes its waypoints into a buffer.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param waypoints One of {@link #WAYPOINTS_ALL_CELLS}, {@link #WAYPOINTS_CORNERS} and {@link #WAYPOINTS_LINE_OF_SIGHT}
+     * @param buffer Receives the waypoints from the start to the destination
+     * @return False if no path is possible
+     */
+    public boolean findPathNow(int startX, int startY, int destX, int destY, int waypoints, WaypointBuffer buffer) {
+        startSearch(startX, startY, destX, destY, waypoints, buffer, null).resume(0, 0);
+        return !buffer.isEmpty();
+    }
+
+    /**
+     * Creates a planner for one unit that keeps its search between paths and only repairs it when cells change,
+     * the unit moves on or its target moves, e.g. for units chasing a moving target. Call {@link PathPlanner#plan()}
+     * on the calling thread whenever the unit needs its path. The planner always runs on the board set when it was created.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @return The planner. Release it via {@link PathPlanner#release()} once the unit no longer needs it
+     */
+    public PathPlanner createPlanner(int startX, int startY, int destX, int destY) {
+        return new PathPlanner(requireGrid("planning a path"), startX, startY, destX, destY);
+    }
+
+    /**
+     * Computes the cost and direction of travelling from every node to the destination in one search.
+     * Many units heading to the same destination can follow the flow field instead of each one
+     * searching for its own path. The search runs on the calling thread.
+     *
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @return The flow field towards the destination
+     */
+    public FlowField createFlowField(int destX, int destY) {
+        return createFlowField(new int[] {destX}, new int[] {destY});
+    }
+
+    /**
+     * Computes the cost and direction of travelling from every node to the nearest of the targets in one search.
+     * See {@link #createFlowField(int, int)}.
+     *
+     * @param targetsX The x-coordinates of the targets
+     * @param targetsY The y-coordinates of the targets, in the same order
+     * @return The flow field towards the nearest target
+     */
+    public FlowField createFlowField(int[] targetsX, int[] targetsY) {
+        GridModel model = requireGrid("creating a flow field");
+        if (targetsX.length != targetsY.length) throw new IllegalArgumentException("Every target needs an x- and a y-coordinate.");
+        int[] targets = new int[targetsX.length];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = targetsY[i] * model.width + targetsX[i];
+        }
+        return FlowField.compute(model, targets);
+    }
+
+    /**
+     * Stops the worker threads once all queued searches have finished.
+     * The pathfinder must not be used afterwards.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+        synchronized (this) {
+            if (parallelHelpers != null) parallelHelpers.shutdown();
+        }
+    }
+
+    /**
+     * @param waypoints Checked to be one of the WAYPOINTS_ constants
+     */
+    private static void checkWaypoints(int waypoints) {
+        if (waypoints < WAYPOINTS_ALL_CELLS || waypoints > WAYPOINTS_LINE_OF_SIGHT) throw new IllegalArgumentException("Unknown waypoints " + waypoints);
+    }
+
+    /**
+     * @param agentSize The width and height of the unit in cells
+     * @return A new search on the current grid for the unit, run by the selected engine
+     */
+    private AStarSearch createSearch(int startX, int startY, int destX, int destY, int agentSize) {
+        return createSearch(startX, startY, destX, destY, agentSize, heuristicWeight);
+    }
+
+    /**
+     * @param agentSize The width and height of the unit in cells
+     * @param weight The estimate is multiplied with this weight
+     * @return A new search on the current grid for the unit, run by the selected engine
+     */
+    private AStarSearch createSearch(int startX, int startY, int destX, int destY, int agentSize, float weight) {
+        if (agentSize < 1 || agentSize > MAX_AGENT_SIZE) throw new IllegalArgumentException("The agent size must be from 1 to " + MAX_AGENT_SIZE + ".");
+        GridModel model = requireGrid("finding a path");
+        int engine = this.engine;
+        // The abstract graph only knows the passages of single cells between all eight neighbors
+        if (engine == ENGINE_HIERARCHICAL && (agentSize > 1 || model.getNeighborhood().mode != NEIGHBORS_8)) engine = ENGINE_A_STAR;
+        AStarSearch search = engine == ENGINE_PARALLEL
+                ? new ParallelSearch(model, getParallelHelpers(), parallelism, startX, startY, destX, destY)
+                : createSearch(model, engine, engine == ENGINE_HIERARCHICAL ? getClusterGraph() : null, startX, startY, destX, destY);
+        search.setHeuristic(heuristic, weight, landmarks);
+        search.setAgentSize(agentSize);
+        return search;
+    }
+
+    /**
+     * @param agentSize The width and height of the unit in cells
+     * @return The cache for paths of the unit. Null if paths are not cached or the unit is larger than one cell
+     */
+    private PathCache cacheFor(int agentSize) {
+        return agentSize == 1 ? pathCache : null;
+    }
+
+    /**
+     * @param model The grid snapshot to search on
+     * @param engine One of the ENGINE_ constants
+     * @param clusterGraph The abstract graph of @model for {@link #ENGINE_HIERARCHICAL}. Null for other engines
+     * @return A new search, run by the engine. Searches of {@link #ENGINE_PARALLEL} run on the calling thread only
+     */
+    static AStarSearch createSearch(GridModel model, int engine, ClusterGraph clusterGraph,
+                                    int startX, int startY, int destX, int destY) {
+        // Both rely on all eight neighbors
+        if ((engine == ENGINE_JUMP_POINT || engine == ENGINE_HIERARCHICAL) && model.getNeighborhood().mode != NEIGHBORS_8) engine = ENGINE_A_STAR;
+        if (engine == ENGINE_JUMP_POINT) return new JumpPointSearch(model, startX, startY, destX, destY);
+        if (engine == ENGINE_HIERARCHICAL) return new HierarchicalSearch(model, clusterGraph, startX, startY, destX, destY);
+        if (engine == ENGINE_PARALLEL) return new ParallelSearch(model, null, 1, startX, startY, destX, destY);
+        return new AStarSearch(model, startX, startY, destX, destY);
+    }
+
+    /**
+     * @param search A new search
+     * @return The search, reporting its metrics if anyone listens
+     */
+    private PathSearch measure(PathSearch search) {
+        if (!searchListeners.isEmpty()) search.measure(searchListeners);
+        return search;
+    }
+
+    /**
+     * @return The thread pool the helping threads of {@link #ENGINE_PARALLEL} run on
+     */
+    private synchronized ExecutorService getParallelHelpers() {
+        if (parallelHelpers == null) parallelHelpers = ParallelSearch.createHelpers();
+        return parallelHelpers;
+    }
+
+    /**
+     * @return The abstract graph of the current grid
+     */
+    private synchronized ClusterGraph getClusterGraph() {
+        if (clusterGraph == null || clusterGraph.model != gridModel) {
+            clusterGraph = new ClusterGraph(gridModel, CLUSTER_SIZE);
+        }
+        return clusterGraph;
+    }
+
+    /**
+     * @return The compiled grid new searches run on. Null until a grid is set
+     */
+    GridModel getGridModel() {
+        return gridModel;
+    }
+
+    /**
+     * @param action What the caller is about to do, for the error message
+     * @return The compiled grid
+     */
+    private GridModel requireGrid(String action) {
+        GridModel model = gridModel;
+        if (model == null) throw new IllegalArgumentException("No grid set! GridPathfinder#setGrid must be called before " + action + ".");
+        return model;
+    }
+}
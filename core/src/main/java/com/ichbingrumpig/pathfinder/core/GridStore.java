@@ -0,0 +1,140 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A compiled grid stored in a file next to the map, so it is loaded at the next start instead of compiled again.
+ *
+ * The file holds a header, the compiled {@link GridModel} with its area labels and clearances, and optionally
+ * the costs of the {@link Landmarks} with the neighborhood they were computed with, all in little-endian byte order.
+ * It is read via a memory mapping: the grid is copied from it in bulk, as updates change it in place, while
+ * the landmarks are read from the mapping itself, so processes loading the same file share those pages read-only.
+ *
+ * The header carries a checksum of the source the grid was compiled from, which the caller computes,
+ * e.g. over the map file. A file of another format version or source is stale and not loaded.
+ */
+final class GridStore {
+
+    /** Marks a file as a stored grid: "PFGS" */
+    private static final int MAGIC = 0x50464753;
+
+    /** The version of the file format. Files of other versions are stale */
+    private static final int FORMAT_VERSION = 3;
+
+    /** The size of the header in bytes */
+    private static final int HEADER_SIZE = 32;
+
+    /** The grid */
+    final GridModel model;
+
+    /** The landmarks of the grid. Null if none were stored */
+    final Landmarks landmarks;
+
+    private GridStore(GridModel model, Landmarks landmarks) {
+        this.model = model;
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Writes a grid into a file. The file is written under a temporary name first
+     * and then renamed, so other processes never load a file that is only partly written.
+     *
+     * @param file The file to write
+     * @param model The grid
+     * @param landmarks The landmarks of the grid. May be null
+     * @param sourceChecksum The checksum of the source the grid was compiled from
+     * @throws IOException If the file could not be written
+     */
+    static void write(File file, GridModel model, Landmarks landmarks, long sourceChecksum) throws IOException {
+        int landmarkCount = landmarks == null || !landmarks.isValid(model) ? 0 : landmarks.size();
+        int neighborhood = landmarkCount > 0 ? landmarks.neighborhood : GridPathfinder.NEIGHBORS_8;
+        long size = HEADER_SIZE + GridModel.storedSize(model.width, model.height) + 4L * landmarkCount * model.size();
+        if (size > Integer.MAX_VALUE) throw new IOException("The grid is too large to be stored in one file.");
+
+        File written = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(written, "rw");
+        try {
+            out.setLength(size);
+            MappedByteBuffer buffer = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putLong(sourceChecksum);
+            buffer.putInt(model.width);
+            buffer.putInt(model.height);
+            buffer.putInt(landmarkCount);
+            buffer.putInt(neighborhood);
+            model.write(buffer);
+            if (landmarkCount > 0) landmarks.write(buffer);
+            buffer.force();
+        } finally {
+            out.close();
+        }
+        if (!written.renameTo(file)) {
+            // Some platforms don't rename over existing files
+            if (!file.delete() || !written.renameTo(file)) throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * Loads a grid written by {@link #write(File, GridModel, Landmarks, long)}.
+     *
+     * @param file The file to read
+     * @param sourceChecksum The checksum of the source the grid should have been compiled from
+     * @return The grid and its landmarks, or null if the file does not exist or is stale
+     * @throws IOException If the file could not be read
+     */
+    static GridStore read(File file, long sourceChecksum) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) return null;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+        try {
+            // The mapping stays valid once the file is closed
+            buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+        } finally {
+            in.close();
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getLong() != sourceChecksum) return null;
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int landmarkCount = buffer.getInt();
+        int neighborhood = buffer.getInt();
+        if (width < 1 || height < 1 || landmarkCount < 0) return null;
+        long size = (long) width * height;
+        // Files that were cut short are stale as well
+        if (buffer.capacity() != HEADER_SIZE + GridModel.storedSize(width, height) + 4 * landmarkCount * size) return null;
+
+        GridModel model = GridModel.read(buffer, width, height);
+        Landmarks landmarks = landmarkCount > 0 ? Landmarks.read(buffer, landmarkCount, model, neighborhood) : null;
+        return new GridStore(model, landmarks);
+    }
+
+    /**
+     * Writes all values of an array in bulk.
+     *
+     * @param buffer Receives the values at its position, which is moved past them
+     * @param values The values
+     */
+    static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + 4 * values.length);
+    }
+
+    /**
+     * Reads values written by {@link #putInts(ByteBuffer, int[])} in bulk.
+     *
+     * @param buffer Holds the values at its position, which is moved past them
+     * @param values Receives the values
+     */
+    static void getInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * values.length);
+    }
+}
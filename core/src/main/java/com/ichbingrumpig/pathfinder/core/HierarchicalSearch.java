@@ -0,0 +1,65 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical pathfinding (HPA*).
+ *
+ * The search first finds a path on the {@link ClusterGraph}, which only consists of the
+ * entrances between clusters, and then refines it with A* on the grid, restricted to the
+ * corridor of clusters that path runs through. Long paths are found in a fraction of the time
+ * a search over the whole grid takes. They are close to, but not always exactly, the optimum.
+ */
+class HierarchicalSearch extends AStarSearch {
+
+    /** The abstract graph of the grid */
+    private final ClusterGraph graph;
+
+    /** The clusters the search may enter, indexed by cluster */
+    private final boolean[] corridor;
+
+    /**
+     * Constructor for a new search.
+     *
+     * @param model The grid snapshot to search on
+     * @param graph The abstract graph of the grid
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     */
+    HierarchicalSearch(GridModel model, ClusterGraph graph, int startX, int startY, int destX, int destY) {
+        super(model, startX, startY, destX, destY);
+        this.graph = graph;
+        corridor = new boolean[graph.getClusterCount()];
+    }
+
+    @Override
+    boolean begin() {
+        int start = startY * model.width + startX;
+        int dest = destY * model.width + destX;
+        if (model.isBlocked(start) || model.isBlocked(dest)) return false;
+        if (!graph.findCorridor(start, dest, corridor)) {
+            // The abstract graph only crosses cluster borders straight.
+            // Paths that can only cross them diagonally are found on the whole grid
+            Arrays.fill(corridor, true);
+        }
+        return super.begin();
+    }
+
+    @Override
+    int getEngine() {
+        return GridPathfinder.ENGINE_HIERARCHICAL;
+    }
+
+    @Override
+    boolean canEnter(int n, int x, int y) {
+        return corridor[graph.clusterOf(x, y)] && !model.isBlocked(n);
+    }
+
+    @Override
+    int heuristic(int x, int y) {
+        int h = octileDistance(x, y);
+        return h + (h >> 7);
+    }
+}
@@ -0,0 +1,123 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts values in buckets of powers of two, safe to record from any thread.
+ *
+ * Bucket 0 holds the value 0, bucket i the values from 2^(i - 1) to 2^i - 1.
+ * Percentiles are therefore only precise up to a factor of two, which is enough
+ * to spot where the time goes and cheap enough to record every search.
+ */
+public final class Histogram {
+
+    /** The number of buckets, enough for every non-negative long */
+    public static final int BUCKETS = 64;
+
+    /** The number of values in each bucket */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /** The number of values */
+    private final AtomicLong count = new AtomicLong();
+
+    /** The sum of all values */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** The largest value */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value The value to count. Negative values count as 0
+     */
+    void record(long value) {
+        if (value < 0) value = 0;
+        buckets.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // Another thread has raised the maximum in the meantime
+        }
+    }
+
+    /**
+     * @return The bucket of the value
+     */
+    private static int bucketOf(long value) {
+        return Math.min(64 - Long.numberOfLeadingZeros(value), BUCKETS - 1);
+    }
+
+    /**
+     * @return The number of values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return The sum of all values
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * @return The average value. 0 if there are no values
+     */
+    public double getMean() {
+        long values = count.get();
+        return values == 0 ? 0 : (double) sum.get() / values;
+    }
+
+    /**
+     * @return The largest value. 0 if there are no values
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile The percentile from 0 to 100, e.g. 99 for the value 99 percent of the values are not above
+     * @return The upper bound of the bucket the percentile falls into, but no more than the largest value.
+     *          0 if there are no values
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+        long values = count.get();
+        if (values == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(values * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) return Math.min(getBucketUpperBound(bucket), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * @param bucket The bucket from 0 to {@link #BUCKETS} - 1
+     * @return The number of values in the bucket
+     */
+    public long getBucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * @param bucket The bucket from 0 to {@link #BUCKETS} - 1
+     * @return The largest value the bucket holds
+     */
+    public static long getBucketUpperBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /**
+     * Forgets all values.
+     */
+    void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) buckets.set(bucket, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+}
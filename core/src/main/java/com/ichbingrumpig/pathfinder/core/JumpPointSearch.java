@@ -0,0 +1,174 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * Implementation of Jump Point Search on top of the A* algorithm.
+ *
+ * Where all travelling factors are 1, most paths of equal cost are symmetric. Instead of
+ * adding every neighbor to the open set, the search jumps ahead in straight and diagonal lines
+ * and only stops at jump points: nodes where an obstacle forces the optimal path to turn,
+ * the destination and nodes next to other travelling factors. This cuts the number of expanded
+ * nodes by an order of magnitude on open maps while finding paths of the same cost.
+ *
+ * Nodes the {@link GridModel} does not mark as uniform are expanded to all of their neighbors
+ * one step at a time, like {@link AStarSearch} does, so the search stays optimal around them.
+ * It relies on all eight neighbors, see {@link GridPathfinder#NEIGHBORS_8}.
+ * Consecutive jump points on a path are connected by straight or diagonal lines of nodes.
+ */
+class JumpPointSearch extends AStarSearch {
+
+    /** The box around every line the search has jumped along, inclusive. The nodes on the lines are never materialised */
+    private int boxLeft, boxTop, boxRight, boxBottom;
+
+    /**
+     * Constructor for a new search.
+     *
+     * @param model The grid snapshot to search on
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     */
+    JumpPointSearch(GridModel model, int startX, int startY, int destX, int destY) {
+        super(model, startX, startY, destX, destY);
+    }
+
+    @Override
+    boolean begin() {
+        boxLeft = boxRight = startX;
+        boxTop = boxBottom = startY;
+        return super.begin();
+    }
+
+    @Override
+    int getEngine() {
+        return GridPathfinder.ENGINE_JUMP_POINT;
+    }
+
+    @Override
+    boolean hasLookedAt(int[] region) {
+        // Changes anywhere along the lines may block a path between two jump points
+        if (region[0] <= boxRight && boxLeft < region[2] && region[1] <= boxBottom && boxTop < region[3]) return true;
+        // Neighbors of nodes with other travelling factors are materialised one step at a time
+        return super.hasLookedAt(region);
+    }
+
+    @Override
+    void expand(int current, int x, int y) {
+        int parent = workspace.parent[current];
+        if (!model.isUniform(current)) {
+            super.expand(current, x, y);
+            return;
+        }
+        if (parent < 0) {
+            // The starting node looks in all directions
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if (dx != 0 || dy != 0) jump(current, x, y, dx, dy);
+                }
+            }
+            return;
+        }
+
+        // Only look further in the direction the node was reached from
+        int dx = Integer.signum(x - parent % model.width);
+        int dy = Integer.signum(y - parent / model.width);
+        if (dx != 0 && dy != 0) {
+            jump(current, x, y, dx, dy);
+            jump(current, x, y, dx, 0);
+            jump(current, x, y, 0, dy);
+            // Forced neighbors
+            if (!isFree(x - dx, y)) jump(current, x, y, -dx, dy);
+            if (!isFree(x, y - dy)) jump(current, x, y, dx, -dy);
+        } else if (dx != 0) {
+            jump(current, x, y, dx, 0);
+            if (!isFree(x, y + 1)) jump(current, x, y, dx, 1);
+            if (!isFree(x, y - 1)) jump(current, x, y, dx, -1);
+        } else {
+            jump(current, x, y, 0, dy);
+            if (!isFree(x + 1, y)) jump(current, x, y, 1, dy);
+            if (!isFree(x - 1, y)) jump(current, x, y, -1, dy);
+        }
+    }
+
+    /**
+     * Looks for the next jump point from [x, y] in the given direction
+     * and evaluates the cost of travelling there.
+     *
+     * @param current The node index of the current node at [x, y]
+     * @param x The x-coordinate of the current node
+     * @param y The y-coordinate of the current node
+     * @param dx The horizontal direction, -1, 0 or 1
+     * @param dy The vertical direction, -1, 0 or 1
+     */
+    private void jump(int current, int x, int y, int dx, int dy) {
+        int steps = 0;
+        do {
+            x += dx;
+            y += dy;
+            steps++;
+            if (!isFree(x, y)) {
+                jumpedTo(x, y);
+                return;
+            }
+        } while (!isJumpPoint(x, y, dx, dy));
+        jumpedTo(x, y);
+
+        int cost = dx != 0 && dy != 0 ? DIAGONAL_COST : V_H_COST;
+        // All nodes before the jump point have a travelling factor of 1
+        int nGCost = workspace.gCost[current] + (steps - 1) * cost
+                + (int) (cost * model.getTravellingFactor(y * model.width + x));
+        relax(current, y * model.width + x, x, y, nGCost);
+    }
+
+    /**
+     * Grows the box around the lines the search has jumped along.
+     *
+     * @param x The x-coordinate of the node a jump ended on
+     * @param y The y-coordinate of the node a jump ended on
+     */
+    private void jumpedTo(int x, int y) {
+        if (x < boxLeft) boxLeft = x;
+        else if (x > boxRight) boxRight = x;
+        if (y < boxTop) boxTop = y;
+        else if (y > boxBottom) boxBottom = y;
+    }
+
+    /**
+     * @param x The x-coordinate of a free node
+     * @param y The y-coordinate of a free node
+     * @param dx The horizontal direction the node was reached in
+     * @param dy The vertical direction the node was reached in
+     * @return If the search has to stop at the node
+     */
+    private boolean isJumpPoint(int x, int y, int dx, int dy) {
+        if ((x == destX && y == destY) || !model.isUniform(y * model.width + x)) return true;
+        if (dx != 0 && dy != 0) {
+            if ((!isFree(x - dx, y) && isFree(x - dx, y + dy)) || (!isFree(x, y - dy) && isFree(x + dx, y - dy))) return true;
+            // Straight lines branching off the diagonal
+            return hasJumpPoint(x, y, dx, 0) || hasJumpPoint(x, y, 0, dy);
+        }
+        if (dx != 0) {
+            return (!isFree(x, y + 1) && isFree(x + dx, y + 1)) || (!isFree(x, y - 1) && isFree(x + dx, y - 1));
+        }
+        return (!isFree(x + 1, y) && isFree(x + 1, y + dy)) || (!isFree(x - 1, y) && isFree(x - 1, y + dy));
+    }
+
+    /**
+     * @return If a straight line from [x, y] in the given direction reaches a jump point
+     */
+    private boolean hasJumpPoint(int x, int y, int dx, int dy) {
+        while (true) {
+            x += dx;
+            y += dy;
+            if (!isFree(x, y)) return false;
+            if (isJumpPoint(x, y, dx, dy)) return true;
+        }
+    }
+
+    /**
+     * @return If [x, y] lies on the board and the unit fits there
+     */
+    private boolean isFree(int x, int y) {
+        return x >= 0 && y >= 0 && x < model.width && y < model.height && model.fits(y * model.width + x, agentSize);
+    }
+}
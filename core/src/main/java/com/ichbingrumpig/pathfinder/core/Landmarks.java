@@ -0,0 +1,156 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Precomputed costs of travelling from every node to a few landmarks, for the ALT heuristic
+ * (A*, landmarks and the triangle inequality).
+ *
+ * Travelling from a node n to the destination t and on to a landmark L costs at least as much
+ * as travelling from n to L directly, so cost(n, t) >= cost(n, L) - cost(t, L). The best of these
+ * bounds is much closer to the real cost than the octile distance on maps with walls and mazes.
+ * The landmarks are spread over the area of the first free node: each one is the node furthest
+ * from those chosen before. Searches in other areas get no better bound than the octile distance.
+ *
+ * Every landmark takes four bytes per node. The costs are a snapshot: once the grid or its neighborhood changes,
+ * {@link #isValid(GridModel)} turns false and searches fall back to the octile distance.
+ * Landmarks loaded from a {@link GridStore} read their costs straight from the mapped file.
+ */
+final class Landmarks {
+
+    /** The cost of travelling from every node to each landmark, {@link FlowField#UNREACHABLE} if it can't be reached */
+    private final IntBuffer[] costs;
+
+    /** The version of the grid the costs have been computed on */
+    private final int version;
+
+    /** The neighborhood the costs have been computed with. One of the GridPathfinder.NEIGHBORS_ constants */
+    final int neighborhood;
+
+    private Landmarks(IntBuffer[] costs, int version, int neighborhood) {
+        this.costs = costs;
+        this.version = version;
+        this.neighborhood = neighborhood;
+    }
+
+    /**
+     * Chooses the landmarks and computes the costs of travelling to them.
+     *
+     * @param model The grid
+     * @param count The number of landmarks
+     * @return The landmarks, fewer than @count if the board has fewer free nodes
+     */
+    static Landmarks compute(GridModel model, int count) {
+        final int version = model.getVersion();
+        final int neighborhood = model.getNeighborhood().mode;
+        final int size = model.size();
+        int[][] costs = new int[count][];
+        int chosen = 0;
+
+        // The first landmark is the node furthest from the first free node
+        int seed = 0;
+        while (seed < size && model.isBlocked(seed)) seed++;
+        if (seed == size) return new Landmarks(new IntBuffer[0], version, neighborhood);
+        int[] fromSeed = FlowField.compute(model, new int[] {seed}).getCosts();
+        int landmark = furthest(fromSeed, null, 0);
+
+        while (chosen < count && landmark >= 0) {
+            costs[chosen++] = FlowField.compute(model, new int[] {landmark}).getCosts();
+            landmark = furthest(fromSeed, costs, chosen);
+        }
+        IntBuffer[] buffers = new IntBuffer[chosen];
+        for (int i = 0; i < chosen; i++) {
+            buffers[i] = IntBuffer.wrap(costs[i]);
+        }
+        return new Landmarks(buffers, version, neighborhood);
+    }
+
+    /**
+     * Writes the costs of every landmark, see {@link GridStore}.
+     * @param buffer Receives the costs at its position, which is moved past them
+     */
+    void write(ByteBuffer buffer) {
+        for (IntBuffer toLandmark : costs) {
+            IntBuffer all = toLandmark.duplicate();
+            all.rewind();
+            buffer.asIntBuffer().put(all);
+            buffer.position(buffer.position() + 4 * all.capacity());
+        }
+    }
+
+    /**
+     * Reads the costs written by {@link #write(ByteBuffer)} without copying them.
+     *
+     * @param buffer Holds the costs at its position, which is moved past them. Must not be changed afterwards
+     * @param count The number of landmarks
+     * @param model The grid the landmarks have been computed on
+     * @param neighborhood The neighborhood the landmarks have been computed with
+     * @return The landmarks, valid until the grid changes
+     */
+    static Landmarks read(ByteBuffer buffer, int count, GridModel model, int neighborhood) {
+        IntBuffer[] costs = new IntBuffer[count];
+        for (int i = 0; i < count; i++) {
+            IntBuffer toLandmark = buffer.asIntBuffer();
+            toLandmark.limit(model.size());
+            costs[i] = toLandmark.slice();
+            buffer.position(buffer.position() + 4 * model.size());
+        }
+        return new Landmarks(costs, model.getVersion(), neighborhood);
+    }
+
+    /**
+     * @param reachable The costs of a field covering the nodes to choose from
+     * @param costs The costs of the landmarks chosen so far. Null if none
+     * @param chosen The number of landmarks chosen so far
+     * @return The reachable node furthest from all chosen landmarks, or from @reachable's target if none.
+     *          -1 if every reachable node is a landmark
+     */
+    private static int furthest(int[] reachable, int[][] costs, int chosen) {
+        int best = -1;
+        int bestCost = 0;
+        for (int n = 0; n < reachable.length; n++) {
+            if (reachable[n] == FlowField.UNREACHABLE) continue;
+            int cost = chosen == 0 ? reachable[n] : Integer.MAX_VALUE;
+            for (int i = 0; i < chosen; i++) {
+                cost = Math.min(cost, costs[i][n]);
+            }
+            if (cost > bestCost) {
+                best = n;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param model The grid the landmarks have been computed on
+     * @return False if the grid or its neighborhood has changed since, so the costs may overestimate
+     */
+    boolean isValid(GridModel model) {
+        return model.getVersion() == version && model.getNeighborhood().mode == neighborhood;
+    }
+
+    /**
+     * @param node The node index
+     * @param dest The node index of the destination
+     * @return A cost travelling from @node to @dest can't undercut
+     */
+    int lowerBound(int node, int dest) {
+        int bound = 0;
+        for (IntBuffer toLandmark : costs) {
+            int fromNode = toLandmark.get(node), fromDest = toLandmark.get(dest);
+            if (fromNode != FlowField.UNREACHABLE && fromDest != FlowField.UNREACHABLE) {
+                bound = Math.max(bound, fromNode - fromDest);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * @return The number of landmarks
+     */
+    int size() {
+        return costs.length;
+    }
+}
@@ -0,0 +1,152 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * The neighbors of a node under one of the GridPathfinder.NEIGHBORS_ modes, as a table of steps.
+ *
+ * Every step holds its x- and y-offset, its offset in node indices (y * width + x) and its cost before the
+ * travelling factor. Searches walk the table instead of checking each direction on its own. Nodes off the
+ * border of the board have all their neighbors on the board, so only nodes on the border check the coordinates.
+ *
+ * On hexagonal boards every odd row is shifted half a cell to the right, so the neighbors of odd rows differ
+ * from those of even rows. The table holds the steps of even rows first and those of odd rows after them,
+ * see {@link #first(int)}. Other modes have the same steps twice.
+ */
+final class Neighborhood {
+
+    /** The steps of every mode as x- and y-offsets. Straight steps cost {@link AStarSearch#V_H_COST}, diagonal ones {@link AStarSearch#DIAGONAL_COST} */
+    private static final int[][] EIGHT = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+    private static final int[][] FOUR = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+
+    /** The steps of even and odd rows of hexagonal boards. All of them cost {@link AStarSearch#V_H_COST} */
+    private static final int[][] HEX_EVEN_ROWS = {{1, 0}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}};
+    private static final int[][] HEX_ODD_ROWS = {{1, 0}, {1, 1}, {0, 1}, {-1, 0}, {0, -1}, {1, -1}};
+
+    /** One of the GridPathfinder.NEIGHBORS_ constants */
+    final int mode;
+
+    /** The board dimensions */
+    private final int width, height;
+
+    /** The number of neighbors of every node */
+    final int count;
+
+    /** The x- and y-offset of every step */
+    final int[] stepX, stepY;
+
+    /** The offset of every step in node indices */
+    final int[] offsets;
+
+    /** The cost of every step before the travelling factor of the node it enters */
+    final int[] costs;
+
+    /** The index offsets of the two nodes beside every diagonal step. 0, i.e. the node itself, for straight steps */
+    final int[] sideX, sideY;
+
+    /** The step back from the neighbor of every step, an index into this table */
+    final int[] opposite;
+
+    /** If diagonal steps need both nodes beside them to be free, see {@link #sideX} and {@link #sideY} */
+    final boolean checksCorners;
+
+    /** The cost of a step one node diagonally, for the octile distance. Twice the straight cost if there are no such steps */
+    final int diagonalCost;
+
+    /**
+     * Constructor for the table of a board.
+     *
+     * @param mode One of the GridPathfinder.NEIGHBORS_ constants
+     * @param width The width of the board
+     * @param height The height of the board
+     */
+    Neighborhood(int mode, int width, int height) {
+        this.mode = mode;
+        this.width = width;
+        this.height = height;
+        int[][] even, odd;
+        switch (mode) {
+            case GridPathfinder.NEIGHBORS_4:
+                even = odd = FOUR;
+                diagonalCost = 2 * AStarSearch.V_H_COST;
+                break;
+            case GridPathfinder.NEIGHBORS_HEX:
+                even = HEX_EVEN_ROWS;
+                odd = HEX_ODD_ROWS;
+                // The neighbors in the row above and below are one step away
+                diagonalCost = AStarSearch.V_H_COST;
+                break;
+            default:
+                even = odd = EIGHT;
+                diagonalCost = AStarSearch.DIAGONAL_COST;
+        }
+        checksCorners = mode == GridPathfinder.NEIGHBORS_8_NO_CORNER_CUTTING;
+        count = even.length;
+        stepX = new int[2 * count];
+        stepY = new int[2 * count];
+        offsets = new int[2 * count];
+        costs = new int[2 * count];
+        sideX = new int[2 * count];
+        sideY = new int[2 * count];
+        opposite = new int[2 * count];
+        for (int i = 0; i < 2 * count; i++) {
+            int[] step = i < count ? even[i] : odd[i - count];
+            int dx = step[0], dy = step[1];
+            boolean diagonal = dx != 0 && dy != 0;
+            stepX[i] = dx;
+            stepY[i] = dy;
+            offsets[i] = dy * width + dx;
+            costs[i] = diagonal && mode != GridPathfinder.NEIGHBORS_HEX ? AStarSearch.DIAGONAL_COST : AStarSearch.V_H_COST;
+            sideX[i] = diagonal ? dx : 0;
+            sideY[i] = diagonal ? dy * width : 0;
+        }
+        for (int i = 0; i < 2 * count; i++) {
+            // The neighbor lies in the other half of the table if the step changes the row
+            int back = (i < count) == (stepY[i] == 0) ? 0 : count;
+            for (int j = back; j < back + count; j++) {
+                if (stepX[j] == -stepX[i] && stepY[j] == -stepY[i]) opposite[i] = j;
+            }
+        }
+    }
+
+    /**
+     * @param y The y-coordinate of the node
+     * @return The index of the first step of nodes in this row. The node has {@link #count} steps from there
+     */
+    int first(int y) {
+        return (y & 1) * count;
+    }
+
+    /**
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @return If all neighbors of the node lie on the board
+     */
+    boolean isInterior(int x, int y) {
+        return x > 0 && y > 0 && x < width - 1 && y < height - 1;
+    }
+
+    /**
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @return If the node lies on the board
+     */
+    boolean isOnBoard(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * Looks up a neighbor for searches of single cells.
+     * Meant for searches that don't run as often as those of {@link AStarSearch}, which checks inline.
+     *
+     * @param model The grid
+     * @param node The node index
+     * @param x The x-coordinate of the node
+     * @param y The y-coordinate of the node
+     * @param step An index into the table, from {@link #first(int)} of the node's row
+     * @return The node index of the neighbor or -1 if it lies off the board or the step cuts the corner of a blocked node
+     */
+    int neighbor(GridModel model, int node, int x, int y, int step) {
+        if (!isOnBoard(x + stepX[step], y + stepY[step])) return -1;
+        if (checksCorners && (model.isBlocked(node + sideX[step]) || model.isBlocked(node + sideY[step]))) return -1;
+        return node + offsets[step];
+    }
+}
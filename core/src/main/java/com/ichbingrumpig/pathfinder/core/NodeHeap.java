@@ -0,0 +1,253 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.Arrays;
+
+/**
+ * The open set of the A* implementation.
+ *
+ * An indexed binary min-heap of node indices (index = y * boardWidth + x).
+ * Besides the heap itself it stores the heap slot of every node by its node index,
+ * so checking whether a node is in the open set takes O(1)
+ * and lowering a node's cost (decrease-key) takes O(log n).
+ * Nodes with equal keys are ordered by a second key, so ties are broken the same way every time.
+ */
+class NodeHeap {
+
+    /** Marks a node that is not in the heap */
+    private static final int NOT_IN_HEAP = -1;
+
+    /** The node indices, ordered as a binary heap */
+    private int[] heap;
+
+    /** The key (final cost) of the node at the same position in {@link #heap} */
+    private int[] keys;
+
+    /** The tie breaker of the node at the same position in {@link #heap}. The lower one is polled first */
+    private int[] ties;
+
+    /** The heap slot of every node by its node index. {@link #NOT_IN_HEAP} if not in the heap */
+    private final int[] slots;
+
+    /** The number of nodes in the heap */
+    private int size = 0;
+
+    /** The largest number of nodes in the heap since it was last cleared */
+    private int peakSize = 0;
+
+    /** Constructor
+     *
+     * @param capacity The number of nodes in the grid. Node indices must be smaller than this.
+     */
+    NodeHeap(int capacity) {
+        heap = new int[16];
+        keys = new int[16];
+        ties = new int[16];
+        slots = new int[capacity];
+        Arrays.fill(slots, NOT_IN_HEAP);
+    }
+
+    /**
+     * @param node The node index
+     * @return If the node is currently in the heap
+     */
+    boolean contains(int node) {
+        return slots[node] != NOT_IN_HEAP;
+    }
+
+    /**
+     * @return If the heap contains no nodes
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The number of nodes in the heap
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The largest number of nodes in the heap since it was last cleared
+     */
+    int getPeakSize() {
+        return peakSize;
+    }
+
+    /**
+     * @param node The node index. Must be in the heap.
+     * @return The current key of the node
+     */
+    int getKey(int node) {
+        return keys[slots[node]];
+    }
+
+    /**
+     * Adds a node to the heap.
+     * @param node The node index. Must not be in the heap yet.
+     * @param key The key (final cost) of the node
+     */
+    void add(int node, int key) {
+        add(node, key, 0);
+    }
+
+    /**
+     * Adds a node to the heap.
+     * @param node The node index. Must not be in the heap yet.
+     * @param key The key (final cost) of the node
+     * @param tie Decides between nodes with the same key, the lower one is polled first. Kept by {@link #decreaseKey(int, int)}
+     */
+    void add(int node, int key, int tie) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+            ties = Arrays.copyOf(ties, size * 2);
+        }
+        heap[size] = node;
+        keys[size] = key;
+        ties[size] = tie;
+        slots[node] = size;
+        siftUp(size++);
+        if (size > peakSize) peakSize = size;
+    }
+
+    /**
+     * Lowers the key of a node that is already in the heap and restores the heap order.
+     * @param node The node index. Must be in the heap.
+     * @param key The new key. Must not be bigger than the current one.
+     */
+    void decreaseKey(int node, int key) {
+        int slot = slots[node];
+        keys[slot] = key;
+        siftUp(slot);
+    }
+
+    /**
+     * Changes both keys of a node that is already in the heap, up or down, and restores the heap order.
+     *
+     * @param node The node index. Must be in the heap.
+     * @param key The new key
+     * @param tie The new tie breaker
+     */
+    void update(int node, int key, int tie) {
+        int slot = slots[node];
+        boolean lower = isLower(key, tie, keys[slot], ties[slot]);
+        keys[slot] = key;
+        ties[slot] = tie;
+        if (lower) siftUp(slot);
+        else siftDown(slot);
+    }
+
+    /**
+     * Removes a node from anywhere in the heap.
+     * @param node The node index. Must be in the heap.
+     */
+    void remove(int node) {
+        int slot = slots[node];
+        slots[node] = NOT_IN_HEAP;
+        if (slot == --size) return;
+        int moved = heap[size];
+        move(size, slot);
+        // The last entry takes the slot, and may belong above or below it
+        siftUp(slot);
+        if (slots[moved] == slot) siftDown(slot);
+    }
+
+    /**
+     * @return The node with the lowest key, without removing it. -1 if the heap is empty
+     */
+    int peek() {
+        return size == 0 ? -1 : heap[0];
+    }
+
+    /**
+     * @return The lowest key. Only valid if the heap is not empty
+     */
+    int peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * @return The tie breaker of the node with the lowest key. Only valid if the heap is not empty
+     */
+    int peekTie() {
+        return ties[0];
+    }
+
+    /**
+     * Removes the node with the lowest key from the heap.
+     * @return The node index of the removed node or -1 if the heap is empty
+     */
+    int poll() {
+        if (size == 0) return -1;
+        int node = heap[0];
+        slots[node] = NOT_IN_HEAP;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            keys[0] = keys[size];
+            ties[0] = ties[size];
+            slots[heap[0]] = 0;
+            siftDown(0);
+        }
+        return node;
+    }
+
+    /**
+     * Removes all nodes from the heap. Only touches the slots of nodes still in the heap.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) slots[heap[i]] = NOT_IN_HEAP;
+        size = 0;
+        peakSize = 0;
+    }
+
+    private void siftUp(int slot) {
+        int node = heap[slot];
+        int key = keys[slot];
+        int tie = ties[slot];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (!isLower(key, tie, keys[parent], ties[parent])) break;
+            move(parent, slot);
+            slot = parent;
+        }
+        heap[slot] = node;
+        keys[slot] = key;
+        ties[slot] = tie;
+        slots[node] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int node = heap[slot];
+        int key = keys[slot];
+        int tie = ties[slot];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            if (child + 1 < size && isLower(keys[child + 1], ties[child + 1], keys[child], ties[child])) child++;
+            if (!isLower(keys[child], ties[child], key, tie)) break;
+            move(child, slot);
+            slot = child;
+        }
+        heap[slot] = node;
+        keys[slot] = key;
+        ties[slot] = tie;
+        slots[node] = slot;
+    }
+
+    /**
+     * @return If the first entry is polled before the second one
+     */
+    private static boolean isLower(int key, int tie, int otherKey, int otherTie) {
+        return key < otherKey || (key == otherKey && tie < otherTie);
+    }
+
+    /** Moves the entry at slot @from to slot @to */
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        ties[to] = ties[from];
+        slots[heap[to]] = to;
+    }
+}
@@ -0,0 +1,15 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * Callback interface of {@link GridPathfinder#findPaths(java.util.List, int, OnBatchCompletedListener)}.
+ */
+public interface OnBatchCompletedListener {
+
+    /**
+     * Invoked once on the worker thread that finishes the last query of the batch.
+     * Not invoked if the batch has been cancelled.
+     *
+     * @param batch The completed batch. Every {@link PathRequest} of it holds its path.
+     */
+    void onBatchCompleted(PathBatch batch);
+}
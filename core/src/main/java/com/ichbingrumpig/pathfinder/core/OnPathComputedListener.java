@@ -0,0 +1,17 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * Callback of a {@link GridPathfinder} search.
+ * Once the search has finished {@link #onPathComputed(int[])} is invoked with the waypoints
+ * of the path, or with null if no path is possible.
+ */
+public interface OnPathComputedListener {
+
+    /**
+     * Invoked either once a path was found or if no path is possible.
+     *
+     * @param path The node indices (y * width + x) of every cell of the path, from the start
+     *             to the destination. The array belongs to the listener. Null if no path is possible.
+     */
+    void onPathComputed(int[] path);
+}
@@ -0,0 +1,18 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * Callback of a {@link GridPathfinder} search that delivers its path in several versions.
+ * A quick approximate path arrives first via {@link #onApproximatePathComputed(int[])}, so the unit can
+ * start moving, and the final path via {@link #onPathComputed(int[])} once the search has refined it.
+ */
+public interface OnPathRefinedListener extends OnPathComputedListener {
+
+    /**
+     * Invoked once an approximate path was found, before the final path. Not invoked if no path is possible,
+     * if the search is cancelled or has already finished by the time the delivery runs.
+     *
+     * @param path The node indices (y * width + x) of every cell of the path, from the start
+     *             to the destination. It may cost more than the final path. The array belongs to the listener.
+     */
+    void onApproximatePathComputed(int[] path);
+}
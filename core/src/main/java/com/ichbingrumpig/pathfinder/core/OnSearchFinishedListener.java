@@ -0,0 +1,15 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * Receives the metrics of every search, see {@link GridPathfinder#addOnSearchFinishedListener(OnSearchFinishedListener)}.
+ */
+public interface OnSearchFinishedListener {
+
+    /**
+     * Invoked on the thread the search ran on, once it has found a path, found none or has been cancelled,
+     * before the search's own listener. Keep it short, it holds up the search.
+     *
+     * @param metrics The metrics of the search
+     */
+    void onSearchFinished(SearchMetrics metrics);
+}
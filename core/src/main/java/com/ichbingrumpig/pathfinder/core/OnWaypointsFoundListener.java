@@ -0,0 +1,15 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * Callback of a search that writes its path into a {@link WaypointBuffer}.
+ */
+public interface OnWaypointsFoundListener {
+
+    /**
+     * Invoked either once a path was found or if no path is possible.
+     *
+     * @param waypoints The buffer passed to the search, holding the waypoints from the start
+     *                  to the destination. Empty if no path is possible.
+     */
+    void onWaypointsFound(WaypointBuffer waypoints);
+}
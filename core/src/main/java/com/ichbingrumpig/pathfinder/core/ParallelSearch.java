@@ -0,0 +1,491 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hash distributed A* (HDA*), which spreads a single search over several threads.
+ *
+ * Every node is owned by one partition, picked by a hash of the 8x8 tile the node lies in.
+ * Each partition runs on its own thread with its own open set and is the only one to write the costs
+ * and parents of its nodes in the shared {@link SearchWorkspace}. Neighbors owned by another partition
+ * are sent to it in batches through a lock-free queue. A node is expanded again whenever a cheaper way
+ * to it arrives later, so the path costs as much as the one plain A* finds.
+ *
+ * The search ends once no partition has a node left that could lead to a cheaper path and no batch
+ * is on its way. A single counter of the active partitions plus the batches in flight tells both at once.
+ * Short queries are not worth the threads and are searched by plain A* on the calling thread.
+ *
+ * The partitions run from start to end within the first step, which waits for them. The budget of a step,
+ * i.e. the time slices of the scheduler and of {@link PathSearch#resume(int, long)}, does not apply to them.
+ * Cancelling stops every partition at its next round, so the step returns soon after.
+ */
+class ParallelSearch extends AStarSearch {
+
+    /** Queries spanning fewer cells vertically and horizontally run on the calling thread only */
+    private static final int MIN_PARALLEL_DISTANCE = 64;
+
+    /** The nodes of one partition lie in tiles of 2^TILE_SHIFT by 2^TILE_SHIFT cells */
+    private static final int TILE_SHIFT = 3;
+
+    /** The maximum number of nodes a partition sends to another one in one batch */
+    private static final int BATCH_SIZE = 128;
+
+    /** The number of nodes a partition expands before it sends its batches and looks for new ones */
+    private static final int EXPANSIONS_PER_ROUND = 64;
+
+    /** The number of times an idle partition yields before it parks between looking for batches */
+    private static final int IDLE_SPINS = 64;
+
+    /** How long an idle partition parks before it looks for batches again, in nanoseconds */
+    private static final long IDLE_NANOS = 20000;
+
+    /** Runs all partitions but the first one, which runs on the calling thread */
+    private final ExecutorService helpers;
+
+    /** The number of partitions, i.e. threads, the search runs on */
+    private final int partitionCount;
+
+    /** The number of active partitions plus the number of batches sent but not received yet. The search ends at 0 */
+    private final AtomicInteger work = new AtomicInteger();
+
+    /** The cost of the cheapest path to the destination found so far */
+    private final AtomicInteger incumbent = new AtomicInteger();
+
+    /** Set once the search has ended, so every partition stops */
+    private volatile boolean done;
+
+    /** Set from any thread to stop the partitions */
+    private volatile boolean stopped;
+
+    /** Counted down by the helpers once their partition has stopped */
+    private CountDownLatch helpersFinished;
+
+    /** The nodes the partitions have expanded, added up once they have stopped */
+    private int expanded = 0;
+
+    /** The nodes the partitions have added to their open sets, added up once they have stopped */
+    private int generatedByPartitions = 0;
+
+    /** The largest open sets of the partitions added up */
+    private int peakOpen = 0;
+
+    /**
+     * Constructor for a new search.
+     *
+     * @param model The grid snapshot to search on
+     * @param helpers Runs the partitions besides the first one, see {@link #createHelpers()}
+     * @param partitionCount The number of threads to search on, including the calling one
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     */
+    ParallelSearch(GridModel model, ExecutorService helpers, int partitionCount, int startX, int startY, int destX, int destY) {
+        super(model, startX, startY, destX, destY);
+        this.helpers = helpers;
+        this.partitionCount = partitionCount;
+    }
+
+    /**
+     * Creates the thread pool the helping partitions run on. Threads are created as needed,
+     * so the partitions of every search run at the same time, and end after 30 seconds without work.
+     *
+     * @return A new thread pool
+     */
+    static ExecutorService createHelpers() {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Pathfinder-parallel-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    @Override
+    boolean begin() {
+        int distance = Math.max(Math.abs(destX - startX), Math.abs(destY - startY));
+        if (partitionCount < 2 || distance < MIN_PARALLEL_DISTANCE) return super.begin();
+        if (!super.begin()) return false;
+
+        // The partitions keep their own open sets. The one of the workspace only receives
+        // the destination once a path has been found, so the next step ends with it
+        workspace.open.clear();
+        searchInPartitions();
+        int cost = incumbent.get();
+        if (cost < Integer.MAX_VALUE && !stopped) workspace.open.add(destY * model.width + destX, cost, 0);
+        return true;
+    }
+
+    @Override
+    void cancel() {
+        stopped = true;
+        super.cancel();
+    }
+
+    @Override
+    int getEngine() {
+        return GridPathfinder.ENGINE_PARALLEL;
+    }
+
+    @Override
+    int getRounds() {
+        return super.getRounds() + expanded;
+    }
+
+    @Override
+    int getGeneratedNodes() {
+        return super.getGeneratedNodes() + generatedByPartitions;
+    }
+
+    @Override
+    int getPeakOpenNodes() {
+        return Math.max(super.getPeakOpenNodes(), peakOpen);
+    }
+
+    /**
+     * Runs the partitions until the search has ended and waits for all of them to stop.
+     * The starting node must have been set up in the workspace.
+     */
+    private void searchInPartitions() {
+        Partition[] partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i, partitions);
+        }
+        incumbent.set(Integer.MAX_VALUE);
+        work.set(partitionCount);
+        done = false;
+        helpersFinished = new CountDownLatch(partitionCount - 1);
+
+        int start = startY * model.width + startX;
+        int h = workspace.finalCost[start];
+        partitions[ownerOf(startX, startY)].push(h, h, start);
+
+        for (int i = 1; i < partitionCount; i++) {
+            try {
+                helpers.execute(partitions[i]);
+            } catch (RejectedExecutionException e) {
+                // The pathfinder has been shut down. The search can't end without this partition
+                stopped = true;
+                helpersFinished.countDown();
+            }
+        }
+        partitions[0].run();
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                helpersFinished.await();
+                break;
+            } catch (InterruptedException e) {
+                // The helpers still write into the workspace, so it must not be released before they have stopped
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+
+        for (Partition partition : partitions) {
+            expanded += partition.expanded;
+            generatedByPartitions += partition.generated;
+            peakOpen += partition.peakSize;
+        }
+    }
+
+    /**
+     * @param x The x-coordinate of a node
+     * @param y The y-coordinate of a node
+     * @return The index of the partition owning the node
+     */
+    private int ownerOf(int x, int y) {
+        int hash = (x >> TILE_SHIFT) * 0x9E3779B1 + (y >> TILE_SHIFT) * 0x7FEB352D;
+        hash ^= hash >>> 15;
+        return (hash & Integer.MAX_VALUE) % partitionCount;
+    }
+
+    /**
+     * The nodes owned by one thread, with their open set and the batches received from the other partitions.
+     */
+    private final class Partition implements Runnable {
+
+        /** The index of this partition */
+        private final int index;
+
+        /** All partitions of the search, indexed by their index */
+        private final Partition[] partitions;
+
+        /** The batches sent to this partition. Each holds node, cost and parent triples after its length */
+        private final ConcurrentLinkedQueue<int[]> inbox = new ConcurrentLinkedQueue<>();
+
+        /** The batch being filled for each other partition. Null until a node is sent there */
+        private final int[][] outboxes;
+
+        /** The final cost of the open nodes in the upper and their heuristic cost in the lower half, ordered as a binary heap */
+        private long[] keys = new long[256];
+
+        /** The node indices of the heap entries. A node may have several entries, only the cheapest one is current */
+        private int[] nodes = new int[256];
+
+        /** The number of entries in the heap */
+        private int size = 0;
+
+        /** The number of nodes this partition has expanded */
+        private int expanded = 0;
+
+        /** The number of nodes this partition has added to its open set */
+        private int generated = 0;
+
+        /** The largest number of entries in the heap at once */
+        private int peakSize = 0;
+
+        /** Constructor
+         *
+         * @param index The index of this partition
+         * @param partitions All partitions of the search
+         */
+        Partition(int index, Partition[] partitions) {
+            this.index = index;
+            this.partitions = partitions;
+            outboxes = new int[partitions.length][];
+        }
+
+        @Override
+        public void run() {
+            try {
+                search();
+            } finally {
+                // Whatever happened, the other partitions must not wait for this one
+                if (!done) {
+                    stopped = true;
+                    done = true;
+                }
+                if (index != 0) helpersFinished.countDown();
+            }
+        }
+
+        /**
+         * Expands the nodes of this partition and receives those of the others until the search has ended.
+         */
+        private void search() {
+            boolean active = true;
+            int idleRounds = 0;
+            while (!done) {
+                if (stopped) {
+                    done = true;
+                    return;
+                }
+                int[] batch;
+                while ((batch = inbox.poll()) != null) {
+                    receive(batch);
+                    // The batch counts as this partition's work from now on
+                    if (active) work.decrementAndGet();
+                    else active = true;
+                }
+
+                boolean expandedAny = expandRound();
+                sendAll();
+                if (expandedAny) {
+                    idleRounds = 0;
+                } else if (active) {
+                    active = false;
+                    if (work.decrementAndGet() == 0) {
+                        done = true;
+                        return;
+                    }
+                } else if (++idleRounds < IDLE_SPINS) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                }
+            }
+        }
+
+        /**
+         * Expands the cheapest open nodes.
+         * @return False if no open node could lead to a path cheaper than the one already found
+         */
+        private boolean expandRound() {
+            final int[] gCost = workspace.gCost;
+            int count = 0;
+            while (count < EXPANSIONS_PER_ROUND && size > 0) {
+                long key = keys[0];
+                int n = nodes[0];
+                pop();
+                int f = (int) (key >>> 32);
+                if (f >= incumbent.get()) {
+                    // Every other entry costs at least as much
+                    size = 0;
+                    break;
+                }
+                int g = f - (int) key;
+                // A cheaper entry of the node has been expanded before
+                if (g != gCost[n]) continue;
+                expandNode(n, g);
+                count++;
+            }
+            return count > 0;
+        }
+
+        /**
+         * Evaluates all neighbors of a node, see {@link Neighborhood}.
+         * @param current The node index of the node
+         * @param g The cost of travelling from the start to the node
+         */
+        private void expandNode(int current, int g) {
+            final Neighborhood neighbors = ParallelSearch.this.neighbors;
+            final int x = current % model.width, y = current / model.width;
+            final boolean interior = neighbors.isInterior(x, y);
+            final int first = neighbors.first(y);
+            expanded++;
+            for (int i = first; i < first + neighbors.count; i++) {
+                int nx = x + neighbors.stepX[i], ny = y + neighbors.stepY[i];
+                if (!interior && !neighbors.isOnBoard(nx, ny)) continue;
+                int n = current + neighbors.offsets[i];
+                if (!model.fits(n, agentSize)) continue;
+                if (neighbors.checksCorners && !(model.fits(current + neighbors.sideX[i], agentSize) && model.fits(current + neighbors.sideY[i], agentSize))) continue;
+                int nGCost = g + (int) (neighbors.costs[i] * model.getTravellingFactor(n));
+                // No heuristic is negative, so the path via this node can't be cheaper
+                if (nGCost >= incumbent.get()) continue;
+                int owner = ownerOf(nx, ny);
+                if (owner == index) relax(n, nGCost, current);
+                else send(owner, n, nGCost, current);
+            }
+        }
+
+        /**
+         * Makes @parent the parent of a node of this partition if that is the cheapest way to reach it so far.
+         *
+         * @param n The node index
+         * @param nGCost The cost of travelling from the start to the node via @parent
+         * @param parent The node index of the parent
+         */
+        private void relax(int n, int nGCost, int parent) {
+            final SearchWorkspace workspace = ParallelSearch.this.workspace;
+            if (workspace.isMaterialised(n) && nGCost >= workspace.gCost[n]) return;
+            workspace.materialise(n);
+            workspace.gCost[n] = nGCost;
+            workspace.parent[n] = parent;
+            int x = n % model.width, y = n / model.width;
+            if (x == destX && y == destY) {
+                // Only this partition writes the cost of the destination
+                incumbent.set(nGCost);
+                return;
+            }
+            int h = heuristic(x, y);
+            if (nGCost + h < incumbent.get()) {
+                push(nGCost + h, h, n);
+                generated++;
+            }
+        }
+
+        /**
+         * Relaxes the nodes of a batch sent by another partition.
+         * @param batch The batch
+         */
+        private void receive(int[] batch) {
+            for (int i = 1; i < batch[0]; i += 3) {
+                relax(batch[i], batch[i + 1], batch[i + 2]);
+            }
+        }
+
+        /**
+         * Adds a node to the batch for its partition and sends the batch once it is full.
+         *
+         * @param owner The index of the partition owning the node
+         * @param n The node index
+         * @param nGCost The cost of travelling from the start to the node via @parent
+         * @param parent The node index of the parent
+         */
+        private void send(int owner, int n, int nGCost, int parent) {
+            int[] batch = outboxes[owner];
+            if (batch == null) {
+                batch = outboxes[owner] = new int[1 + BATCH_SIZE * 3];
+                batch[0] = 1;
+            }
+            int length = batch[0];
+            batch[length] = n;
+            batch[length + 1] = nGCost;
+            batch[length + 2] = parent;
+            batch[0] = length + 3;
+            if (batch[0] == batch.length) send(owner);
+        }
+
+        /**
+         * Sends every batch that holds at least one node.
+         */
+        private void sendAll() {
+            for (int owner = 0; owner < outboxes.length; owner++) {
+                if (outboxes[owner] != null) send(owner);
+            }
+        }
+
+        /**
+         * Sends the batch for a partition.
+         * @param owner The index of the partition
+         */
+        private void send(int owner) {
+            // Counted before it is queued, so the search can't end while the batch is on its way
+            work.incrementAndGet();
+            partitions[owner].inbox.offer(outboxes[owner]);
+            outboxes[owner] = null;
+        }
+
+        /**
+         * Adds an entry to the heap. Of entries with the same final cost, the one closest to the destination comes first.
+         *
+         * @param f The final cost of the node
+         * @param h The heuristic cost of the node
+         * @param n The node index
+         */
+        void push(int f, int h, int n) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            long key = ((long) f << 32) | h;
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                keys[i] = keys[parent];
+                nodes[i] = nodes[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            nodes[i] = n;
+            if (size > peakSize) peakSize = size;
+        }
+
+        /**
+         * Removes the first entry of the heap.
+         */
+        private void pop() {
+            long key = keys[--size];
+            int n = nodes[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                if (key <= keys[child]) break;
+                keys[i] = keys[child];
+                nodes[i] = nodes[child];
+                i = child;
+            }
+            keys[i] = key;
+            nodes[i] = n;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Many path queries answered together, created by
+ * {@link GridPathfinder#findPaths(List, int, OnBatchCompletedListener)}.
+ *
+ * The queries are sorted by destination and start, so the work for them can be shared:
+ * identical queries are searched only once, and queries with a common destination are answered
+ * by a single search backwards from that destination, which stops once it has reached all of their starts.
+ * The remaining queries run on the selected engine. The batch is spread over the worker threads,
+ * each of which reuses one {@link SearchWorkspace} for all the searches it runs.
+ *
+ * Wait for the batch via {@link #get()} or pass an {@link OnBatchCompletedListener}.
+ */
+public final class PathBatch implements Future<List<PathRequest>> {
+    /** States of a batch */
+    private static final int STATE_RUNNING = 0, STATE_DONE = 1, STATE_CANCELLED = 2;
+
+    /** The number of queries to one destination from which they are answered by one backwards search */
+    static final int SHARED_SEARCH_MIN_QUERIES = 4;
+
+    /** The grid snapshot the batch runs on */
+    private final GridModel model;
+
+    /** The engine of single queries. One of the GridPathfinder.ENGINE_ constants */
+    private final int engine;
+
+    /** The abstract graph for GridPathfinder.ENGINE_HIERARCHICAL. Null for other engines */
+    private final ClusterGraph clusterGraph;
+
+    /** The estimate of single queries. One of the GridPathfinder.HEURISTIC_ constants */
+    private final int heuristic;
+
+    /** The estimate of single queries is multiplied with this weight */
+    private final float heuristicWeight;
+
+    /** The landmarks for GridPathfinder.HEURISTIC_LANDMARKS. Null for other heuristics */
+    private final Landmarks landmarks;
+
+    /** The cache to look paths up in and to store them in. May be null */
+    private final PathCache cache;
+
+    /** The queries in the order they were passed in */
+    private final List<PathRequest> requests;
+
+    /** Invoked once all queries have been answered. May be null */
+    private final OnBatchCompletedListener listener;
+
+    /** The indices into {@link #requests}, sorted by destination and start */
+    private final int[] order;
+
+    /** Where each unit of work starts in {@link #order}, followed by the end of the last one */
+    private final int[] unitBounds;
+
+    /** If a unit is answered by a backwards search from its destination, indexed by unit */
+    private final boolean[] sharedUnits;
+
+    /** The next unit of work a worker takes */
+    private final AtomicInteger nextUnit = new AtomicInteger();
+
+    /** The number of workers that have not finished yet */
+    private final AtomicInteger runningWorkers = new AtomicInteger();
+
+    /** The state of this batch. One of the STATE_ constants */
+    private final AtomicInteger state = new AtomicInteger(STATE_RUNNING);
+
+    /** Released once the batch has completed or has been cancelled */
+    private final CountDownLatch completion = new CountDownLatch(1);
+
+    /**
+     * Constructor for a new batch. Sorts the queries and splits them into units of work.
+     *
+     * @param model The grid snapshot to search on
+     * @param engine One of the GridPathfinder.ENGINE_ constants
+     * @param clusterGraph The abstract graph for GridPathfinder.ENGINE_HIERARCHICAL. Null for other engines
+     * @param heuristic One of the GridPathfinder.HEURISTIC_ constants
+     * @param heuristicWeight The estimate is multiplied with this weight
+     * @param landmarks The landmarks for GridPathfinder.HEURISTIC_LANDMARKS. Null for other heuristics
+     * @param cache The cache to look paths up in and to store them in. May be null
+     * @param requests The queries
+     * @param listener Invoked once all queries have been answered. May be null
+     */
+    PathBatch(GridModel model, int engine, ClusterGraph clusterGraph, int heuristic, float heuristicWeight, Landmarks landmarks,
+              PathCache cache, List<PathRequest> requests, OnBatchCompletedListener listener) {
+        this.model = model;
+        this.engine = engine;
+        this.clusterGraph = clusterGraph;
+        this.heuristic = heuristic;
+        this.heuristicWeight = heuristicWeight;
+        this.landmarks = landmarks;
+        this.cache = cache;
+        this.requests = Collections.unmodifiableList(requests);
+        this.listener = listener;
+
+        final int count = requests.size();
+        final long[] keys = new long[count];
+        Integer[] sorted = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            PathRequest request = requests.get(i);
+            keys[i] = (long) node(request.getDestX(), request.getDestY()) << 32 | node(request.getStartX(), request.getStartY());
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                long a = keys[first], b = keys[second];
+                return a < b ? -1 : a > b ? 1 : 0;
+            }
+        });
+        order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = sorted[i];
+        }
+
+        // A unit is either all queries to one destination or a run of identical queries
+        int[] bounds = new int[count + 1];
+        boolean[] shared = new boolean[count];
+        int units = 0;
+        int group = 0;
+        while (group < count) {
+            int groupEnd = group + 1;
+            while (groupEnd < count && keys[order[groupEnd]] >>> 32 == keys[order[group]] >>> 32) groupEnd++;
+            if (groupEnd - group >= SHARED_SEARCH_MIN_QUERIES) {
+                shared[units] = true;
+                bounds[units++] = group;
+            } else {
+                for (int i = group; i < groupEnd; i++) {
+                    if (i == group || keys[order[i]] != keys[order[i - 1]]) bounds[units++] = i;
+                }
+            }
+            group = groupEnd;
+        }
+        bounds[units] = count;
+        unitBounds = Arrays.copyOf(bounds, units + 1);
+        sharedUnits = Arrays.copyOf(shared, units);
+    }
+
+    /**
+     * Hands the batch to the worker threads. A batch without queries completes at once on the calling thread.
+     *
+     * @param scheduler The scheduler running the workers
+     * @param priority One of the GridPathfinder.PRIORITY_ constants
+     */
+    void start(PathScheduler scheduler, int priority) {
+        int workers = Math.min(scheduler.getThreadCount(), sharedUnits.length);
+        if (workers == 0) {
+            complete();
+            return;
+        }
+        runningWorkers.set(workers);
+        for (int i = 0; i < workers; i++) {
+            scheduler.execute(new Worker(priority));
+        }
+    }
+
+    /**
+     * @return The queries in the order they were passed in. Each one holds its path once the batch has completed.
+     */
+    public List<PathRequest> getRequests() {
+        return requests;
+    }
+
+    /**
+     * Stops the batch. Queries that are already being searched are still finished,
+     * all others are skipped and the listener is never called.
+     *
+     * @param mayInterruptIfRunning Ignored, searches are never interrupted
+     * @return False if the batch has already completed or has been cancelled before
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!state.compareAndSet(STATE_RUNNING, STATE_CANCELLED)) return false;
+        completion.countDown();
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return state.get() == STATE_CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return state.get() != STATE_RUNNING;
+    }
+
+    /**
+     * Waits until all queries have been answered.
+     * @return The queries in the order they were passed in, each one holding its path
+     */
+    @Override
+    public List<PathRequest> get() throws InterruptedException {
+        completion.await();
+        if (isCancelled()) throw new CancellationException();
+        return requests;
+    }
+
+    @Override
+    public List<PathRequest> get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (!completion.await(timeout, unit)) throw new TimeoutException();
+        if (isCancelled()) throw new CancellationException();
+        return requests;
+    }
+
+    /**
+     * Called by the last worker that finishes.
+     */
+    private void complete() {
+        if (!state.compareAndSet(STATE_RUNNING, STATE_DONE)) return;
+        completion.countDown();
+        if (listener != null) listener.onBatchCompleted(this);
+    }
+
+    /**
+     * Answers a run of identical queries with one search on the selected engine.
+     *
+     * @param workspace The reset workspace of the worker
+     * @param from The first index into {@link #order}
+     * @param to The index into {@link #order} after the last query
+     */
+    private void searchSingle(SearchWorkspace workspace, int from, int to) {
+        PathRequest request = requests.get(order[from]);
+        int start = node(request.getStartX(), request.getStartY());
+        int dest = node(request.getDestX(), request.getDestY());
+        int[] path = cache != null ? cache.get(start, dest) : null;
+        if (path != null) {
+            // The cache keeps its own array
+            path = path.clone();
+        } else {
+            AStarSearch search = GridPathfinder.createSearch(model, engine, clusterGraph,
+                    request.getStartX(), request.getStartY(), request.getDestX(), request.getDestY());
+            search.setHeuristic(heuristic, heuristicWeight, landmarks);
+            search.workspace = workspace;
+            if (search.step(0, 0) == AStarSearch.FOUND) {
+                path = new int[search.countPathNodes()];
+                search.collectPath(path, path.length);
+                if (cache != null) cache.put(start, dest, path.clone(), workspace.gCost[dest], search.getGridVersion());
+            }
+        }
+        deliver(path, from, to);
+    }
+
+    /**
+     * Answers all queries to one destination with a single Dijkstra search backwards from it,
+     * using the same travelling costs as the forward searches. The search stops once it has reached
+     * every start, and the path of each query follows the parents from its start to the destination.
+     *
+     * @param workspace The reset workspace of the worker
+     * @param from The first index into {@link #order}
+     * @param to The index into {@link #order} after the last query
+     */
+    private void searchFromDestination(SearchWorkspace workspace, int from, int to) {
+        final int width = model.width;
+        PathRequest first = requests.get(order[from]);
+        final int dest = node(first.getDestX(), first.getDestY());
+
+        // The distinct starts that are neither cached nor unreachable, in ascending order
+        int[] starts = new int[to - from];
+        int count = 0;
+        int i = from;
+        while (i < to) {
+            int start = startOf(i);
+            int runEnd = i + 1;
+            while (runEnd < to && startOf(runEnd) == start) runEnd++;
+            int[] cached = cache != null ? cache.get(start, dest) : null;
+            if (cached != null) deliver(cached.clone(), i, runEnd);
+            // The search would have to cover the destination's whole area before giving up on this start
+            else if (!model.areConnected(start, dest)) deliver(null, i, runEnd);
+            else starts[count++] = start;
+            i = runEnd;
+        }
+        if (count == 0) return;
+
+        final int version = model.getVersion();
+        final int[] gCost = workspace.gCost;
+        final int[] parent = workspace.parent;
+        final NodeHeap open = workspace.open;
+        final Neighborhood neighbors = model.getNeighborhood();
+        if (!model.isBlocked(dest)) {
+            workspace.materialise(dest);
+            gCost[dest] = 0;
+            parent[dest] = -1;
+            open.add(dest, 0);
+        }
+        int remaining = count;
+        int current;
+        while (remaining > 0 && (current = open.poll()) >= 0) {
+            workspace.close(current);
+            if (Arrays.binarySearch(starts, 0, count, current) >= 0) remaining--;
+            int x = current % width;
+            int y = current / width;
+            // Travelling costs depend on the node that is entered, which is @current for all neighbors
+            float factor = model.getTravellingFactor(current);
+            int firstStep = neighbors.first(y);
+            for (int step = firstStep; step < firstStep + neighbors.count; step++) {
+                int n = neighbors.neighbor(model, current, x, y, step);
+                if (n < 0 || workspace.isClosed(n)) continue;
+                // Every step can be taken back at the same cost
+                int nCost = gCost[current] + (int) (neighbors.costs[step] * factor);
+                if (!workspace.isMaterialised(n)) {
+                    if (model.isBlocked(n)) {
+                        workspace.close(n);
+                        continue;
+                    }
+                    workspace.materialise(n);
+                    gCost[n] = nCost;
+                    parent[n] = current;
+                    open.add(n, nCost);
+                } else if (nCost < gCost[n]) {
+                    gCost[n] = nCost;
+                    parent[n] = current;
+                    open.decreaseKey(n, nCost);
+                }
+            }
+        }
+
+        i = from;
+        while (i < to) {
+            int start = startOf(i);
+            int runEnd = i + 1;
+            while (runEnd < to && startOf(runEnd) == start) runEnd++;
+            if (Arrays.binarySearch(starts, 0, count, start) >= 0) {
+                int[] path = null;
+                // Blocked nodes are closed as well, but were never reached
+                if (workspace.isClosed(start) && !model.isBlocked(start)) {
+                    int length = 1;
+                    for (int n = start; parent[n] >= 0; n = parent[n]) length++;
+                    path = new int[length];
+                    int n = start;
+                    for (int k = 0; k < length; k++) {
+                        path[k] = n;
+                        n = parent[n];
+                    }
+                    if (cache != null) cache.put(start, dest, path.clone(), gCost[start], version);
+                }
+                deliver(path, i, runEnd);
+            }
+            i = runEnd;
+        }
+    }
+
+    /**
+     * Hands a path to a run of identical queries. Each query gets its own array.
+     *
+     * @param path The path, owned by the first query. Null if no path is possible
+     * @param from The first index into {@link #order}
+     * @param to The index into {@link #order} after the last query
+     */
+    private void deliver(int[] path, int from, int to) {
+        for (int i = from; i < to; i++) {
+            requests.get(order[i]).path = path == null || i == from ? path : path.clone();
+        }
+    }
+
+    /**
+     * @param i An index into {@link #order}
+     * @return The node index of the start of that query
+     */
+    private int startOf(int i) {
+        PathRequest request = requests.get(order[i]);
+        return node(request.getStartX(), request.getStartY());
+    }
+
+    /**
+     * @return The node index of [x, y]
+     */
+    private int node(int x, int y) {
+        return y * model.width + x;
+    }
+
+    /**
+     * Takes units of work until none are left, reusing one workspace for all of them.
+     */
+    private final class Worker extends ScheduledTask {
+
+        /**
+         * @param priority One of the GridPathfinder.PRIORITY_ constants
+         */
+        Worker(int priority) {
+            super(priority);
+        }
+
+        @Override
+        public void run() {
+            SearchWorkspace workspace = SearchWorkspace.acquire(model);
+            try {
+                int unit;
+                while (state.get() == STATE_RUNNING && (unit = nextUnit.getAndIncrement()) < sharedUnits.length) {
+                    workspace.reset();
+                    if (sharedUnits[unit]) searchFromDestination(workspace, unitBounds[unit], unitBounds[unit + 1]);
+                    else searchSingle(workspace, unitBounds[unit], unitBounds[unit + 1]);
+                }
+            } finally {
+                SearchWorkspace.release(workspace);
+                if (runningWorkers.decrementAndGet() == 0) complete();
+            }
+        }
+    }
+}
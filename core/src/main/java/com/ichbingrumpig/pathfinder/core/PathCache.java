@@ -0,0 +1,191 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the paths of recent searches, keyed by starting and destination node.
+ *
+ * The cache holds a limited number of paths and evicts the least recently used one
+ * when it is full. When the grid changes, only the paths that may no longer be valid are
+ * removed: those running through the changed region, and those that could now be beaten
+ * by a path through it because their cost is higher than the shortest possible detour
+ * via the region. All other paths stay cached across grid versions.
+ */
+class PathCache implements GridModel.OnGridChangedListener {
+
+    /** The grid the cached paths run on */
+    final GridModel model;
+
+    /** The cached paths, least recently used first */
+    private final LinkedHashMap<Long, CachedPath> entries;
+
+    /** The number of requests answered from the cache */
+    private long hits = 0;
+
+    /** The number of requests the cache had no path for */
+    private long misses = 0;
+
+    /** Receives the region of the grid that changed before a path was stored */
+    private final int[] changedRegion = new int[4];
+
+    /**
+     * A cached path.
+     */
+    private static class CachedPath {
+        /** The node indices of the path from the start to the destination */
+        final int[] nodes;
+
+        /** The cost of the path */
+        final int cost;
+
+        /** The bounding box of the path. Right and bottom are exclusive */
+        final int left, top, right, bottom;
+
+        CachedPath(int[] nodes, int cost, int width) {
+            this.nodes = nodes;
+            this.cost = cost;
+            int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE, right = 0, bottom = 0;
+            for (int n : nodes) {
+                left = Math.min(left, n % width);
+                top = Math.min(top, n / width);
+                right = Math.max(right, n % width + 1);
+                bottom = Math.max(bottom, n / width + 1);
+            }
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param model The grid the cached paths run on. The cache keeps itself up to date with its changes
+     * @param capacity The maximum number of cached paths
+     */
+    PathCache(GridModel model, final int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("The cache capacity must be at least 1.");
+        this.model = model;
+        entries = new LinkedHashMap<Long, CachedPath>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedPath> eldest) {
+                return size() > capacity;
+            }
+        };
+        model.addOnGridChangedListener(this);
+    }
+
+    /**
+     * @param start The node index of the starting node
+     * @param dest The node index of the destination node
+     * @return The node indices of the cached path from the start to the destination. Must not be modified.
+     *          Null if no path is cached.
+     */
+    synchronized int[] get(int start, int dest) {
+        CachedPath entry = entries.get(key(start, dest));
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.nodes;
+    }
+
+    /**
+     * Stores the path of a finished search.
+     * If the grid has changed since the search checked it, the path is only stored
+     * if the change can't have affected it.
+     *
+     * @param start The node index of the starting node
+     * @param dest The node index of the destination node
+     * @param nodes The node indices of the path from the start to the destination
+     * @param cost The cost of the path
+     * @param gridVersion The version of the grid the search has found the path on
+     */
+    synchronized void put(int start, int dest, int[] nodes, int cost, int gridVersion) {
+        CachedPath entry = new CachedPath(nodes, cost, model.width);
+        if (model.getChangedRegion(gridVersion, changedRegion)
+                && isAffected(start, dest, entry, changedRegion[0], changedRegion[1], changedRegion[2], changedRegion[3])) {
+            return;
+        }
+        entries.put(key(start, dest), entry);
+    }
+
+    /**
+     * Removes all cached paths.
+     */
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return The number of cached paths
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of requests answered from the cache
+     */
+    synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of requests the cache had no path for
+     */
+    synchronized long getMissCount() {
+        return misses;
+    }
+
+    @Override
+    public synchronized void onGridChanged(GridModel model, int version, int left, int top, int right, int bottom) {
+        Iterator<Map.Entry<Long, CachedPath>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, CachedPath> mapEntry = iterator.next();
+            long key = mapEntry.getKey();
+            if (isAffected((int) (key >>> 32), (int) key, mapEntry.getValue(), left, top, right, bottom)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Checks if a change of the grid may have made a cached path invalid or no longer the cheapest.
+     * The region's right and bottom coordinates are exclusive.
+     */
+    private boolean isAffected(int start, int dest, CachedPath entry, int left, int top, int right, int bottom) {
+        final int width = model.width;
+        // Does the path run through the region?
+        if (entry.left < right && left < entry.right && entry.top < bottom && top < entry.bottom) {
+            for (int n : entry.nodes) {
+                int x = n % width, y = n / width;
+                if (x >= left && x < right && y >= top && y < bottom) return true;
+            }
+        }
+        // Could a path through the region be cheaper? A step one node diagonally costs what the neighbors allow
+        float minFactor = Math.min(model.getMinTravellingFactor(), 1f);
+        int straightCost = (int) (AStarSearch.V_H_COST * minFactor);
+        int diagonalCost = Math.min((int) (model.getNeighborhood().diagonalCost * minFactor), 2 * straightCost);
+        int detour = distanceToRegion(start % width, start / width, left, top, right, bottom, straightCost, diagonalCost)
+                + distanceToRegion(dest % width, dest / width, left, top, right, bottom, straightCost, diagonalCost);
+        return detour < entry.cost;
+    }
+
+    /**
+     * @return A lower bound of the cost of travelling from [x, y] to the closest node of the region
+     */
+    private static int distanceToRegion(int x, int y, int left, int top, int right, int bottom, int straightCost, int diagonalCost) {
+        int dx = Math.max(0, Math.max(left - x, x - (right - 1)));
+        int dy = Math.max(0, Math.max(top - y, y - (bottom - 1)));
+        return AStarSearch.octileDistance(dx, dy, straightCost, diagonalCost);
+    }
+
+    private static long key(int start, int dest) {
+        return ((long) start << 32) | (dest & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,399 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.Arrays;
+
+/**
+ * Plans the path of one unit and repairs it when the grid changes or the unit or its target move (D* Lite).
+ *
+ * The planner searches backwards from the destination and keeps the cost of every node it has reached
+ * between calls of {@link #plan()}. When cells change, only the nodes whose costs depend on them are expanded
+ * again, so replanning takes time in proportion to the change instead of the board. Moving the start along
+ * the path costs nothing at all. Moving the destination is repaired like a changed cell (basic Moving Target
+ * D* Lite): the former destination loses its cost of 0 and the new one gets it.
+ *
+ * A planner belongs to one thread, e.g. the game loop, and to the board it was created on.
+ * Updates of the grid from other threads are picked up by the next {@link #plan()}.
+ * It keeps a workspace for every node of the board until it is {@link #release() released}.
+ */
+public final class PathPlanner {
+
+    /** The cost of nodes that can't reach the destination (yet) */
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    /** The grid the planner runs on */
+    private final GridModel model;
+
+    /** The neighbors of every node, as set on the grid when the planner was created */
+    private final Neighborhood neighbors;
+
+    /**
+     * The node states: {@link SearchWorkspace#gCost} holds the cost of travelling from a node to the destination (g),
+     * {@link SearchWorkspace#finalCost} the cost its neighbors offer (rhs). A node is consistent if both are equal
+     */
+    private SearchWorkspace workspace;
+
+    /** The node index of the start */
+    private int start;
+
+    /** The node index of the destination */
+    private int dest;
+
+    /** The start the keys in the open set were last corrected for */
+    private int lastStart;
+
+    /** Added to the keys to make up for the moves of the start since the search began */
+    private int keyModifier;
+
+    /** The version of the grid the costs have been repaired for */
+    private int gridVersion;
+
+    /** The minimal cost of a step vertically or horizontally and diagonally, for the octile distance */
+    private int minStraightCost, minDiagonalCost;
+
+    /** The travelling factor the minimal costs have been computed with */
+    private float minTravellingFactor;
+
+    /** Receives the region of the grid that changed since the last plan */
+    private final int[] changedRegion = new int[4];
+
+    /** The number of nodes expanded by the last plan */
+    private int expanded = 0;
+
+    /**
+     * Constructor for a planner. Nothing is searched until {@link #plan()} is called.
+     *
+     * @param model The grid to plan on
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     */
+    PathPlanner(GridModel model, int startX, int startY, int destX, int destY) {
+        this.model = model;
+        neighbors = model.getNeighborhood();
+        start = node(startX, startY);
+        dest = node(destX, destY);
+        workspace = SearchWorkspace.acquire(model);
+        restart();
+    }
+
+    /**
+     * Moves the start, e.g. because the unit has taken a step along its path.
+     * Costs nothing, the next {@link #plan()} continues with the costs found so far.
+     *
+     * @param x The x-coordinate of the starting point
+     * @param y The y-coordinate of the starting point
+     */
+    public void setStart(int x, int y) {
+        start = node(x, y);
+    }
+
+    /**
+     * Moves the destination, e.g. because the target of the unit has moved.
+     * The next {@link #plan()} repairs the costs around both destinations.
+     *
+     * @param x The x-coordinate of the destination point
+     * @param y The y-coordinate of the destination point
+     */
+    public void setDestination(int x, int y) {
+        int newDest = node(x, y);
+        if (newDest == dest) return;
+        int former = dest;
+        dest = newDest;
+        touch(former);
+        workspace.finalCost[former] = lookAhead(former);
+        updateVertex(former);
+        touch(newDest);
+        workspace.finalCost[newDest] = 0;
+        updateVertex(newDest);
+    }
+
+    /**
+     * Finds the cheapest path from the start to the destination, reusing the costs of the former plans.
+     * Cells updated since are repaired first.
+     *
+     * @return The node indices (y * width + x) of the path from the start to the destination, or null if no path is possible
+     */
+    public int[] plan() {
+        if (workspace == null) throw new IllegalArgumentException("The planner has been released.");
+        expanded = 0;
+        // Nodes in different areas can't be connected, however many nodes are expanded
+        if (!model.areConnected(start, dest)) return null;
+
+        repairChanges();
+        if (start != lastStart) {
+            keyModifier += heuristic(lastStart, start);
+            lastStart = start;
+        }
+        computeCosts();
+        return collectPath();
+    }
+
+    /**
+     * @return The number of nodes the last {@link #plan()} has expanded
+     */
+    public int getExpandedNodes() {
+        return expanded;
+    }
+
+    /**
+     * Returns the workspace of the planner to the pool. The planner must not be used afterwards.
+     */
+    public void release() {
+        if (workspace != null) {
+            SearchWorkspace.release(workspace);
+            workspace = null;
+        }
+    }
+
+    /**
+     * Forgets every cost and starts a new search from the destination.
+     */
+    private void restart() {
+        workspace.reset();
+        gridVersion = model.getVersion();
+        minTravellingFactor = Math.min(model.getMinTravellingFactor(), 1f);
+        minStraightCost = (int) (AStarSearch.V_H_COST * minTravellingFactor);
+        minDiagonalCost = Math.min((int) (neighbors.diagonalCost * minTravellingFactor), 2 * minStraightCost);
+        keyModifier = 0;
+        lastStart = start;
+        touch(dest);
+        workspace.finalCost[dest] = 0;
+        updateVertex(dest);
+    }
+
+    /**
+     * Recomputes the costs the neighbors offer to every free node next to the cells changed since the last plan,
+     * and to blocked ones the search has reached.
+     * Starts over if the changes are too old to be told apart or make the heuristic overestimate.
+     */
+    private void repairChanges() {
+        int version = model.getVersion();
+        if (version == gridVersion) return;
+        if (Math.min(model.getMinTravellingFactor(), 1f) < minTravellingFactor || !model.getChangedRegion(gridVersion, changedRegion)) {
+            restart();
+            return;
+        }
+        gridVersion = version;
+
+        // The cost of entering a cell changes the offers to all of its neighbors
+        final int width = model.width;
+        int left = Math.max(changedRegion[0] - 1, 0), top = Math.max(changedRegion[1] - 1, 0);
+        int right = Math.min(changedRegion[2] + 1, width), bottom = Math.min(changedRegion[3] + 1, model.height);
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                int n = y * width + x;
+                // Freed cells were never offered a cost while they were blocked, so they join the search now
+                if (model.isBlocked(n)) {
+                    if (!workspace.isMaterialised(n)) continue;
+                } else {
+                    touch(n);
+                }
+                workspace.finalCost[n] = lookAhead(n);
+                updateVertex(n);
+            }
+        }
+    }
+
+    /**
+     * Expands inconsistent nodes until the cost of the start is known.
+     */
+    private void computeCosts() {
+        final SearchWorkspace workspace = this.workspace;
+        final int[] g = workspace.gCost, rhs = workspace.finalCost;
+        final NodeHeap open = workspace.open;
+        touch(start);
+        while (!open.isEmpty()) {
+            int startMin = Math.min(g[start], rhs[start]);
+            int startKey = startMin == INFINITE ? INFINITE : startMin + keyModifier;
+            int topKey = open.peekKey(), topTie = open.peekTie();
+            if (!isLower(topKey, topTie, startKey, startMin) && rhs[start] == g[start]) return;
+
+            int u = open.peek();
+            int uMin = Math.min(g[u], rhs[u]);
+            int key = key(u, uMin);
+            if (isLower(topKey, topTie, key, uMin)) {
+                // The start has moved since the node was queued
+                open.update(u, key, uMin);
+            } else if (g[u] > rhs[u]) {
+                g[u] = rhs[u];
+                open.remove(u);
+                expanded++;
+                offerToNeighbors(u);
+            } else {
+                int former = g[u];
+                g[u] = INFINITE;
+                expanded++;
+                withdrawFromNeighbors(u, former);
+                rhs[u] = lookAhead(u);
+                updateVertex(u);
+            }
+        }
+    }
+
+    /**
+     * Lets the neighbors of a node that has just become cheaper travel via it.
+     * @param u The node index
+     */
+    private void offerToNeighbors(int u) {
+        final int[] rhs = workspace.finalCost;
+        final int ux = u % model.width, uy = u / model.width;
+        // Every step can be taken back at the same cost
+        final int cost = workspace.gCost[u];
+        final float factor = model.getTravellingFactor(u);
+        final int first = neighbors.first(uy);
+        for (int step = first; step < first + neighbors.count; step++) {
+            int s = neighbors.neighbor(model, u, ux, uy, step);
+            if (s < 0 || s == dest || model.isBlocked(s)) continue;
+            touch(s);
+            int offer = cost + (int) (neighbors.costs[step] * factor);
+            if (offer < rhs[s]) {
+                rhs[s] = offer;
+                updateVertex(s);
+            }
+        }
+    }
+
+    /**
+     * Makes the neighbors that travelled via a node that has just become more expensive look for another way.
+     *
+     * @param u The node index
+     * @param former The former cost of the node
+     */
+    private void withdrawFromNeighbors(int u, int former) {
+        if (former == INFINITE) return;
+        final int[] rhs = workspace.finalCost;
+        final int ux = u % model.width, uy = u / model.width;
+        final float factor = model.getTravellingFactor(u);
+        final int first = neighbors.first(uy);
+        for (int step = first; step < first + neighbors.count; step++) {
+            int s = neighbors.neighbor(model, u, ux, uy, step);
+            if (s < 0 || s == dest || !workspace.isMaterialised(s)) continue;
+            if (rhs[s] == former + (int) (neighbors.costs[step] * factor)) {
+                rhs[s] = lookAhead(s);
+                updateVertex(s);
+            }
+        }
+    }
+
+    /**
+     * @param s The node index
+     * @return The cheapest cost of travelling from the node to the destination via one of its neighbors (rhs)
+     */
+    private int lookAhead(int s) {
+        if (s == dest) return 0;
+        if (model.isBlocked(s)) return INFINITE;
+        final int[] g = workspace.gCost;
+        final int sx = s % model.width, sy = s / model.width;
+        int best = INFINITE;
+        final int first = neighbors.first(sy);
+        for (int step = first; step < first + neighbors.count; step++) {
+            int v = neighbors.neighbor(model, s, sx, sy, step);
+            if (v < 0 || !workspace.isMaterialised(v) || g[v] == INFINITE || model.isBlocked(v)) continue;
+            best = Math.min(best, g[v] + stepCost(step, v));
+        }
+        return best;
+    }
+
+    /**
+     * Queues an inconsistent node with its current key and removes a consistent one from the open set.
+     * @param u The node index
+     */
+    private void updateVertex(int u) {
+        final int g = workspace.gCost[u], rhs = workspace.finalCost[u];
+        final NodeHeap open = workspace.open;
+        if (g != rhs) {
+            int min = Math.min(g, rhs);
+            if (open.contains(u)) open.update(u, key(u, min), min);
+            else open.add(u, key(u, min), min);
+        } else if (open.contains(u)) {
+            open.remove(u);
+        }
+    }
+
+    /**
+     * Builds the path by following the cheapest neighbor from the start.
+     * @return The node indices of the path from the start to the destination, or null if no path is possible
+     */
+    private int[] collectPath() {
+        final int[] g = workspace.gCost;
+        if (g[start] == INFINITE) return null;
+        final int width = model.width;
+        int[] path = new int[64];
+        int count = 0;
+        int s = start;
+        path[count++] = s;
+        while (s != dest) {
+            int sx = s % width, sy = s / width;
+            int next = -1, best = INFINITE;
+            final int first = neighbors.first(sy);
+            for (int step = first; step < first + neighbors.count; step++) {
+                int v = neighbors.neighbor(model, s, sx, sy, step);
+                if (v < 0 || !workspace.isMaterialised(v) || g[v] == INFINITE || model.isBlocked(v)) continue;
+                int cost = g[v] + stepCost(step, v);
+                if (cost < best) {
+                    best = cost;
+                    next = v;
+                }
+            }
+            // Guards against costs the grid has changed under since they were computed
+            if (next < 0 || count == model.size()) return null;
+            if (count == path.length) path = Arrays.copyOf(path, count * 2);
+            path[count++] = next;
+            s = next;
+        }
+        return Arrays.copyOf(path, count);
+    }
+
+    /**
+     * Adds a node the planner has not reached before, with no known cost.
+     * @param n The node index
+     */
+    private void touch(int n) {
+        if (workspace.isMaterialised(n)) return;
+        workspace.materialise(n);
+        workspace.gCost[n] = INFINITE;
+        workspace.finalCost[n] = INFINITE;
+    }
+
+    /**
+     * @param n The node index
+     * @param min The lower of the node's costs
+     * @return The key the node is ordered by in the open set. Ties are broken by the lower cost
+     */
+    private int key(int n, int min) {
+        return min == INFINITE ? INFINITE : min + heuristic(start, n) + keyModifier;
+    }
+
+    /**
+     * @param step The step of {@link #neighbors} to take
+     * @param to The node index of the neighbor the step leads to
+     * @return The cost of taking the step
+     */
+    private int stepCost(int step, int to) {
+        return (int) (neighbors.costs[step] * model.getTravellingFactor(to));
+    }
+
+    /**
+     * @return The octile distance between two nodes, which never overestimates the cost of travelling between them
+     */
+    private int heuristic(int a, int b) {
+        final int width = model.width;
+        return AStarSearch.octileDistance(Math.abs(a % width - b % width), Math.abs(a / width - b / width), minStraightCost, minDiagonalCost);
+    }
+
+    /**
+     * @return The node index of a point, checked to lie on the board
+     */
+    private int node(int x, int y) {
+        if (x < 0 || y < 0 || x >= model.width || y >= model.height) throw new IllegalArgumentException("The point [" + x + ", " + y + "] is not on the board.");
+        return y * model.width + x;
+    }
+
+    /**
+     * @return If the first key is polled before the second one
+     */
+    private static boolean isLower(int key, int tie, int otherKey, int otherTie) {
+        return key < otherKey || (key == otherKey && tie < otherTie);
+    }
+}
@@ -0,0 +1,67 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * One query of a {@link PathBatch}: the starting and destination point, and the path once the batch has completed.
+ */
+public final class PathRequest {
+
+    /** The starting coordinates */
+    private final int startX, startY;
+
+    /** The destination coordinates */
+    private final int destX, destY;
+
+    /** The node indices of the path from the start to the destination. Null until found or if no path is possible */
+    volatile int[] path;
+
+    /**
+     * Constructor for a new query.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     */
+    public PathRequest(int startX, int startY, int destX, int destY) {
+        this.startX = startX;
+        this.startY = startY;
+        this.destX = destX;
+        this.destY = destY;
+    }
+
+    /**
+     * @return The x-coordinate of the starting point
+     */
+    public int getStartX() {
+        return startX;
+    }
+
+    /**
+     * @return The y-coordinate of the starting point
+     */
+    public int getStartY() {
+        return startY;
+    }
+
+    /**
+     * @return The x-coordinate of the destination point
+     */
+    public int getDestX() {
+        return destX;
+    }
+
+    /**
+     * @return The y-coordinate of the destination point
+     */
+    public int getDestY() {
+        return destY;
+    }
+
+    /**
+     * Only valid once the batch has completed.
+     * @return The node indices (y * width + x) of the path from the start to the destination. Null if no path is possible.
+     */
+    public int[] getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,185 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs searches on a fixed number of worker threads.
+ *
+ * Waiting searches are ordered by priority, then by the order they were submitted in.
+ * The number of waiting searches is bounded: once the queue is full, new searches are
+ * rejected until workers have caught up. A search submitted for a requester cancels
+ * that requester's previous search if it has not finished yet, e.g. because a unit's target has moved.
+ * If the new search is rejected, the previous one is kept.
+ * Searches that run in time slices go back into the queue after each slice.
+ * Workers reuse their search state through the {@link SearchWorkspace} pool.
+ */
+class PathScheduler {
+
+    /** The thread pool running the searches */
+    private final ThreadPoolExecutor executor;
+
+    /** The maximum number of waiting searches */
+    private final int queueCapacity;
+
+    /** The number of waiting searches */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /** Hands out the submission order of searches with equal priority */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** The number of submitted searches that have not ended yet, including those between time slices */
+    private final AtomicInteger unfinished = new AtomicInteger();
+
+    /** Set once the scheduler is shut down. The workers stop as soon as no search is unfinished */
+    private volatile boolean shuttingDown;
+
+    /** The unfinished search of each requester */
+    private final ConcurrentHashMap<Object, PathSearch> searchByRequester = new ConcurrentHashMap<>();
+
+    /** Constructor
+     *
+     * @param threads The number of worker threads
+     * @param queueCapacity The maximum number of waiting searches
+     */
+    PathScheduler(int threads, int queueCapacity) {
+        if (threads < 1) throw new IllegalArgumentException("At least one worker thread is needed.");
+        if (queueCapacity < 1) throw new IllegalArgumentException("The queue capacity must be at least 1.");
+        this.queueCapacity = queueCapacity;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(Math.min(queueCapacity, 64)),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Pathfinder-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues a search.
+     *
+     * @param search The search to run
+     * @return False if the queue is full and the search was rejected
+     */
+    boolean submit(PathSearch search) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            // A waiting search of the same requester gives its place to the new one
+            PathSearch waiting = search.requester == null ? null : searchByRequester.get(search.requester);
+            if (waiting == null || !waiting.cancelIfQueued()) {
+                // The requester keeps its previous search
+                queued.decrementAndGet();
+                return false;
+            }
+        }
+        if (search.requester != null) {
+            PathSearch superseded = searchByRequester.put(search.requester, search);
+            if (superseded != null) superseded.cancel();
+        }
+        search.sequence = sequence.getAndIncrement();
+        unfinished.incrementAndGet();
+        if (!search.enqueue(this)) {
+            // Already cancelled by a newer search of the same requester
+            queued.decrementAndGet();
+            onEnded();
+            return true;
+        }
+        executor.execute(search);
+        return true;
+    }
+
+    /**
+     * Queues work that is not a single search, e.g. a worker of a {@link PathBatch}.
+     * It waits with the searches, ordered by its priority, but does not count against the queue capacity.
+     *
+     * @param task The work to run
+     */
+    void execute(ScheduledTask task) {
+        task.sequence = sequence.getAndIncrement();
+        executor.execute(task);
+    }
+
+    /**
+     * @return The number of worker threads
+     */
+    int getThreadCount() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Puts a search that has used up its time slice back into the queue.
+     * Its place has been reserved by {@link #reserveSlot()} before.
+     *
+     * @param search The suspended search
+     */
+    void requeue(PathSearch search) {
+        search.sequence = sequence.getAndIncrement();
+        executor.execute(search);
+    }
+
+    /**
+     * Reserves a place in the queue for a suspended search, regardless of the capacity.
+     */
+    void reserveSlot() {
+        queued.incrementAndGet();
+    }
+
+    /**
+     * Gives back a place reserved by {@link #reserveSlot()} that is not needed.
+     */
+    void releaseSlot() {
+        queued.decrementAndGet();
+    }
+
+    /**
+     * Called by a search once a worker has picked it up.
+     * @param search The search that has started
+     */
+    void onStarted(PathSearch search) {
+        queued.decrementAndGet();
+    }
+
+    /**
+     * Called by a waiting search that has been cancelled.
+     * @param search The cancelled search
+     */
+    void onDequeued(PathSearch search) {
+        executor.remove(search);
+        queued.decrementAndGet();
+        onFinished(search);
+    }
+
+    /**
+     * Called by a search that has finished or has been cancelled.
+     * @param search The search
+     */
+    void onFinished(PathSearch search) {
+        if (search.requester != null) searchByRequester.remove(search.requester, search);
+        onEnded();
+    }
+
+    /**
+     * Stops the worker threads once all queued searches have finished.
+     * Searches running in time slices keep their workers until they have finished, too.
+     */
+    void shutdown() {
+        shuttingDown = true;
+        if (unfinished.get() == 0) executor.shutdown();
+    }
+
+    /**
+     * Counts a submitted search as ended and stops the workers if it was the last one after a shutdown.
+     */
+    private void onEnded() {
+        if (unfinished.decrementAndGet() == 0 && shuttingDown) executor.shutdown();
+    }
+}
@@ -0,0 +1,469 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One search for a path, created by {@link GridPathfinder}.
+ *
+ * Searches started with {@link GridPathfinder#findPath(int, int, int, int, int, Object, OnPathComputedListener)}
+ * are run by the worker threads of the scheduler, in time slices if
+ * {@link GridPathfinder#setTimeSlice(int, long)} has been set.
+ * Searches started with {@link GridPathfinder#startSearch(int, int, int, int, OnPathComputedListener)}
+ * are run by the caller, a bit at a time, via {@link #resume(int, long)}, e.g. once per frame
+ * from the game loop. Either way, a search only holds on to its node states while it is unfinished.
+ *
+ * Searches started with {@link GridPathfinder#findPathProgressively(int, int, int, int, int, Object, Executor, OnPathRefinedListener)}
+ * run a quick approximating search first, deliver its path and then continue with the refining search.
+ */
+public final class PathSearch extends ScheduledTask implements SearchHandle {
+    /** States of a search */
+    private static final int STATE_SUSPENDED = 0, STATE_QUEUED = 1, STATE_RUNNING = 2, STATE_DONE = 3, STATE_CANCELLED = 4;
+
+    /** The algorithm. Replaced by {@link #refinement} once an approximate path has been delivered, read by {@link #cancel()} */
+    private volatile AStarSearch search;
+
+    /** Searches the final path once {@link #search} has found an approximate one. Null if there is nothing to refine */
+    private AStarSearch refinement;
+
+    /** Runs the calls of {@link #listener}. Null to call it on the thread that finished the search */
+    private final Executor executor;
+
+    /**
+     * The Callback interface
+     * Once the algorithm has finished, {@link OnPathComputedListener#onPathComputed(int[])} is called,
+     * either with the waypoints of the path or null if no path is available.
+     */
+    private final OnPathComputedListener listener;
+
+    /** The buffer the waypoints are written into instead of a new array. Null if the path is passed as an array */
+    private final WaypointBuffer buffer;
+
+    /** Which waypoints are written into {@link #buffer}. One of the GridPathfinder.WAYPOINTS_ constants */
+    private final int waypoints;
+
+    /** Invoked once the waypoints have been written into {@link #buffer}. May be null */
+    private final OnWaypointsFoundListener waypointsListener;
+
+    /** The object this search was requested for, if any */
+    final Object requester;
+
+    /** The maximum number of nodes a scheduled search expands per time slice. 0 for no limit */
+    final int sliceExpansions;
+
+    /** The maximum duration of a scheduled search's time slice in nanoseconds. 0 for no limit */
+    final long sliceNanos;
+
+    /** The cache to look the path up in and to store it in. May be null */
+    private final PathCache cache;
+
+    /** The path found in the cache, delivered instead of running the search */
+    private int[] cachedNodes;
+
+    /** Set once the cache has been asked for the path, so the refining search does not ask again */
+    private boolean lookedUp;
+
+    /** The scheduler this search was submitted to. Null if the search is resumed by the caller */
+    PathScheduler owner;
+
+    /** Receive the metrics of this search. Null if nobody listens, then nothing is measured */
+    private List<OnSearchFinishedListener> metricsListeners;
+
+    /** The engine of this search, for the metrics. One of the GridPathfinder.ENGINE_ constants */
+    private int engine;
+
+    /** When this search was created, in nanoseconds. Only measured if {@link #metricsListeners} is set */
+    private long createdNanos;
+
+    /** When the first step started, in nanoseconds. 0 before. Only measured if {@link #metricsListeners} is set */
+    private long firstStepNanos;
+
+    /** The time spent in steps so far in nanoseconds. Only measured if {@link #metricsListeners} is set */
+    private long stepNanos;
+
+    /** The number of cells of the path found. 0 if none */
+    private int pathLength;
+
+    /** The rounds, generated nodes and peak open set size of the approximating search, added to those of {@link #search} */
+    private int approximateRounds, approximateGenerated, approximatePeakOpenNodes;
+
+    /** The setup time of the approximating search in nanoseconds, added to that of {@link #search} */
+    private long approximateSetupNanos;
+
+    /** The state of this search. One of the STATE_ constants */
+    private final AtomicInteger state = new AtomicInteger(STATE_SUSPENDED);
+
+    /**
+     * Constructor for a new search.
+     *
+     * @param search The algorithm, not started yet
+     * @param listener The callback interface, see {@link OnPathComputedListener#onPathComputed(int[])}
+     * @param priority One of the GridPathfinder.PRIORITY_ constants
+     * @param requester The object the path is searched for. May be null.
+     * @param sliceExpansions The maximum number of nodes expanded per time slice when scheduled. 0 for no limit
+     * @param sliceNanos The maximum duration of a time slice in nanoseconds when scheduled. 0 for no limit
+     * @param cache The cache to look the path up in and to store it in. May be null
+     */
+    PathSearch(AStarSearch search, OnPathComputedListener listener,
+               int priority, Object requester, int sliceExpansions, long sliceNanos, PathCache cache) {
+        this(search, null, listener, null, null, GridPathfinder.WAYPOINTS_ALL_CELLS, null,
+                priority, requester, sliceExpansions, sliceNanos, cache);
+    }
+
+    /**
+     * Constructor for a new search delivering an approximate path before the final one.
+     *
+     * @param approximation The algorithm finding the approximate path, not started yet
+     * @param refinement The algorithm finding the final path, not started yet. Null to only run @approximation
+     * @param listener The callback interface, see {@link OnPathRefinedListener}
+     * @param executor Runs the calls of the listener. Null to call it on the thread that finished the search
+     * @param priority One of the GridPathfinder.PRIORITY_ constants
+     * @param requester The object the path is searched for. May be null.
+     * @param sliceExpansions The maximum number of nodes expanded per time slice when scheduled. 0 for no limit
+     * @param sliceNanos The maximum duration of a time slice in nanoseconds when scheduled. 0 for no limit
+     * @param cache The cache to look the path up in and to store the final path in. May be null
+     */
+    PathSearch(AStarSearch approximation, AStarSearch refinement, OnPathRefinedListener listener, Executor executor,
+               int priority, Object requester, int sliceExpansions, long sliceNanos, PathCache cache) {
+        this(approximation, refinement, listener, executor, null, GridPathfinder.WAYPOINTS_ALL_CELLS, null,
+                priority, requester, sliceExpansions, sliceNanos, cache);
+    }
+
+    /**
+     * Constructor for a new search writing its path into a buffer.
+     *
+     * @param search The algorithm, not started yet
+     * @param buffer The buffer the waypoints are written into
+     * @param waypoints One of the GridPathfinder.WAYPOINTS_ constants
+     * @param listener Invoked once the waypoints have been written. May be null
+     * @param priority One of the GridPathfinder.PRIORITY_ constants
+     * @param requester The object the path is searched for. May be null.
+     * @param sliceExpansions The maximum number of nodes expanded per time slice when scheduled. 0 for no limit
+     * @param sliceNanos The maximum duration of a time slice in nanoseconds when scheduled. 0 for no limit
+     * @param cache The cache to look the path up in and to store it in. May be null
+     */
+    PathSearch(AStarSearch search, WaypointBuffer buffer, int waypoints, OnWaypointsFoundListener listener,
+               int priority, Object requester, int sliceExpansions, long sliceNanos, PathCache cache) {
+        this(search, null, null, null, buffer, waypoints, listener, priority, requester, sliceExpansions, sliceNanos, cache);
+    }
+
+    private PathSearch(AStarSearch search, AStarSearch refinement, OnPathComputedListener listener, Executor executor,
+                       WaypointBuffer buffer, int waypoints, OnWaypointsFoundListener waypointsListener,
+                       int priority, Object requester, int sliceExpansions, long sliceNanos, PathCache cache) {
+        super(priority);
+        this.search = search;
+        this.refinement = refinement;
+        this.listener = listener;
+        this.executor = executor;
+        this.buffer = buffer;
+        this.waypoints = waypoints;
+        this.waypointsListener = waypointsListener;
+        this.requester = requester;
+        this.sliceExpansions = sliceExpansions;
+        this.sliceNanos = sliceNanos;
+        this.cache = cache;
+    }
+
+    /**
+     * Reports the metrics of this search once it has finished. Must be called before the search starts.
+     *
+     * @param listeners Receive the metrics. Must not be empty
+     */
+    void measure(List<OnSearchFinishedListener> listeners) {
+        metricsListeners = listeners;
+        // The engine that was created, which is A* if the configured one does not support the search
+        engine = search.getEngine();
+        createdNanos = System.nanoTime();
+        search.timed = true;
+        if (refinement != null) refinement.timed = true;
+    }
+
+    /**
+     * Continues a search started by {@link GridPathfinder#startSearch(int, int, int, int, OnPathComputedListener)}
+     * on the calling thread. Once the search finishes, its listener is invoked on this thread.
+     *
+     * @param maxExpansions The maximum number of nodes to expand in this call. 0 for no limit
+     * @param maxNanos The maximum time to spend in this call in nanoseconds. 0 for no limit
+     * @return True if the search has finished or has been cancelled, false if it has to be resumed again
+     */
+    public boolean resume(int maxExpansions, long maxNanos) {
+        if (owner != null) throw new IllegalArgumentException("This search is run by the scheduler and can't be resumed by the caller.");
+        if (!state.compareAndSet(STATE_SUSPENDED, STATE_RUNNING)) return true;
+
+        int status = step(maxExpansions, maxNanos);
+        if (status == AStarSearch.SUSPENDED) {
+            if (state.compareAndSet(STATE_RUNNING, STATE_SUSPENDED)) return false;
+            // Cancelled in the meantime
+            reportCancelled();
+            releaseWorkspace();
+            return true;
+        }
+        finish(status);
+        return true;
+    }
+
+    @Override
+    public void run() {
+        // Cancelled searches may still be picked up by a worker
+        if (!state.compareAndSet(STATE_QUEUED, STATE_RUNNING)) return;
+        owner.onStarted(this);
+
+        int status = step(sliceExpansions, sliceNanos);
+        if (status == AStarSearch.SUSPENDED) {
+            // Back into the queue so other searches get their turn
+            owner.reserveSlot();
+            if (state.compareAndSet(STATE_RUNNING, STATE_QUEUED)) {
+                try {
+                    owner.requeue(this);
+                } catch (RejectedExecutionException e) {
+                    // The workers have been stopped, so the search ends as if it had been cancelled
+                    if (state.compareAndSet(STATE_QUEUED, STATE_CANCELLED)) {
+                        owner.releaseSlot();
+                        reportCancelled();
+                        releaseWorkspace();
+                        owner.onFinished(this);
+                    }
+                }
+            } else {
+                owner.releaseSlot();
+                reportCancelled();
+                releaseWorkspace();
+                owner.onFinished(this);
+            }
+            return;
+        }
+        finish(status);
+    }
+
+    /**
+     * Looks the path up in the cache before the search runs for the first time, then continues the search.
+     * @return The result of {@link AStarSearch#step(int, long)}
+     */
+    private int step(int maxExpansions, long maxNanos) {
+        if (metricsListeners == null) return stepSearch(maxExpansions, maxNanos);
+        long start = System.nanoTime();
+        if (firstStepNanos == 0) firstStepNanos = start;
+        int status = stepSearch(maxExpansions, maxNanos);
+        stepNanos += System.nanoTime() - start;
+        return status;
+    }
+
+    private int stepSearch(int maxExpansions, long maxNanos) {
+        if (cache != null && !lookedUp) {
+            lookedUp = true;
+            cachedNodes = cache.get(search.startY * search.model.width + search.startX, search.destY * search.model.width + search.destX);
+            if (cachedNodes != null) return AStarSearch.FOUND;
+        }
+        int status = search.step(maxExpansions, maxNanos);
+        if (status == AStarSearch.FOUND && refinement != null) return refine();
+        return status;
+    }
+
+    /**
+     * Delivers the path of the approximating search and hands over to the refining search.
+     * @return {@link AStarSearch#SUSPENDED}, so the refining search runs in the next step
+     */
+    private int refine() {
+        int[] nodes = new int[search.countPathNodes()];
+        search.collectPath(nodes, nodes.length);
+        approximateRounds = search.getRounds();
+        approximateGenerated = search.getGeneratedNodes();
+        approximatePeakOpenNodes = search.getPeakOpenNodes();
+        approximateSetupNanos = search.getSetupNanos();
+        releaseWorkspace();
+        search = refinement;
+        refinement = null;
+        deliver(nodes, false);
+        return AStarSearch.SUSPENDED;
+    }
+
+    /**
+     * Passes a path to the listener, via the executor if there is one.
+     *
+     * @param nodes The node indices of the path. Null if no path is possible
+     * @param complete False for the approximate path, which is dropped if the search has finished before it is delivered
+     */
+    private void deliver(final int[] nodes, final boolean complete) {
+        if (executor == null) {
+            notifyListener(nodes, complete);
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int current = state.get();
+                if (complete || (current != STATE_DONE && current != STATE_CANCELLED)) notifyListener(nodes, complete);
+            }
+        });
+    }
+
+    /**
+     * @param nodes The node indices of the path. Null if no path is possible
+     * @param complete False for the approximate path
+     */
+    private void notifyListener(int[] nodes, boolean complete) {
+        if (complete) listener.onPathComputed(nodes);
+        else ((OnPathRefinedListener) listener).onApproximatePathComputed(nodes);
+    }
+
+    /**
+     * Delivers the result of a finished search, unless it has been cancelled.
+     * @param status The result of the algorithm
+     */
+    private void finish(int status) {
+        if (!state.compareAndSet(STATE_RUNNING, STATE_DONE)) {
+            reportCancelled();
+            releaseWorkspace();
+            if (owner != null) owner.onFinished(this);
+            return;
+        }
+
+        long start = metricsListeners != null ? System.nanoTime() : 0;
+        int[] nodes = null;
+        if (buffer != null) {
+            buffer.clear(search.model.width);
+            if (status == AStarSearch.FOUND) fillBuffer();
+        } else if (status == AStarSearch.FOUND) {
+            if (cachedNodes != null) {
+                // The listener owns the array it receives
+                nodes = cachedNodes.clone();
+            } else {
+                nodes = new int[search.countPathNodes()];
+                search.collectPath(nodes, nodes.length);
+                if (cache != null) storeInCache(nodes.clone());
+            }
+            pathLength = nodes.length;
+        }
+        if (metricsListeners != null) {
+            stepNanos += System.nanoTime() - start;
+            report(status == AStarSearch.FOUND ? SearchMetrics.RESULT_FOUND
+                    : status == AStarSearch.CANCELLED ? SearchMetrics.RESULT_CANCELLED : SearchMetrics.RESULT_NOT_FOUND);
+        }
+        releaseWorkspace();
+        if (owner != null) owner.onFinished(this);
+        if (buffer == null) deliver(nodes, true);
+        else if (waypointsListener != null) waypointsListener.onWaypointsFound(buffer);
+    }
+
+    /**
+     * Writes the path into the buffer, then reduces it to the requested waypoints.
+     */
+    private void fillBuffer() {
+        int count;
+        if (cachedNodes != null) {
+            count = cachedNodes.length;
+            buffer.ensureCapacity(count);
+            System.arraycopy(cachedNodes, 0, buffer.nodes, 0, count);
+        } else {
+            count = search.countPathNodes();
+            buffer.ensureCapacity(count);
+            search.collectPath(buffer.nodes, count);
+            if (cache != null) storeInCache(Arrays.copyOf(buffer.nodes, count));
+        }
+        pathLength = count;
+        buffer.size = Waypoints.reduce(buffer.nodes, count, waypoints, search.model, search.agentSize);
+    }
+
+    /**
+     * @param nodes The node indices of the path from the start to the destination, owned by the cache
+     */
+    private void storeInCache(int[] nodes) {
+        int dest = nodes[nodes.length - 1];
+        cache.put(nodes[0], dest, nodes, search.workspace.gCost[dest], search.getGridVersion());
+    }
+
+    /**
+     * Reports the metrics of a search that has been cancelled.
+     */
+    private void reportCancelled() {
+        if (metricsListeners != null) report(SearchMetrics.RESULT_CANCELLED);
+    }
+
+    /**
+     * Reports the metrics to the listeners. Must be called before the workspace is released.
+     * @param result One of the SearchMetrics.RESULT_ constants
+     */
+    private void report(int result) {
+        long setupNanos = search.getSetupNanos() + approximateSetupNanos;
+        SearchMetrics metrics = new SearchMetrics(engine, result, cachedNodes != null,
+                firstStepNanos == 0 ? 0 : firstStepNanos - createdNanos, setupNanos, Math.max(stepNanos - setupNanos, 0),
+                getExpandedNodes(), search.getGeneratedNodes() + approximateGenerated,
+                Math.max(search.getPeakOpenNodes(), approximatePeakOpenNodes), pathLength);
+        for (OnSearchFinishedListener listener : metricsListeners) {
+            listener.onSearchFinished(metrics);
+        }
+    }
+
+    private void releaseWorkspace() {
+        if (search.workspace != null) {
+            SearchWorkspace.release(search.workspace);
+            search.workspace = null;
+        }
+    }
+
+    /**
+     * Marks the search as submitted to the scheduler.
+     * @param owner The scheduler
+     * @return False if the search has been cancelled before
+     */
+    boolean enqueue(PathScheduler owner) {
+        this.owner = owner;
+        return state.compareAndSet(STATE_SUSPENDED, STATE_QUEUED);
+    }
+
+    /**
+     * Cancels the search if it is waiting in the scheduler's queue, which frees its place.
+     * @return False if the search is running or has ended, then it is left alone
+     */
+    boolean cancelIfQueued() {
+        if (!state.compareAndSet(STATE_QUEUED, STATE_CANCELLED)) return false;
+        reportCancelled();
+        releaseWorkspace();
+        owner.onDequeued(this);
+        return true;
+    }
+
+    @Override
+    public boolean cancel() {
+        while (true) {
+            int current = state.get();
+            switch (current) {
+                case STATE_SUSPENDED:
+                case STATE_QUEUED:
+                    // Nobody is working on the search, so its node states can be released right away
+                    if (!state.compareAndSet(current, STATE_CANCELLED)) continue;
+                    reportCancelled();
+                    releaseWorkspace();
+                    if (current == STATE_QUEUED) owner.onDequeued(this);
+                    return true;
+                case STATE_RUNNING:
+                    if (!state.compareAndSet(current, STATE_CANCELLED)) continue;
+                    search.cancel();
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return state.get() == STATE_CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return state.get() == STATE_DONE;
+    }
+
+    /**
+     * @return The number of nodes the search has taken from the open set so far, including those of the approximating
+     *          search. 0 if the path came from the cache
+     */
+    public int getExpandedNodes() {
+        return search.getRounds() + approximateRounds;
+    }
+}
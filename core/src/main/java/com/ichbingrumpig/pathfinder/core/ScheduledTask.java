@@ -0,0 +1,27 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * Work run by the worker threads of the {@link PathScheduler}.
+ * Waiting tasks are ordered by priority, then by the order they were submitted in.
+ */
+abstract class ScheduledTask implements Runnable, Comparable<ScheduledTask> {
+
+    /** The priority of this task. One of the GridPathfinder.PRIORITY_ constants */
+    final int priority;
+
+    /** The submission order of this task, set by the {@link PathScheduler} */
+    long sequence;
+
+    /**
+     * @param priority One of the GridPathfinder.PRIORITY_ constants
+     */
+    ScheduledTask(int priority) {
+        this.priority = priority;
+    }
+
+    @Override
+    public int compareTo(ScheduledTask other) {
+        if (priority != other.priority) return priority < other.priority ? -1 : 1;
+        return sequence < other.sequence ? -1 : sequence > other.sequence ? 1 : 0;
+    }
+}
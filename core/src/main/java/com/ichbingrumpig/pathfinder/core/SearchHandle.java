@@ -0,0 +1,27 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * Returned by {@link GridPathfinder#findPath(int, int, int, int, int, Object, OnPathComputedListener)}
+ * to keep track of a search and to cancel it once its result is no longer needed.
+ */
+public interface SearchHandle {
+
+    /**
+     * Cancels the search. A waiting search is removed from the queue, a running search
+     * stops at its next check. The {@link OnPathComputedListener#onPathComputed(int[])} callback
+     * is never invoked for a cancelled search.
+     *
+     * @return False if the search had already finished or been cancelled
+     */
+    boolean cancel();
+
+    /**
+     * @return If the search has been cancelled
+     */
+    boolean isCancelled();
+
+    /**
+     * @return If the search has finished and its result has been delivered
+     */
+    boolean isDone();
+}
@@ -0,0 +1,126 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * What one search has cost, reported to an {@link OnSearchFinishedListener}.
+ */
+public final class SearchMetrics {
+
+    /** Results of a search */
+    public static final int RESULT_FOUND = 0, RESULT_NOT_FOUND = 1, RESULT_CANCELLED = 2;
+
+    /** One of the GridPathfinder.ENGINE_ constants */
+    private final int engine;
+
+    /** One of the RESULT_ constants */
+    private final int result;
+
+    /** If the path came from the cache */
+    private final boolean cached;
+
+    /** The time between creating the search and its first step in nanoseconds */
+    private final long waitNanos;
+
+    /** The time the first step took before expanding the first node in nanoseconds */
+    private final long setupNanos;
+
+    /** The time spent expanding nodes in nanoseconds */
+    private final long searchNanos;
+
+    /** The number of nodes taken from the open set */
+    private final int expandedNodes;
+
+    /** The number of nodes added to the open set */
+    private final int generatedNodes;
+
+    /** The largest number of nodes in the open set at once */
+    private final int peakOpenNodes;
+
+    /** The number of cells of the path. 0 if none was found */
+    private final int pathLength;
+
+    SearchMetrics(int engine, int result, boolean cached, long waitNanos, long setupNanos, long searchNanos,
+                  int expandedNodes, int generatedNodes, int peakOpenNodes, int pathLength) {
+        this.engine = engine;
+        this.result = result;
+        this.cached = cached;
+        this.waitNanos = waitNanos;
+        this.setupNanos = setupNanos;
+        this.searchNanos = searchNanos;
+        this.expandedNodes = expandedNodes;
+        this.generatedNodes = generatedNodes;
+        this.peakOpenNodes = peakOpenNodes;
+        this.pathLength = pathLength;
+    }
+
+    /**
+     * @return The engine the search ran on. One of the GridPathfinder.ENGINE_ constants
+     */
+    public int getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return One of {@link #RESULT_FOUND}, {@link #RESULT_NOT_FOUND} and {@link #RESULT_CANCELLED}
+     */
+    public int getResult() {
+        return result;
+    }
+
+    /**
+     * @return If the path came from the cache instead of a search
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * @return The time between creating the search and its first step in nanoseconds, e.g. waiting in the queue.
+     *          0 if the search was cancelled before
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * @return The time the first step took before expanding the first node in nanoseconds,
+     *          e.g. for looking up the cache and preparing the node states
+     */
+    public long getSetupNanos() {
+        return setupNanos;
+    }
+
+    /**
+     * @return The time spent expanding nodes and building the path in nanoseconds, over all time slices
+     */
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * @return The number of nodes taken from the open set
+     */
+    public int getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * @return The number of nodes added to the open set
+     */
+    public int getGeneratedNodes() {
+        return generatedNodes;
+    }
+
+    /**
+     * @return The largest number of nodes in the open set at once
+     */
+    public int getPeakOpenNodes() {
+        return peakOpenNodes;
+    }
+
+    /**
+     * @return The number of cells of the path, before it is reduced to waypoints. 0 if no path was found
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+}
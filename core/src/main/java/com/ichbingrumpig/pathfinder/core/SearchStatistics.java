@@ -0,0 +1,132 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adds up the metrics of all searches, e.g. for a dashboard of a game server.
+ * Register it via {@link GridPathfinder#addOnSearchFinishedListener(OnSearchFinishedListener)}.
+ * All numbers can be read from any thread while searches are running.
+ */
+public final class SearchStatistics implements OnSearchFinishedListener {
+
+    /** The number of searches per result, indexed by the SearchMetrics.RESULT_ constants */
+    private final AtomicLong[] results = {new AtomicLong(), new AtomicLong(), new AtomicLong()};
+
+    /** The number of searches answered from the cache */
+    private final AtomicLong cached = new AtomicLong();
+
+    /** The time searches waited before their first step in nanoseconds */
+    private final Histogram waitNanos = new Histogram();
+
+    /** The time of the first steps before the first expansion in nanoseconds */
+    private final Histogram setupNanos = new Histogram();
+
+    /** The time spent expanding nodes in nanoseconds */
+    private final Histogram searchNanos = new Histogram();
+
+    /** The number of nodes expanded per search */
+    private final Histogram expandedNodes = new Histogram();
+
+    /** The number of nodes generated per search */
+    private final Histogram generatedNodes = new Histogram();
+
+    /** The largest open set of each search */
+    private final Histogram peakOpenNodes = new Histogram();
+
+    /** The number of cells of the paths found */
+    private final Histogram pathLength = new Histogram();
+
+    @Override
+    public void onSearchFinished(SearchMetrics metrics) {
+        results[metrics.getResult()].incrementAndGet();
+        if (metrics.isCached()) cached.incrementAndGet();
+        if (metrics.getResult() == SearchMetrics.RESULT_CANCELLED) return;
+        waitNanos.record(metrics.getWaitNanos());
+        setupNanos.record(metrics.getSetupNanos());
+        searchNanos.record(metrics.getSearchNanos());
+        expandedNodes.record(metrics.getExpandedNodes());
+        generatedNodes.record(metrics.getGeneratedNodes());
+        peakOpenNodes.record(metrics.getPeakOpenNodes());
+        if (metrics.getResult() == SearchMetrics.RESULT_FOUND) pathLength.record(metrics.getPathLength());
+    }
+
+    /**
+     * @param result One of the SearchMetrics.RESULT_ constants
+     * @return The number of searches that ended with this result
+     */
+    public long getSearchCount(int result) {
+        return results[result].get();
+    }
+
+    /**
+     * @return The number of searches answered from the cache
+     */
+    public long getCachedCount() {
+        return cached.get();
+    }
+
+    /**
+     * @return The time searches waited before their first step, e.g. in the queue, in nanoseconds
+     */
+    public Histogram getWaitNanos() {
+        return waitNanos;
+    }
+
+    /**
+     * @return The time of the first steps before the first expansion in nanoseconds
+     */
+    public Histogram getSetupNanos() {
+        return setupNanos;
+    }
+
+    /**
+     * @return The time spent expanding nodes per search in nanoseconds
+     */
+    public Histogram getSearchNanos() {
+        return searchNanos;
+    }
+
+    /**
+     * @return The number of nodes expanded per search
+     */
+    public Histogram getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * @return The number of nodes added to the open set per search
+     */
+    public Histogram getGeneratedNodes() {
+        return generatedNodes;
+    }
+
+    /**
+     * @return The largest open set of each search
+     */
+    public Histogram getPeakOpenNodes() {
+        return peakOpenNodes;
+    }
+
+    /**
+     * @return The number of cells of the paths found
+     */
+    public Histogram getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * Starts counting from zero, e.g. at the start of a reporting interval.
+     * Searches finishing meanwhile may be counted in part.
+     */
+    public void reset() {
+        for (AtomicLong result : results) result.set(0);
+        cached.set(0);
+        waitNanos.reset();
+        setupNanos.reset();
+        searchNanos.reset();
+        expandedNodes.reset();
+        generatedNodes.reset();
+        peakOpenNodes.reset();
+        pathLength.reset();
+    }
+}
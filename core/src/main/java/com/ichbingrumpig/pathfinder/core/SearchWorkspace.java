@@ -0,0 +1,129 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Vital part of the A* implementation
+ *
+ * A SearchWorkspace holds the state of every node in the grid for one search
+ * in flat arrays indexed by node index (index = y * boardWidth + x).
+ * Workspaces are pooled and reused: a node only counts as part of the current search
+ * if its stamp carries the current generation, so resetting a workspace is O(1)
+ * and nodes are materialised lazily, only once the search reaches them.
+ * Every {@link GridModel} keeps its own pool, so pathfinders on different boards never share
+ * or drop each other's workspaces, and the workspaces of a former board go with it.
+ */
+class SearchWorkspace {
+
+    /** The pool of the model this workspace was created for */
+    private final ConcurrentLinkedQueue<SearchWorkspace> pool;
+
+    /** The number of nodes this workspace can hold */
+    final int capacity;
+
+    /** The cost of travelling from the start to a node: g(n) */
+    final int[] gCost;
+
+    /** The final cost of a node: f(n) = g(n) + h(n) */
+    final int[] finalCost;
+
+    /** The node index of a node's parent. -1 for the starting node */
+    final int[] parent;
+
+    /** The open set */
+    final NodeHeap open;
+
+    /**
+     * The generation a node was last touched in.
+     * {@link #generation} marks an open node, {@link #generation} + 1 a closed or blocked one.
+     * Anything else means the node has not been touched by the current search.
+     */
+    private final int[] stamps;
+
+    /** The generation of the current search. Always even */
+    private int generation = 0;
+
+    /** Constructor
+     *
+     * @param capacity The number of nodes in the grid
+     * @param pool The pool the workspace is returned to
+     */
+    private SearchWorkspace(int capacity, ConcurrentLinkedQueue<SearchWorkspace> pool) {
+        this.capacity = capacity;
+        this.pool = pool;
+        gCost = new int[capacity];
+        finalCost = new int[capacity];
+        parent = new int[capacity];
+        stamps = new int[capacity];
+        open = new NodeHeap(capacity);
+    }
+
+    /**
+     * Takes a workspace from the pool of the model or creates a new one if none is available.
+     * The returned workspace is reset and ready for a new search.
+     *
+     * @param model The model the search runs on
+     * @return A workspace for every node of the model
+     */
+    static SearchWorkspace acquire(GridModel model) {
+        SearchWorkspace workspace = model.workspaces.poll();
+        if (workspace == null) workspace = new SearchWorkspace(model.size(), model.workspaces);
+        workspace.reset();
+        return workspace;
+    }
+
+    /**
+     * Returns a workspace to the pool of its model once its search has finished.
+     * @param workspace The workspace to be reused
+     */
+    static void release(SearchWorkspace workspace) {
+        workspace.pool.offer(workspace);
+    }
+
+    /**
+     * Forgets every node of the previous search.
+     */
+    void reset() {
+        open.clear();
+        generation += 2;
+        if (generation == Integer.MAX_VALUE - 1) {
+            // Stamps of older generations could collide with new ones
+            Arrays.fill(stamps, 0);
+            generation = 2;
+        }
+    }
+
+    /**
+     * @param node The node index
+     * @return If the node has been touched by the current search
+     */
+    boolean isMaterialised(int node) {
+        int stamp = stamps[node];
+        return stamp == generation || stamp == generation + 1;
+    }
+
+    /**
+     * @param node The node index
+     * @return If the node has been closed or found blocked by the current search
+     */
+    boolean isClosed(int node) {
+        return stamps[node] == generation + 1;
+    }
+
+    /**
+     * Marks a node as part of the current search. It is not closed.
+     * @param node The node index
+     */
+    void materialise(int node) {
+        stamps[node] = generation;
+    }
+
+    /**
+     * Adds a node to the closed set.
+     * @param node The node index
+     */
+    void close(int node) {
+        stamps[node] = generation + 1;
+    }
+}
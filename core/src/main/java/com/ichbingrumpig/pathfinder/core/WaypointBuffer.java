@@ -0,0 +1,91 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * A reusable buffer the waypoints of a path are written into, from the start to the destination.
+ *
+ * Keep one buffer per unit and pass it to every search of that unit: it only grows
+ * when a path has more waypoints than any path before, so following paths allocates nothing.
+ * A buffer passed to a search must not be read or passed to another search until its
+ * {@link OnWaypointsFoundListener} has been invoked.
+ */
+public final class WaypointBuffer {
+
+    /** The node indices (y * width + x) of the waypoints */
+    int[] nodes;
+
+    /** The number of waypoints */
+    int size = 0;
+
+    /** The width of the board the waypoints are on */
+    int width = 1;
+
+    /**
+     * Constructor for a buffer with room for 64 waypoints.
+     */
+    public WaypointBuffer() {
+        this(64);
+    }
+
+    /**
+     * @param initialCapacity The number of waypoints the buffer has room for before it grows
+     */
+    public WaypointBuffer(int initialCapacity) {
+        nodes = new int[Math.max(initialCapacity, 1)];
+    }
+
+    /**
+     * @return The number of waypoints. 0 if no path is possible
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return If no path is possible
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index The index of the waypoint, 0 being the start
+     * @return The x-coordinate of the waypoint
+     */
+    public int getX(int index) {
+        return getNode(index) % width;
+    }
+
+    /**
+     * @param index The index of the waypoint, 0 being the start
+     * @return The y-coordinate of the waypoint
+     */
+    public int getY(int index) {
+        return getNode(index) / width;
+    }
+
+    /**
+     * @param index The index of the waypoint, 0 being the start
+     * @return The node index (y * width + x) of the waypoint
+     */
+    public int getNode(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Waypoint " + index + " of " + size);
+        return nodes[index];
+    }
+
+    /**
+     * Empties the buffer before a search writes into it.
+     * @param width The width of the board of the search
+     */
+    void clear(int width) {
+        this.width = width;
+        size = 0;
+    }
+
+    /**
+     * Grows the buffer if it has no room for the given number of waypoints. The content is lost.
+     * @param capacity The number of waypoints
+     */
+    void ensureCapacity(int capacity) {
+        if (nodes.length < capacity) nodes = new int[Math.max(capacity, nodes.length * 2)];
+    }
+}
@@ -0,0 +1,129 @@
+package com.ichbingrumpig.pathfinder.core;
+
+/**
+ * Reduces a path of adjacent cells to fewer waypoints, in place.
+ *
+ * Both reductions keep the start and the destination. Following the waypoints in straight lines
+ * still leads only over cells where the unit fits. They assume square cells, so
+ * {@link #reduce(int[], int, int, GridModel, int)} only applies what the neighbors of the grid allow.
+ */
+final class Waypoints {
+
+    private Waypoints() {
+    }
+
+    /**
+     * Reduces a path to the requested waypoints, as far as the neighbors of the grid allow.
+     * On hexagonal boards a straight line may join cells that are no neighbors, so every cell is kept.
+     * With four neighbors the path may not leave the rows and columns, so it is only reduced to its corners.
+     * Lines of sight never cut corners, so they hold without corner cutting as well.
+     *
+     * @param nodes The node indices of adjacent cells from the start to the destination
+     * @param count The number of cells
+     * @param waypoints One of the GridPathfinder.WAYPOINTS_ constants
+     * @param model The grid the path was found on
+     * @param agentSize The width and height of the unit in cells, see {@link GridModel#fits(int, int)}
+     * @return The number of waypoints left at the start of @nodes
+     */
+    static int reduce(int[] nodes, int count, int waypoints, GridModel model, int agentSize) {
+        int mode = model.getNeighborhood().mode;
+        if (waypoints == GridPathfinder.WAYPOINTS_ALL_CELLS || mode == GridPathfinder.NEIGHBORS_HEX) return count;
+        if (waypoints == GridPathfinder.WAYPOINTS_CORNERS || mode == GridPathfinder.NEIGHBORS_4) return corners(nodes, count);
+        return lineOfSight(nodes, count, model, agentSize);
+    }
+
+    /**
+     * Keeps only the cells where the path changes its direction.
+     *
+     * @param nodes The node indices of adjacent cells from the start to the destination
+     * @param count The number of cells
+     * @return The number of waypoints left at the start of @nodes
+     */
+    static int corners(int[] nodes, int count) {
+        if (count < 3) return count;
+        int kept = 1;
+        for (int i = 1; i < count - 1; i++) {
+            // The step into a cell of a straight line is the same as the step out of it
+            if (nodes[i] - nodes[i - 1] != nodes[i + 1] - nodes[i]) nodes[kept++] = nodes[i];
+        }
+        nodes[kept++] = nodes[count - 1];
+        return kept;
+    }
+
+    /**
+     * Pulls the path tight like a string: from every waypoint it goes straight to the furthest cell
+     * of the path it can see. A cell is visible if the straight line to it only touches free cells
+     * that are not more expensive than the cells of the path it replaces, so it never leads through
+     * a swamp the path went around.
+     *
+     * @param nodes The node indices of adjacent cells from the start to the destination
+     * @param count The number of cells
+     * @param model The grid the path was found on
+     * @param agentSize The width and height of the unit in cells, see {@link GridModel#fits(int, int)}
+     * @return The number of waypoints left at the start of @nodes
+     */
+    static int lineOfSight(int[] nodes, int count, GridModel model, int agentSize) {
+        if (count < 3) return count;
+        final int width = model.width;
+        int kept = 1;
+        int anchor = nodes[0];
+        int i = 1;
+        while (i < count - 1) {
+            // Goes as far as possible from the anchor, which is the last kept waypoint
+            float maxFactor = model.getTravellingFactor(nodes[i]);
+            int j = i;
+            while (j < count - 1) {
+                float factor = Math.max(maxFactor, model.getTravellingFactor(nodes[j + 1]));
+                if (!isVisible(model, anchor % width, anchor / width, nodes[j + 1] % width, nodes[j + 1] / width, factor, agentSize)) break;
+                maxFactor = factor;
+                j++;
+            }
+            if (j == count - 1) break;
+            anchor = nodes[j];
+            nodes[kept++] = anchor;
+            i = j + 1;
+        }
+        nodes[kept++] = nodes[count - 1];
+        return kept;
+    }
+
+    /**
+     * Walks every cell the straight line between the centers of two cells touches.
+     * Lines through the corner of two cells need both of them to be free, so they never cut corners.
+     *
+     * @param maxFactor The highest travelling factor a touched cell may have
+     * @param agentSize The width and height of the unit in cells. The line leads its top-left cell
+     * @return If the unit fits on all touched cells and they are not more expensive than @maxFactor
+     */
+    static boolean isVisible(GridModel model, int x0, int y0, int x1, int y1, float maxFactor, int agentSize) {
+        int dx = Math.abs(x1 - x0), dy = Math.abs(y1 - y0);
+        int stepX = x1 > x0 ? 1 : -1, stepY = y1 > y0 ? 1 : -1;
+        int x = x0, y = y0;
+        int error = dx - dy;
+        dx *= 2;
+        dy *= 2;
+        while (true) {
+            // The cell the line starts on is where the unit already is
+            if ((x != x0 || y != y0) && !isPassable(model, x, y, maxFactor, agentSize)) return false;
+            if (x == x1 && y == y1) return true;
+            if (error > 0) {
+                x += stepX;
+                error -= dy;
+            } else if (error < 0) {
+                y += stepY;
+                error += dx;
+            } else {
+                // Exactly through a corner
+                if (!isPassable(model, x + stepX, y, maxFactor, agentSize) || !isPassable(model, x, y + stepY, maxFactor, agentSize)) return false;
+                x += stepX;
+                y += stepY;
+                error += dx - dy;
+            }
+        }
+    }
+
+    private static boolean isPassable(GridModel model, int x, int y, float maxFactor, int agentSize) {
+        int n = y * model.width + x;
+        return model.fits(n, agentSize) && model.getTravellingFactor(n) <= maxFactor;
+    }
+}
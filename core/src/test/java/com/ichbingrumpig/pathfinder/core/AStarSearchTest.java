@@ -0,0 +1,183 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the A* search against the former {@link PriorityQueue} based implementation on random grids.
+ */
+public class AStarSearchTest {
+
+    /** Grid values: 0 is blocked, all others are free with the travelling factor at their position */
+    private static final float[] FACTORS = {0f, 1.5f, 2f, 3f};
+
+    @Test
+    public void pathCostsMatchFormerImplementation() throws Exception {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            int width = 5 + random.nextInt(40);
+            int height = 5 + random.nextInt(40);
+            int[][] grid = randomGrid(random, width, height);
+            int startX = random.nextInt(width), startY = random.nextInt(height);
+            int destX = random.nextInt(width), destY = random.nextInt(height);
+            grid[startX][startY] = 1;
+            grid[destX][destY] = 1;
+            GridModel model = compile(grid);
+
+            SearchWorkspace workspace = SearchWorkspace.acquire(model);
+            boolean found = new AStarSearch(model, startX, startY, destX, destY).search(workspace);
+            int expected = formerSearch(grid, startX, startY, destX, destY);
+
+            if (expected < 0) {
+                assertFalse(found);
+            } else {
+                assertTrue(found);
+                assertEquals(expected, workspace.gCost[destY * width + destX]);
+                assertEquals(expected, walk(grid, workspace, destX, destY));
+            }
+            SearchWorkspace.release(workspace);
+        }
+    }
+
+    @Test
+    public void reusedWorkspaceForgetsPreviousSearch() throws Exception {
+        int[][] grid = new int[20][20];
+        for (int[] column : grid) Arrays.fill(column, 1);
+        GridModel model = compile(grid);
+
+        SearchWorkspace workspace = SearchWorkspace.acquire(model);
+        assertTrue(new AStarSearch(model, 0, 0, 19, 19).search(workspace));
+        SearchWorkspace.release(workspace);
+
+        // The pool hands out the same workspace, reset
+        SearchWorkspace reused = SearchWorkspace.acquire(model);
+        assertSame(workspace, reused);
+        assertFalse(reused.isMaterialised(19 * 20 + 19));
+        assertTrue(new AStarSearch(model, 19, 19, 1, 0).search(reused));
+        assertEquals(walk(grid, reused, 1, 0), reused.gCost[1]);
+        SearchWorkspace.release(reused);
+    }
+
+    @Test
+    public void steppedSearchEndsWithTheSameCost() throws Exception {
+        Random random = new Random(7);
+        int[][] grid = randomGrid(random, 40, 40);
+        grid[2][3] = 1;
+        grid[37][35] = 1;
+        GridModel model = compile(grid);
+
+        SearchWorkspace workspace = SearchWorkspace.acquire(model);
+        boolean found = new AStarSearch(model, 2, 3, 37, 35).search(workspace);
+        int expected = found ? workspace.gCost[35 * 40 + 37] : -1;
+        SearchWorkspace.release(workspace);
+
+        AStarSearch stepped = new AStarSearch(model, 2, 3, 37, 35);
+        int status;
+        int steps = 0;
+        while ((status = stepped.step(5, 0)) == AStarSearch.SUSPENDED) steps++;
+        assertTrue(steps > 1);
+        assertEquals(found ? AStarSearch.FOUND : AStarSearch.NOT_FOUND, status);
+        if (found) assertEquals(expected, stepped.workspace.gCost[35 * 40 + 37]);
+        SearchWorkspace.release(stepped.workspace);
+    }
+
+    /** Random grid of the values defined by {@link #FACTORS} */
+    private static int[][] randomGrid(Random random, int width, int height) {
+        int[][] grid = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                grid[x][y] = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(FACTORS.length - 1);
+            }
+        }
+        return grid;
+    }
+
+    /** Sums up the travelling costs along the parents of the node at [x, y] */
+    private static int walk(int[][] grid, SearchWorkspace workspace, int x, int y) {
+        int width = grid.length;
+        int cost = 0;
+        for (int n = workspace.parent[y * width + x]; n >= 0; n = workspace.parent[n]) {
+            int dx = Math.abs(n % width - x);
+            int dy = Math.abs(n / width - y);
+            assertTrue(dx <= 1 && dy <= 1 && dx + dy > 0);
+            cost += (int) ((dx + dy == 2 ? 14 : 10) * FACTORS[grid[x][y]]);
+            x = n % width;
+            y = n / width;
+        }
+        return cost;
+    }
+
+    /**
+     * The former implementation with a java.util.PriorityQueue as the open set.
+     * Improved nodes are removed and re-added so the queue keeps its order.
+     * All travelling factors are at least 1.5, which keeps the Manhattan heuristic admissible,
+     * so both searches have to agree on the optimal cost.
+     *
+     * @return The cost of the path or -1 if no path is possible
+     */
+    private static int formerSearch(int[][] grid, int startX, int startY, int destX, int destY) {
+        final int width = grid.length, height = grid[0].length;
+        final int[] finalCost = new int[width * height];
+        int[] heuristicCost = new int[width * height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                heuristicCost[y * width + x] = (Math.abs(x - destX) + Math.abs(y - destY)) * 10;
+            }
+        }
+        boolean[] closed = new boolean[width * height];
+        PriorityQueue<Integer> open = new PriorityQueue<>(1, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer n1, Integer n2) {
+                return finalCost[n1] < finalCost[n2] ? -1 : finalCost[n1] > finalCost[n2] ? 1 : 0;
+            }
+        });
+        int start = startY * width + startX;
+        finalCost[start] = heuristicCost[start];
+        open.add(start);
+
+        Integer current;
+        while ((current = open.poll()) != null) {
+            int cx = current % width, cy = current / width;
+            if (cx == destX && cy == destY) return finalCost[current];
+            closed[current] = true;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int x = cx + dx, y = cy + dy;
+                    if ((dx == 0 && dy == 0) || x < 0 || x >= width || y < 0 || y >= height) continue;
+                    int n = y * width + x;
+                    if (grid[x][y] == 0 || closed[n]) continue;
+                    int cost = dx != 0 && dy != 0 ? 14 : 10;
+                    int nFinalCost = finalCost[current] - heuristicCost[current] + heuristicCost[n] + (int) (cost * FACTORS[grid[x][y]]);
+                    boolean inOpen = open.contains(n);
+                    if (!inOpen || nFinalCost < finalCost[n]) {
+                        if (inOpen) open.remove(n);
+                        finalCost[n] = nFinalCost;
+                        open.add(n);
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Compiles a grid using the values defined by {@link #FACTORS} */
+    private static GridModel compile(final int[][] grid) {
+        return GridModel.compile(grid.length, grid[0].length, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return grid[x][y] == 0;
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return grid[x][y] == 0 ? 1f : FACTORS[grid[x][y]];
+            }
+        });
+    }
+}
@@ -0,0 +1,64 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares flow fields against Dijkstra's algorithm from every node.
+ */
+public class FlowFieldTest {
+
+    @Test
+    public void followingTheFieldCostsAsMuchAsTheCheapestPath() throws Exception {
+        Random random = new Random(5);
+        for (int round = 0; round < 30; round++) {
+            int width = 5 + random.nextInt(20);
+            int height = 5 + random.nextInt(20);
+            GridModel model = randomModel(random, width, height);
+            int[] targets = new int[1 + random.nextInt(3)];
+            for (int i = 0; i < targets.length; i++) targets[i] = random.nextInt(model.size());
+            FlowField field = FlowField.compute(model, targets);
+
+            for (int start = 0; start < model.size(); start++) {
+                int x = start % width, y = start / width;
+                int expected = -1;
+                for (int target : targets) {
+                    int cost = model.isBlocked(start) ? -1 : JumpPointSearchTest.dijkstra(model, start, target);
+                    if (cost >= 0 && (expected < 0 || cost < expected)) expected = cost;
+                }
+                assertEquals(expected, field.getCost(x, y));
+                if (expected < 0) {
+                    assertFalse(field.isReachable(x, y));
+                    continue;
+                }
+
+                // Sums up the costs of following the directions
+                int cost = 0;
+                int n = start;
+                while (field.getNextNode(n % width, n / width) >= 0) {
+                    int next = field.getNextNode(n % width, n / width);
+                    int stepX = field.getStepX(n % width, n / width), stepY = field.getStepY(n % width, n / width);
+                    assertEquals(next, n + stepY * width + stepX);
+                    cost += (int) ((stepX != 0 && stepY != 0 ? 14 : 10) * model.getTravellingFactor(next));
+                    n = next;
+                }
+                assertEquals(0, field.getCost(n % width, n / width));
+                assertEquals(expected, cost);
+            }
+        }
+    }
+
+    private static GridModel randomModel(Random random, int width, int height) {
+        boolean[] blocked = new boolean[width * height];
+        float[] factors = new float[width * height];
+        for (int n = 0; n < blocked.length; n++) {
+            int roll = random.nextInt(6);
+            if (roll == 0) blocked[n] = true;
+            else if (roll == 1) factors[n] = 2.5f;
+        }
+        return GridModelTest.compile(width, height, blocked, factors);
+    }
+}
@@ -0,0 +1,200 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests incremental updates of the compiled grid.
+ */
+public class GridModelTest {
+
+    @Test
+    public void updatePatchesOnlyTheRegion() throws Exception {
+        final int[][] grid = new int[10][10];
+        GridModel model = new GridModel(10, 10);
+        grid[3][4] = 1;
+        grid[7][7] = 1;
+        model.update(new BlockingRules(grid), 2, 2, 5, 5);
+
+        assertTrue(model.isBlocked(4 * 10 + 3));
+        // Outside of the updated region
+        assertFalse(model.isBlocked(7 * 10 + 7));
+        assertEquals(1, model.getVersion());
+    }
+
+    @Test
+    public void changedRegionCoversAllUpdatesSinceVersion() throws Exception {
+        final int[][] grid = new int[10][10];
+        GridModel model = new GridModel(10, 10);
+        BlockingRules rules = new BlockingRules(grid);
+        model.update(rules, 1, 1, 2, 2);
+        model.update(rules, 5, 6, 7, 8);
+        model.update(rules, -3, 3, 4, 4);
+
+        int[] region = new int[4];
+        assertFalse(model.getChangedRegion(3, region));
+        assertTrue(model.getChangedRegion(1, region));
+        assertArrayEquals(new int[] {0, 3, 7, 8}, region);
+
+        for (int i = 0; i < 40; i++) model.update(rules, 1, 1, 2, 2);
+        assertTrue(model.getChangedRegion(1, region));
+        assertArrayEquals(new int[] {0, 0, 10, 10}, region);
+    }
+
+    @Test
+    public void listenersReceiveTheClippedRegion() throws Exception {
+        final int[] received = new int[5];
+        GridModel model = new GridModel(10, 10);
+        model.addOnGridChangedListener(new GridModel.OnGridChangedListener() {
+            @Override
+            public void onGridChanged(GridModel model, int version, int left, int top, int right, int bottom) {
+                received[0] = version;
+                received[1] = left;
+                received[2] = top;
+                received[3] = right;
+                received[4] = bottom;
+            }
+        });
+        model.update(new BlockingRules(new int[10][10]), 8, -1, 12, 3);
+        assertArrayEquals(new int[] {1, 8, 0, 10, 3}, received);
+    }
+
+    @Test
+    public void searchSeesUpdatedCells() throws Exception {
+        int[][] grid = new int[10][10];
+        GridModel model = new GridModel(10, 10);
+        // Wall across the board at x = 5
+        for (int y = 0; y < 10; y++) grid[5][y] = 1;
+        model.update(new BlockingRules(grid), 5, 0, 6, 10);
+
+        SearchWorkspace workspace = SearchWorkspace.acquire(model);
+        assertFalse(new AStarSearch(model, 1, 1, 8, 8).search(workspace));
+
+        // Open a gap
+        grid[5][9] = 0;
+        model.update(new BlockingRules(grid), 5, 9, 6, 10);
+        workspace.reset();
+        assertTrue(new AStarSearch(model, 1, 1, 8, 8).search(workspace));
+        SearchWorkspace.release(workspace);
+    }
+
+    @Test
+    public void areasFollowUpdates() throws Exception {
+        Random random = new Random(11);
+        int[][] grid = new int[30][30];
+        for (int x = 0; x < 30; x++) {
+            for (int y = 0; y < 30; y++) grid[x][y] = random.nextInt(10) < 4 ? 1 : 0;
+        }
+        GridModel model = GridModel.compile(30, 30, new BlockingRules(grid));
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 20; i++) {
+                int start = random.nextInt(model.size());
+                int dest = random.nextInt(model.size());
+                boolean reachable = !model.isBlocked(start) && JumpPointSearchTest.dijkstra(model, start, dest) >= 0;
+                assertEquals(reachable, model.areConnected(start, dest));
+            }
+            // Walls are built and torn down
+            int left = random.nextInt(30), top = random.nextInt(30);
+            int right = left + 1 + random.nextInt(6), bottom = top + 1 + random.nextInt(6);
+            int value = random.nextInt(2);
+            for (int x = left; x < Math.min(right, 30); x++) {
+                for (int y = top; y < Math.min(bottom, 30); y++) grid[x][y] = value;
+            }
+            model.update(new BlockingRules(grid), left, top, right, bottom);
+        }
+    }
+
+    @Test
+    public void clearanceFollowsUpdates() throws Exception {
+        Random random = new Random(37);
+        int[][] grid = new int[40][30];
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 30; y++) grid[x][y] = random.nextInt(30) == 0 ? 1 : 0;
+        }
+        GridModel model = GridModel.compile(40, 30, new BlockingRules(grid));
+        for (int round = 0; round < 100; round++) {
+            for (int x = 0; x < 40; x++) {
+                for (int y = 0; y < 30; y++) assertEquals(clearance(grid, x, y), model.getClearance(y * 40 + x));
+            }
+            int left = random.nextInt(40), top = random.nextInt(30);
+            int right = left + 1 + random.nextInt(3), bottom = top + 1 + random.nextInt(3);
+            int value = random.nextInt(3) == 0 ? 1 : 0;
+            for (int x = left; x < Math.min(right, 40); x++) {
+                for (int y = top; y < Math.min(bottom, 30); y++) grid[x][y] = value;
+            }
+            model.update(new BlockingRules(grid), left, top, right, bottom);
+        }
+    }
+
+    /**
+     * @return The size of the largest free square with its top-left corner on [x, y], counted cell by cell
+     */
+    private static int clearance(int[][] grid, int x, int y) {
+        int size = 0;
+        while (size < GridPathfinder.MAX_AGENT_SIZE && x + size < grid.length && y + size < grid[0].length) {
+            // The square grows by a column on the right and a row at the bottom
+            for (int i = 0; i <= size; i++) {
+                if (grid[x + size][y + i] != 0 || grid[x + i][y + size] != 0) return size;
+            }
+            size++;
+        }
+        return size;
+    }
+
+    @Test
+    public void searchBetweenAreasExpandsNothing() throws Exception {
+        int[][] grid = new int[10][10];
+        // Wall across the board at x = 5
+        for (int y = 0; y < 10; y++) grid[5][y] = 1;
+        GridModel model = GridModel.compile(10, 10, new BlockingRules(grid));
+
+        AStarSearch search = new AStarSearch(model, 1, 1, 8, 8);
+        assertEquals(AStarSearch.NOT_FOUND, search.step(0, 0));
+        assertEquals(0, search.getRounds());
+        assertNull(search.workspace);
+    }
+
+    /** Blocks every cell with a grid value of 1 */
+    /**
+     * Compiles a test grid the way {@link GridPathfinder#setGrid(int, int, CellRules)} does.
+     *
+     * @param blocked If each node is blocked, by node index
+     * @param factors The travelling factor of each node, by node index. 0 stands for a factor of 1. Null for 1 everywhere
+     * @return The compiled model
+     */
+    static GridModel compile(final int width, int height, final boolean[] blocked, final float[] factors) {
+        return GridModel.compile(width, height, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return blocked[y * width + x];
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                float factor = factors == null ? 0 : factors[y * width + x];
+                return factor == 0 ? 1f : factor;
+            }
+        });
+    }
+
+    private static class BlockingRules implements CellRules {
+        private final int[][] grid;
+
+        BlockingRules(int[][] grid) {
+            this.grid = grid;
+        }
+
+        @Override
+        public boolean isBlocked(int x, int y) {
+            return grid[x][y] == 1;
+        }
+
+        @Override
+        public float getTravellingFactor(int x, int y) {
+            return 1f;
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the plain Java pathfinder the Android library wraps.
+ */
+public class GridPathfinderTest {
+
+    /** Blocks the column at x = 5, except for its bottom cell */
+    private final CellRules wall = new CellRules() {
+        @Override
+        public boolean isBlocked(int x, int y) {
+            return x == 5 && y < 9;
+        }
+
+        @Override
+        public float getTravellingFactor(int x, int y) {
+            return 1f;
+        }
+    };
+
+    @Test
+    public void returnsEveryCellFromStartToDestination() throws Exception {
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(10, 10, wall);
+        int[] path = pathfinder.findPathNow(1, 1, 8, 1);
+
+        assertNotNull(path);
+        assertEquals(1 * 10 + 1, path[0]);
+        assertEquals(1 * 10 + 8, path[path.length - 1]);
+        for (int i = 1; i < path.length; i++) {
+            int dx = Math.abs(path[i] % 10 - path[i - 1] % 10);
+            int dy = Math.abs(path[i] / 10 - path[i - 1] / 10);
+            assertTrue(dx <= 1 && dy <= 1 && dx + dy > 0);
+            assertFalse(wall.isBlocked(path[i] % 10, path[i] / 10));
+        }
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void updatedCellsAskTheRulesAgain() throws Exception {
+        final boolean[] closed = new boolean[1];
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(10, 10, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return wall.isBlocked(x, y) || (closed[0] && x == 5);
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        });
+        assertNotNull(pathfinder.findPathNow(1, 1, 8, 1));
+
+        closed[0] = true;
+        pathfinder.updateCells(5, 9, 6, 10);
+        assertNull(pathfinder.findPathNow(1, 1, 8, 1));
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void pathsBlockedAfterTheLastRestartAreNotDelivered() throws Exception {
+        final boolean[] closed = new boolean[1];
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(2000, 3, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return closed[0] && x == 1;
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        });
+        pathfinder.setCacheSize(8);
+        final int[][] delivered = {{}};
+        PathSearch search = pathfinder.startSearch(0, 0, 1999, 0, new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] path) {
+                delivered[0] = path;
+            }
+        });
+        assertFalse(search.resume(300, 0));
+        // Each change at the start makes the search start over, until it has run out of restarts
+        for (int i = 0; i < 3; i++) {
+            pathfinder.updateCells(0, 0, 1, 1);
+            assertFalse(search.resume(300, 0));
+        }
+        closed[0] = true;
+        pathfinder.updateCells(1, 0, 2, 3);
+        assertTrue(search.resume(0, 0));
+
+        assertNull(delivered[0]);
+        assertNull(pathfinder.findPathNow(0, 0, 1999, 0));
+        assertEquals(0, pathfinder.getCacheHitCount());
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void waypointsAreWrittenIntoTheReusedBuffer() throws Exception {
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setEngine(GridPathfinder.ENGINE_JUMP_POINT);
+        pathfinder.setGrid(10, 10, wall);
+        int[] cells = pathfinder.findPathNow(1, 1, 8, 1);
+
+        WaypointBuffer buffer = new WaypointBuffer(4);
+        assertTrue(pathfinder.findPathNow(1, 1, 8, 1, GridPathfinder.WAYPOINTS_ALL_CELLS, buffer));
+        assertEquals(cells.length, buffer.size());
+        for (int i = 0; i < cells.length; i++) assertEquals(cells[i], buffer.getNode(i));
+        int[] storage = buffer.nodes;
+
+        // Corners are a subset of the cells, in the same order
+        assertTrue(pathfinder.findPathNow(1, 1, 8, 1, GridPathfinder.WAYPOINTS_CORNERS, buffer));
+        assertSame(storage, buffer.nodes);
+        assertTrue(buffer.size() < cells.length);
+        int cell = 0;
+        for (int i = 0; i < buffer.size(); i++) {
+            while (cells[cell] != buffer.getNode(i)) cell++;
+        }
+        assertEquals(8, buffer.getX(buffer.size() - 1));
+        int corners = buffer.size();
+
+        // Straight lines between the waypoints only cross free cells: down to the gap, through it and up again
+        assertTrue(pathfinder.findPathNow(1, 1, 8, 1, GridPathfinder.WAYPOINTS_LINE_OF_SIGHT, buffer));
+        assertEquals(1, buffer.getX(0));
+        assertEquals(1, buffer.getY(0));
+        for (int i = 1; i < buffer.size(); i++) {
+            // Single diagonal steps are taken as the search took them, past the corner of the wall
+            if (Math.abs(buffer.getX(i) - buffer.getX(i - 1)) <= 1 && Math.abs(buffer.getY(i) - buffer.getY(i - 1)) <= 1) continue;
+            assertTrue(Waypoints.isVisible(pathfinder.getGridModel(), buffer.getX(i - 1), buffer.getY(i - 1),
+                    buffer.getX(i), buffer.getY(i), 1f, 1));
+        }
+        assertTrue(buffer.size() < corners);
+
+        assertFalse(pathfinder.findPathNow(1, 1, 5, 5, GridPathfinder.WAYPOINTS_CORNERS, buffer));
+        assertTrue(buffer.isEmpty());
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void instancesOnDifferentMapsDoNotInterfere() throws Exception {
+        GridPathfinder walled = new GridPathfinder();
+        walled.setGrid(10, 10, wall);
+        GridPathfinder open = new GridPathfinder();
+        open.setGrid(30, 20, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return false;
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        });
+        final int expected = walled.findPathNow(1, 1, 8, 1).length;
+
+        final CountDownLatch found = new CountDownLatch(50);
+        final AtomicInteger wrong = new AtomicInteger();
+        for (int i = 0; i < 50; i++) {
+            walled.findPath(1, 1, 8, 1, GridPathfinder.PRIORITY_NORMAL, null, new OnPathComputedListener() {
+                @Override
+                public void onPathComputed(int[] path) {
+                    if (path == null || path.length != expected) wrong.incrementAndGet();
+                    found.countDown();
+                }
+            });
+            // Setting the grid of one instance leaves the searches and workspaces of the other alone
+            open.setGrid(30 + i % 3, 20, wall);
+            assertNotNull(open.findPathNow(1, 1, 8 + i % 3, 1));
+        }
+        assertTrue(found.await(10, TimeUnit.SECONDS));
+        assertEquals(0, wrong.get());
+        // Each model pools only workspaces of its own size
+        assertEquals(100, walled.getGridModel().workspaces.peek().capacity);
+        assertEquals(open.getGridModel().size(), open.getGridModel().workspaces.peek().capacity);
+        walled.shutdown();
+        open.shutdown();
+    }
+
+    @Test
+    public void slicedSearchesFinishAfterTheSchedulerIsReplaced() throws Exception {
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(400, 400, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return false;
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        });
+        pathfinder.setTimeSlice(50, 0);
+        final CountDownLatch found = new CountDownLatch(1);
+        final int[][] delivered = new int[1][];
+        pathfinder.findPath(0, 0, 399, 399, GridPathfinder.PRIORITY_NORMAL, null, new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] path) {
+                delivered[0] = path;
+                found.countDown();
+            }
+        });
+        // The search goes back into the former queue after each slice
+        pathfinder.configureScheduler(2, 100);
+        assertTrue(found.await(10, TimeUnit.SECONDS));
+        assertNotNull(delivered[0]);
+        assertEquals(400, delivered[0].length);
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void largeUnitsOnlyPassWhereTheyFit() throws Exception {
+        Random random = new Random(41);
+        int[] engines = {GridPathfinder.ENGINE_A_STAR, GridPathfinder.ENGINE_JUMP_POINT, GridPathfinder.ENGINE_PARALLEL};
+        for (int round = 0; round < 30; round++) {
+            final boolean[] blocked = new boolean[60 * 60];
+            for (int n = 0; n < blocked.length; n++) {
+                // Column 0 is blocked, so A* needs no step to the left edge
+                blocked[n] = n % 60 == 0 || random.nextInt(12) == 0;
+            }
+            GridPathfinder pathfinder = new GridPathfinder();
+            pathfinder.setGrid(60, 60, new CellRules() {
+                @Override
+                public boolean isBlocked(int x, int y) {
+                    return blocked[y * 60 + x];
+                }
+
+                @Override
+                public float getTravellingFactor(int x, int y) {
+                    return 1f;
+                }
+            });
+            pathfinder.setEngine(engines[round % engines.length]);
+            int size = 2 + round % 3;
+            int start = 1 + random.nextInt(20) + 60 * random.nextInt(57), dest = 38 + random.nextInt(20) + 60 * random.nextInt(57);
+            int expected = dijkstra(blocked, 60, size, start, dest);
+            int[] path = pathfinder.findPathNow(start % 60, start / 60, dest % 60, dest / 60, size);
+            pathfinder.shutdown();
+            if (expected < 0) {
+                assertNull(path);
+                continue;
+            }
+            assertNotNull(path);
+            int cost = 0;
+            for (int i = 0; i < path.length; i++) {
+                assertTrue(fits(blocked, 60, size, path[i]));
+                if (i > 0) cost += path[i] % 60 != path[i - 1] % 60 && path[i] / 60 != path[i - 1] / 60 ? 14 : 10;
+            }
+            assertEquals(expected, cost);
+        }
+    }
+
+    @Test
+    public void progressiveSearchesDeliverTheApproximatePathFirst() throws Exception {
+        final Random random = new Random(43);
+        final boolean[] blocked = new boolean[80 * 60];
+        final float[] factors = new float[80 * 60];
+        for (int n = 0; n < blocked.length; n++) {
+            int roll = random.nextInt(10);
+            blocked[n] = roll < 2;
+            factors[n] = roll > 7 ? 4f : 1f;
+        }
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(80, 60, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return blocked[y * 80 + x];
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return factors[y * 80 + x];
+            }
+        });
+        GridModel model = pathfinder.getGridModel();
+        final AtomicInteger executed = new AtomicInteger();
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                executed.incrementAndGet();
+                command.run();
+            }
+        };
+
+        for (int i = 0; i < 10; i++) {
+            int start = random.nextInt(20) + 80 * random.nextInt(60), dest = 60 + random.nextInt(20) + 80 * random.nextInt(60);
+            if (blocked[start] || blocked[dest] || !model.areConnected(start, dest)) continue;
+            final int[][] paths = new int[2][];
+            final CountDownLatch found = new CountDownLatch(1);
+            executed.set(0);
+            assertNotNull(pathfinder.findPathProgressively(start % 80, start / 80, dest % 80, dest / 80,
+                    GridPathfinder.PRIORITY_NORMAL, null, direct, new OnPathRefinedListener() {
+                @Override
+                public void onApproximatePathComputed(int[] path) {
+                    paths[0] = path;
+                }
+
+                @Override
+                public void onPathComputed(int[] path) {
+                    paths[1] = path;
+                    found.countDown();
+                }
+            }));
+            assertTrue(found.await(10, TimeUnit.SECONDS));
+            assertEquals(2, executed.get());
+
+            // The approximate path costs at most 3 times as much as the final one, which is the cheapest
+            int optimal = JumpPointSearchTest.dijkstra(model, start, dest);
+            assertEquals(optimal, JumpPointSearchTest.cost(model, paths[1]));
+            assertEquals(start, paths[0][0]);
+            assertEquals(dest, paths[0][paths[0].length - 1]);
+            int approximate = JumpPointSearchTest.cost(model, paths[0]);
+            assertTrue(approximate >= optimal && approximate <= 3 * optimal);
+        }
+
+        // Stands in for the game thread, which runs the deliveries in order
+        final LinkedBlockingQueue<Runnable> deliveries = new LinkedBlockingQueue<>();
+        Executor gameThread = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                deliveries.add(command);
+            }
+        };
+        final int[][] paths = new int[2][];
+        final boolean[] delivered = new boolean[1];
+        final Thread thread = Thread.currentThread();
+        SearchHandle handle = pathfinder.findPathProgressively(0, 0, 79, 59, GridPathfinder.PRIORITY_NORMAL, null, gameThread, new OnPathRefinedListener() {
+            @Override
+            public void onApproximatePathComputed(int[] path) {
+                assertSame(thread, Thread.currentThread());
+                paths[0] = path;
+            }
+
+            @Override
+            public void onPathComputed(int[] path) {
+                assertSame(thread, Thread.currentThread());
+                paths[1] = path;
+                delivered[0] = true;
+            }
+        });
+        // The approximate path is dropped if the final one is already waiting behind it
+        while (!handle.isDone()) Thread.sleep(1);
+        while (!delivered[0]) {
+            Runnable delivery = deliveries.poll(10, TimeUnit.SECONDS);
+            assertNotNull(delivery);
+            delivery.run();
+        }
+        assertNull(paths[0]);
+        assertNotNull(paths[1]);
+        assertTrue(deliveries.isEmpty());
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void progressiveSearchesAskTheCacheOnce() throws Exception {
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(10, 10, wall);
+        pathfinder.setCacheSize(16);
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        for (int i = 0; i < 2; i++) {
+            final int[] approximations = new int[1];
+            final CountDownLatch found = new CountDownLatch(1);
+            pathfinder.findPathProgressively(1, 1, 8, 1, GridPathfinder.PRIORITY_NORMAL, null, direct, new OnPathRefinedListener() {
+                @Override
+                public void onApproximatePathComputed(int[] path) {
+                    approximations[0]++;
+                }
+
+                @Override
+                public void onPathComputed(int[] path) {
+                    found.countDown();
+                }
+            });
+            assertTrue(found.await(10, TimeUnit.SECONDS));
+            // The second search is answered from the cache at once
+            assertEquals(1 - i, approximations[0]);
+        }
+        assertEquals(1, pathfinder.getCacheMissCount());
+        assertEquals(1, pathfinder.getCacheHitCount());
+        pathfinder.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void searchingWithoutAGridFails() throws Exception {
+        new GridPathfinder().findPathNow(0, 0, 1, 1);
+    }
+
+    /**
+     * @return If a unit of the size fits with its top-left cell on the node, checked cell by cell
+     */
+    private static boolean fits(boolean[] blocked, int width, int size, int node) {
+        int x = node % width, y = node / width;
+        if (x + size > width || y + size > blocked.length / width) return false;
+        for (int dy = 0; dy < size; dy++) {
+            for (int dx = 0; dx < size; dx++) {
+                if (blocked[(y + dy) * width + x + dx]) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The cost of the cheapest path of a unit of the size, -1 if there is none
+     */
+    private static int dijkstra(boolean[] blocked, int width, int size, int start, int dest) {
+        int[] cost = new int[blocked.length];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+        if (!fits(blocked, width, size, start)) return -1;
+        NodeHeap open = new NodeHeap(blocked.length);
+        cost[start] = 0;
+        open.add(start, 0);
+        int current;
+        while ((current = open.poll()) >= 0) {
+            if (current == dest) return cost[current];
+            int cx = current % width, cy = current / width;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int x = cx + dx, y = cy + dy;
+                    if ((dx == 0 && dy == 0) || x < 0 || y < 0 || x >= width || y * width >= blocked.length) continue;
+                    int n = y * width + x;
+                    if (!fits(blocked, width, size, n)) continue;
+                    int nCost = cost[current] + (dx != 0 && dy != 0 ? 14 : 10);
+                    if (nCost < cost[n]) {
+                        if (open.contains(n)) open.decreaseKey(n, nCost);
+                        else open.add(n, nCost);
+                        cost[n] = nCost;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,106 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stores compiled grids in files and loads them again.
+ */
+public class GridStoreTest {
+
+    @Test
+    public void loadedGridMatchesTheCompiledOne() throws Exception {
+        final Random random = new Random(29);
+        final boolean[] blocked = new boolean[60 * 40];
+        final float[] factors = new float[60 * 40];
+        for (int n = 0; n < blocked.length; n++) {
+            int roll = random.nextInt(10);
+            blocked[n] = roll < 2;
+            factors[n] = roll == 9 ? 3f : roll == 8 ? 0.5f : 1f;
+        }
+        CellRules rules = new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return blocked[y * 60 + x];
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return factors[y * 60 + x];
+            }
+        };
+        GridPathfinder compiled = new GridPathfinder();
+        compiled.setHeuristic(GridPathfinder.HEURISTIC_LANDMARKS, 1f);
+        compiled.setGrid(60, 40, rules);
+        File file = File.createTempFile("grid", ".store");
+        compiled.saveGrid(file, 42L);
+
+        GridPathfinder loaded = new GridPathfinder();
+        loaded.setHeuristic(GridPathfinder.HEURISTIC_LANDMARKS, 1f);
+        assertTrue(loaded.loadGrid(file, 42L, rules));
+        GridModel expected = compiled.getGridModel();
+        GridModel model = loaded.getGridModel();
+        assertEquals(60, loaded.getWidth());
+        assertEquals(40, loaded.getHeight());
+        assertEquals(expected.getMinTravellingFactor(), model.getMinTravellingFactor(), 0f);
+        for (int n = 0; n < model.size(); n++) {
+            assertEquals(expected.isBlocked(n), model.isBlocked(n));
+            assertEquals(expected.getTravellingFactor(n), model.getTravellingFactor(n), 0f);
+            assertEquals(expected.isUniform(n), model.isUniform(n));
+        }
+        for (int i = 0; i < 50; i++) {
+            int start = random.nextInt(model.size()), dest = random.nextInt(model.size());
+            assertEquals(expected.areConnected(start, dest), model.areConnected(start, dest));
+            assertArrayEquals(compiled.findPathNow(start % 60, start / 60, dest % 60, dest / 60),
+                    loaded.findPathNow(start % 60, start / 60, dest % 60, dest / 60));
+        }
+
+        // The loaded grid is updated like a compiled one
+        blocked[20 * 60 + 30] = !blocked[20 * 60 + 30];
+        loaded.updateCells(30, 20, 31, 21);
+        assertEquals(blocked[20 * 60 + 30], model.isBlocked(20 * 60 + 30));
+        compiled.shutdown();
+        loaded.shutdown();
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void staleFilesAreNotLoaded() throws Exception {
+        CellRules open = new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return false;
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        };
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(20, 10, open);
+        File file = File.createTempFile("grid", ".store");
+        pathfinder.saveGrid(file, 7L);
+
+        GridPathfinder other = new GridPathfinder();
+        // Compiled from another source
+        assertFalse(other.loadGrid(file, 8L, open));
+        assertNull(other.getGridModel());
+
+        // Cut short, e.g. by a crash while writing
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(truncated.length() - 4);
+        truncated.close();
+        assertFalse(other.loadGrid(file, 7L, open));
+
+        assertTrue(file.delete());
+        assertFalse(other.loadGrid(file, 7L, open));
+        pathfinder.shutdown();
+        other.shutdown();
+    }
+}
@@ -0,0 +1,121 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the heuristics of the A* search against Dijkstra's algorithm on random grids.
+ */
+public class HeuristicTest {
+
+    @Test
+    public void admissibleHeuristicsFindTheCheapestPath() throws Exception {
+        Random random = new Random(17);
+        int[] heuristics = {GridPathfinder.HEURISTIC_OCTILE, GridPathfinder.HEURISTIC_EUCLIDEAN, GridPathfinder.HEURISTIC_LANDMARKS};
+        for (int round = 0; round < 100; round++) {
+            GridModel model = randomModel(random, 5 + random.nextInt(40), 5 + random.nextInt(40));
+            Landmarks landmarks = Landmarks.compute(model, 4);
+            int start = randomFreeNode(random, model);
+            int dest = randomFreeNode(random, model);
+            int expected = JumpPointSearchTest.dijkstra(model, start, dest);
+
+            for (int heuristic : heuristics) {
+                SearchWorkspace workspace = SearchWorkspace.acquire(model);
+                AStarSearch search = new AStarSearch(model, start % model.width, start / model.width, dest % model.width, dest / model.width);
+                search.setHeuristic(heuristic, 1f, landmarks);
+                boolean found = search.search(workspace);
+                if (expected < 0) {
+                    assertFalse(found);
+                } else {
+                    assertTrue(found);
+                    assertEquals("Heuristic " + heuristic, expected, workspace.gCost[dest]);
+                }
+                SearchWorkspace.release(workspace);
+            }
+        }
+    }
+
+    @Test
+    public void weightedSearchStaysWithinItsBound() throws Exception {
+        Random random = new Random(19);
+        for (int round = 0; round < 100; round++) {
+            GridModel model = randomModel(random, 5 + random.nextInt(40), 5 + random.nextInt(40));
+            int start = randomFreeNode(random, model);
+            int dest = randomFreeNode(random, model);
+            int expected = JumpPointSearchTest.dijkstra(model, start, dest);
+            if (expected < 0) continue;
+
+            SearchWorkspace workspace = SearchWorkspace.acquire(model);
+            AStarSearch search = new AStarSearch(model, start % model.width, start / model.width, dest % model.width, dest / model.width);
+            search.setHeuristic(GridPathfinder.HEURISTIC_OCTILE, 1.5f, null);
+            assertTrue(search.search(workspace));
+            assertTrue(workspace.gCost[dest] <= expected * 1.5f);
+            SearchWorkspace.release(workspace);
+        }
+    }
+
+    @Test
+    public void tiesAreBrokenTowardsTheDestination() throws Exception {
+        GridModel model = new GridModel(60, 60);
+        SearchWorkspace workspace = SearchWorkspace.acquire(model);
+        AStarSearch search = new AStarSearch(model, 2, 2, 57, 40);
+        assertTrue(search.search(workspace));
+        // On open ground only the nodes of the path itself are expanded
+        assertTrue(search.getRounds() <= 56);
+        SearchWorkspace.release(workspace);
+    }
+
+    @Test
+    public void landmarksExpandFewerNodesInMazes() throws Exception {
+        boolean[] blocked = new boolean[41 * 41];
+        // Walls with a gap at alternating ends
+        for (int x = 4; x < 41; x += 4) {
+            for (int y = 0; y < 41; y++) {
+                if ((x / 4) % 2 == 0 ? y != 0 : y != 40) blocked[y * 41 + x] = true;
+            }
+        }
+        GridModel model = GridModelTest.compile(41, 41, blocked, null);
+        Landmarks landmarks = Landmarks.compute(model, 4);
+        int[] rounds = new int[2];
+        int[] costs = new int[2];
+        int[] heuristics = {GridPathfinder.HEURISTIC_OCTILE, GridPathfinder.HEURISTIC_LANDMARKS};
+        for (int i = 0; i < 2; i++) {
+            SearchWorkspace workspace = SearchWorkspace.acquire(model);
+            AStarSearch search = new AStarSearch(model, 2, 20, 38, 20);
+            search.setHeuristic(heuristics[i], 1f, landmarks);
+            assertTrue(search.search(workspace));
+            rounds[i] = search.getRounds();
+            costs[i] = workspace.gCost[20 * 41 + 38];
+            SearchWorkspace.release(workspace);
+        }
+        assertEquals(costs[0], costs[1]);
+        assertTrue(rounds[1] < rounds[0]);
+    }
+
+    /**
+     * Random grid with obstacles and patches of a higher travelling factor.
+     * The left column is blocked, which {@link AStarSearch#expand(int, int, int)} never enters from the right.
+     */
+    private static GridModel randomModel(Random random, int width, int height) {
+        boolean[] blocked = new boolean[width * height];
+        float[] factors = new float[width * height];
+        for (int n = 0; n < blocked.length; n++) {
+            int roll = random.nextInt(10);
+            if (n % width == 0 || roll < 2) blocked[n] = true;
+            else if (roll == 9) factors[n] = 2.5f;
+        }
+        return GridModelTest.compile(width, height, blocked, factors);
+    }
+
+    /** @return A random node that is not blocked */
+    private static int randomFreeNode(Random random, GridModel model) {
+        int node;
+        do {
+            node = random.nextInt(model.size());
+        } while (model.isBlocked(node));
+        return node;
+    }
+}
@@ -0,0 +1,106 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests hierarchical pathfinding against Dijkstra's algorithm and the invalidation of its clusters.
+ */
+public class HierarchicalSearchTest {
+
+    @Test
+    public void findsNearOptimalPathsWheneverOneExists() throws Exception {
+        Random random = new Random(11);
+        for (int round = 0; round < 300; round++) {
+            int width = 10 + random.nextInt(80);
+            int height = 10 + random.nextInt(80);
+            boolean[] blocked = new boolean[width * height];
+            float[] factors = new float[width * height];
+            int obstacles = random.nextInt(5);
+            for (int n = 0; n < blocked.length; n++) {
+                int roll = random.nextInt(20);
+                if (roll < obstacles) blocked[n] = true;
+                else if (roll == 19) factors[n] = 2f;
+            }
+            int start = random.nextInt(blocked.length);
+            int dest = random.nextInt(blocked.length);
+            blocked[start] = false;
+            blocked[dest] = false;
+            GridModel model = GridModelTest.compile(width, height, blocked, factors);
+
+            ClusterGraph graph = new ClusterGraph(model, 8);
+            SearchWorkspace workspace = SearchWorkspace.acquire(model);
+            boolean found = new HierarchicalSearch(model, graph, start % width, start / width, dest % width, dest / width).search(workspace);
+            int optimal = JumpPointSearchTest.dijkstra(model, start, dest);
+
+            assertEquals(optimal >= 0, found);
+            if (found) {
+                assertTrue(workspace.gCost[dest] >= optimal);
+                assertTrue(workspace.gCost[dest] <= optimal * 3 / 2);
+            }
+            SearchWorkspace.release(workspace);
+        }
+    }
+
+    @Test
+    public void gridChangesOnlyRebuildTouchedClusters() throws Exception {
+        final int[][] grid = new int[64][64];
+        GridModel model = new GridModel(64, 64);
+        ClusterGraph graph = new ClusterGraph(model, 16);
+        graph.prepare();
+
+        // Wall across the board at x = 40, except for a gap at the bottom
+        for (int y = 0; y < 60; y++) grid[40][y] = 1;
+        CellRules rules = new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return grid[x][y] == 1;
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        };
+        model.update(rules, 40, 0, 41, 60);
+        for (int cluster = 0; cluster < graph.getClusterCount(); cluster++) {
+            // Only the third column of clusters contains the wall
+            assertEquals(cluster % 4 == 2, graph.isDirty(cluster));
+        }
+
+        boolean[] corridor = new boolean[graph.getClusterCount()];
+        assertTrue(graph.findCorridor(5 * 64 + 20, 5 * 64 + 60, corridor));
+        // The corridor leads around the wall through the bottom clusters
+        assertTrue(corridor[graph.clusterOf(40, 62)]);
+        assertFalse(graph.isDirty(graph.clusterOf(40, 62)));
+
+        SearchWorkspace workspace = SearchWorkspace.acquire(model);
+        assertTrue(new HierarchicalSearch(model, graph, 20, 5, 60, 5).search(workspace));
+        assertTrue(workspace.gCost[5 * 64 + 60] >= JumpPointSearchTest.dijkstra(model, 5 * 64 + 20, 5 * 64 + 60));
+        SearchWorkspace.release(workspace);
+    }
+
+    @Test
+    public void corridorsAreSearchedWhileTheGraphIsLocked() throws Exception {
+        GridModel model = new GridModel(64, 64);
+        final ClusterGraph graph = new ClusterGraph(model, 16);
+        graph.prepare();
+        final boolean[] found = new boolean[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                found[0] = graph.findCorridor(2 * 64 + 2, 60 * 64 + 60, new boolean[graph.getClusterCount()]);
+            }
+        };
+        // Holds the lock rebuilding takes, which an up to date graph does not need
+        synchronized (graph) {
+            thread.start();
+            thread.join(5000);
+            assertFalse(thread.isAlive());
+        }
+        assertTrue(found[0]);
+    }
+}
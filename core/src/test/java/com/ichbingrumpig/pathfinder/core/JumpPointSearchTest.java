@@ -0,0 +1,144 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares Jump Point Search against Dijkstra's algorithm on random grids.
+ */
+public class JumpPointSearchTest {
+
+    @Test
+    public void pathCostsMatchDijkstra() throws Exception {
+        Random random = new Random(3);
+        for (int round = 0; round < 300; round++) {
+            int width = 5 + random.nextInt(40);
+            int height = 5 + random.nextInt(40);
+            boolean[] blocked = new boolean[width * height];
+            float[] factors = new float[width * height];
+            // Mostly open terrain with some obstacles and patches of other travelling factors
+            int obstacles = random.nextInt(4);
+            int patches = random.nextInt(3);
+            for (int n = 0; n < blocked.length; n++) {
+                int roll = random.nextInt(20);
+                if (roll < obstacles * 2) blocked[n] = true;
+                else if (roll >= 20 - patches) factors[n] = random.nextBoolean() ? 0.5f : 2.5f;
+            }
+            int start = random.nextInt(blocked.length);
+            int dest = random.nextInt(blocked.length);
+            blocked[start] = false;
+            blocked[dest] = false;
+            GridModel model = GridModelTest.compile(width, height, blocked, factors);
+
+            SearchWorkspace workspace = SearchWorkspace.acquire(model);
+            JumpPointSearch search = new JumpPointSearch(model, start % width, start / width, dest % width, dest / width);
+            boolean found = search.search(workspace);
+            int expected = dijkstra(model, start, dest);
+
+            if (expected < 0) {
+                assertFalse(found);
+            } else {
+                assertTrue(found);
+                assertEquals(expected, workspace.gCost[dest]);
+            }
+            SearchWorkspace.release(workspace);
+        }
+    }
+
+    @Test
+    public void skipsAheadOnOpenMaps() throws Exception {
+        boolean[] blocked = new boolean[100 * 100];
+        // A wall with a gap
+        for (int y = 0; y < 90; y++) blocked[y * 100 + 50] = true;
+        GridModel model = GridModelTest.compile(100, 100, blocked, null);
+
+        SearchWorkspace workspace = SearchWorkspace.acquire(model);
+        JumpPointSearch search = new JumpPointSearch(model, 5, 5, 95, 20);
+        assertTrue(search.search(workspace));
+        assertEquals(dijkstra(model, 5 * 100 + 5, 20 * 100 + 95), workspace.gCost[20 * 100 + 95]);
+        assertTrue(search.getRounds() < 100);
+        SearchWorkspace.release(workspace);
+    }
+
+    @Test
+    public void restartsWhenALineItJumpedAlongIsBlocked() throws Exception {
+        final boolean[] blocked = new boolean[60 * 10];
+        CellRules rules = new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return blocked[y * 60 + x];
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        };
+        GridModel model = new GridModel(60, 10);
+        JumpPointSearch search = new JumpPointSearch(model, 0, 5, 59, 5);
+        // The start jumps straight to the destination, past every node in between
+        assertEquals(AStarSearch.SUSPENDED, search.step(1, 0));
+
+        blocked[5 * 60 + 30] = true;
+        model.update(rules, 30, 5, 31, 6);
+        assertEquals(AStarSearch.FOUND, search.step(0, 0));
+        int[] path = new int[search.countPathNodes()];
+        search.collectPath(path, path.length);
+        for (int node : path) assertFalse(model.isBlocked(node));
+        assertEquals(dijkstra(model, 5 * 60, 5 * 60 + 59), search.workspace.gCost[5 * 60 + 59]);
+        SearchWorkspace.release(search.workspace);
+    }
+
+    /**
+     * Plain Dijkstra's algorithm over all eight neighbors of every node.
+     *
+     * @return The cost of the cheapest path or -1 if no path is possible
+     */
+    static int dijkstra(GridModel model, int start, int dest) {
+        int width = model.width, height = model.height;
+        int[] cost = new int[model.size()];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+        NodeHeap open = new NodeHeap(model.size());
+        cost[start] = 0;
+        open.add(start, 0);
+        int current;
+        while ((current = open.poll()) >= 0) {
+            if (current == dest) return cost[current];
+            int cx = current % width, cy = current / width;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int x = cx + dx, y = cy + dy;
+                    if ((dx == 0 && dy == 0) || x < 0 || y < 0 || x >= width || y >= height) continue;
+                    int n = y * width + x;
+                    if (model.isBlocked(n)) continue;
+                    int nCost = cost[current] + (int) ((dx != 0 && dy != 0 ? 14 : 10) * model.getTravellingFactor(n));
+                    if (nCost < cost[n]) {
+                        if (open.contains(n)) open.decreaseKey(n, nCost);
+                        else open.add(n, nCost);
+                        cost[n] = nCost;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The cost of following the path from cell to cell, which may only step to one of its eight neighbors
+     */
+    static int cost(GridModel model, int[] path) {
+        int cost = 0;
+        for (int i = 1; i < path.length; i++) {
+            int dx = Math.abs(path[i] % model.width - path[i - 1] % model.width);
+            int dy = Math.abs(path[i] / model.width - path[i - 1] / model.width);
+            assertTrue(dx <= 1 && dy <= 1 && dx + dy > 0);
+            assertFalse(model.isBlocked(path[i]));
+            cost += (int) ((dx + dy == 2 ? 14 : 10) * model.getTravellingFactor(path[i]));
+        }
+        return cost;
+    }
+}
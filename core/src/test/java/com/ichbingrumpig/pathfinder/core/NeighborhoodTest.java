@@ -0,0 +1,209 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares paths, flow fields and planners under every neighborhood against Dijkstra's algorithm.
+ */
+public class NeighborhoodTest {
+
+    private static final int[] MODES = {GridPathfinder.NEIGHBORS_8, GridPathfinder.NEIGHBORS_8_NO_CORNER_CUTTING,
+            GridPathfinder.NEIGHBORS_4, GridPathfinder.NEIGHBORS_HEX};
+
+    @Test
+    public void pathsHaveTheOptimalCostInEveryMode() throws Exception {
+        Random random = new Random(37);
+        for (int round = 0; round < 12; round++) {
+            final int width = 5 + random.nextInt(25), height = 5 + random.nextInt(25);
+            final boolean[] blocked = new boolean[width * height];
+            final float[] factors = new float[width * height];
+            for (int n = 0; n < blocked.length; n++) {
+                int roll = random.nextInt(10);
+                blocked[n] = roll < 2;
+                factors[n] = roll == 9 ? 2.5f : 1f;
+            }
+            GridPathfinder pathfinder = new GridPathfinder();
+            // The landmarks are computed again for every mode
+            if (round % 2 == 1) pathfinder.setHeuristic(GridPathfinder.HEURISTIC_LANDMARKS, 1f);
+            pathfinder.setGrid(width, height, new CellRules() {
+                @Override
+                public boolean isBlocked(int x, int y) {
+                    return blocked[y * width + x];
+                }
+
+                @Override
+                public float getTravellingFactor(int x, int y) {
+                    return factors[y * width + x];
+                }
+            });
+            GridModel model = pathfinder.getGridModel();
+
+            for (int mode : MODES) {
+                pathfinder.setNeighborhood(mode);
+                for (int i = 0; i < 10; i++) {
+                    int start = random.nextInt(model.size()), dest = random.nextInt(model.size());
+                    int sx = start % width, sy = start / width, dx = dest % width, dy = dest / width;
+                    int expected = dijkstra(model, mode, start, dest);
+
+                    int[] path = pathfinder.findPathNow(sx, sy, dx, dy);
+                    assertEquals(expected, path == null ? -1 : cost(model, mode, path));
+
+                    FlowField field = pathfinder.createFlowField(dx, dy);
+                    assertEquals(model.isBlocked(start) ? -1 : expected, field.getCost(sx, sy));
+                    if (field.isReachable(sx, sy)) {
+                        int[] steps = new int[width * height];
+                        int count = 0;
+                        for (int n = start; n >= 0; n = field.getNextNode(n % width, n / width)) steps[count++] = n;
+                        assertEquals(expected, cost(model, mode, Arrays.copyOf(steps, count)));
+                    }
+
+                    if (model.isBlocked(start) || model.isBlocked(dest)) continue;
+                    PathPlanner planner = pathfinder.createPlanner(sx, sy, dx, dy);
+                    int[] planned = planner.plan();
+                    assertEquals(expected, planned == null ? -1 : cost(model, mode, planned));
+                    planner.release();
+                }
+            }
+            pathfinder.shutdown();
+        }
+    }
+
+    @Test
+    public void pathsRunAlongTheLeftBorder() throws Exception {
+        // Only the leftmost column is open
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(10, 10, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return x > 0;
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        });
+        for (int mode : MODES) {
+            pathfinder.setNeighborhood(mode);
+            int[] path = pathfinder.findPathNow(0, 0, 0, 9);
+            assertNotNull(path);
+            assertEquals(10, path.length);
+        }
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void waypointsOnlyTakeStepsOfTheMode() throws Exception {
+        // A wall at x = 5 with a gap at the bottom
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(10, 10, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return x == 5 && y < 9;
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        });
+        WaypointBuffer buffer = new WaypointBuffer(4);
+
+        // Straight lines may join hexagonal cells that are no neighbors, so every cell is kept
+        pathfinder.setNeighborhood(GridPathfinder.NEIGHBORS_HEX);
+        int[] cells = pathfinder.findPathNow(1, 1, 8, 1);
+        assertTrue(pathfinder.findPathNow(1, 1, 8, 1, GridPathfinder.WAYPOINTS_LINE_OF_SIGHT, buffer));
+        assertEquals(cells.length, buffer.size());
+
+        // With four neighbors the waypoints stay in the rows and columns
+        pathfinder.setNeighborhood(GridPathfinder.NEIGHBORS_4);
+        assertTrue(pathfinder.findPathNow(1, 1, 8, 1, GridPathfinder.WAYPOINTS_LINE_OF_SIGHT, buffer));
+        assertTrue(buffer.size() < pathfinder.findPathNow(1, 1, 8, 1).length);
+        for (int i = 1; i < buffer.size(); i++) {
+            assertTrue(buffer.getX(i) == buffer.getX(i - 1) || buffer.getY(i) == buffer.getY(i - 1));
+        }
+        pathfinder.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownModesAreRejected() {
+        new GridPathfinder().setNeighborhood(4);
+    }
+
+    /**
+     * @return The steps a node may take under the mode, as x- and y-offsets
+     */
+    private static int[][] steps(int mode, int y) {
+        switch (mode) {
+            case GridPathfinder.NEIGHBORS_4:
+                return new int[][] {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+            case GridPathfinder.NEIGHBORS_HEX:
+                // Odd rows are shifted half a cell to the right
+                int side = (y & 1) == 0 ? -1 : 1;
+                return new int[][] {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {side, 1}, {side, -1}};
+            default:
+                return new int[][] {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {-1, 1}, {1, -1}, {-1, -1}};
+        }
+    }
+
+    /**
+     * @return The cost of the step from node @from by @dx, @dy under the mode or -1 if it may not be taken
+     */
+    private static int stepCost(GridModel model, int mode, int from, int dx, int dy) {
+        int width = model.width;
+        int x = from % width + dx, y = from / width + dy;
+        if (x < 0 || y < 0 || x >= width || y >= model.height || model.isBlocked(y * width + x)) return -1;
+        boolean diagonal = dx != 0 && dy != 0;
+        if (diagonal && mode == GridPathfinder.NEIGHBORS_8_NO_CORNER_CUTTING
+                && (model.isBlocked(from + dx) || model.isBlocked(from + dy * width))) return -1;
+        return (int) ((diagonal && mode != GridPathfinder.NEIGHBORS_HEX ? 14 : 10) * model.getTravellingFactor(y * width + x));
+    }
+
+    private static int dijkstra(GridModel model, int mode, int start, int dest) {
+        if (model.isBlocked(start) || model.isBlocked(dest)) return -1;
+        int[] cost = new int[model.size()];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+        NodeHeap open = new NodeHeap(model.size());
+        cost[start] = 0;
+        open.add(start, 0);
+        int current;
+        while ((current = open.poll()) >= 0) {
+            if (current == dest) return cost[current];
+            for (int[] step : steps(mode, current / model.width)) {
+                int stepCost = stepCost(model, mode, current, step[0], step[1]);
+                if (stepCost < 0) continue;
+                int n = current + step[1] * model.width + step[0];
+                int nCost = cost[current] + stepCost;
+                if (nCost < cost[n]) {
+                    if (open.contains(n)) open.decreaseKey(n, nCost);
+                    else open.add(n, nCost);
+                    cost[n] = nCost;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The cost of following the path, which may only take steps of the mode
+     */
+    private static int cost(GridModel model, int mode, int[] path) {
+        int cost = 0;
+        for (int i = 1; i < path.length; i++) {
+            int dx = path[i] % model.width - path[i - 1] % model.width;
+            int dy = path[i] / model.width - path[i - 1] / model.width;
+            boolean allowed = false;
+            for (int[] step : steps(mode, path[i - 1] / model.width)) allowed |= step[0] == dx && step[1] == dy;
+            assertTrue(allowed);
+            int stepCost = stepCost(model, mode, path[i - 1], dx, dy);
+            assertTrue(stepCost >= 0);
+            cost += stepCost;
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,54 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the indexed open set of the A* implementation.
+ */
+public class NodeHeapTest {
+
+    @Test
+    public void pollsInKeyOrder() throws Exception {
+        Random random = new Random(1);
+        NodeHeap heap = new NodeHeap(1000);
+        int[] keys = new int[1000];
+        for (int node = 0; node < 1000; node++) {
+            keys[node] = random.nextInt(5000);
+            heap.add(node, keys[node]);
+        }
+        // Lower some keys after insertion
+        for (int node = 0; node < 1000; node += 3) {
+            keys[node] -= random.nextInt(keys[node] + 1);
+            heap.decreaseKey(node, keys[node]);
+        }
+
+        int last = Integer.MIN_VALUE;
+        int polled = 0;
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            assertFalse(heap.contains(node));
+            assertTrue(keys[node] >= last);
+            last = keys[node];
+            polled++;
+        }
+        assertEquals(1000, polled);
+        assertEquals(-1, heap.poll());
+    }
+
+    @Test
+    public void clearResetsMembership() throws Exception {
+        NodeHeap heap = new NodeHeap(10);
+        heap.add(3, 7);
+        heap.add(5, 2);
+        assertTrue(heap.contains(3));
+        assertEquals(2, heap.getKey(5));
+        heap.clear();
+        assertFalse(heap.contains(3));
+        assertFalse(heap.contains(5));
+        assertTrue(heap.isEmpty());
+    }
+}
@@ -0,0 +1,120 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the paths of the parallel search against Dijkstra's algorithm on random grids.
+ */
+public class ParallelSearchTest {
+
+    @Test
+    public void parallelPathsHaveTheOptimalCost() throws Exception {
+        Random random = new Random(23);
+        ExecutorService helpers = ParallelSearch.createHelpers();
+        for (int round = 0; round < 30; round++) {
+            int width = 80 + random.nextInt(120), height = 80 + random.nextInt(120);
+            boolean[] blocked = new boolean[width * height];
+            float[] factors = new float[width * height];
+            for (int n = 0; n < blocked.length; n++) {
+                int roll = random.nextInt(10);
+                if (roll < 3) blocked[n] = true;
+                else if (roll == 9) factors[n] = 2.5f;
+            }
+            GridModel model = GridModelTest.compile(width, height, blocked, factors);
+            // Far enough apart to be searched in parallel
+            int start = freeNode(random, model, 0, width / 4);
+            int dest = freeNode(random, model, width - width / 4, width);
+            int expected = JumpPointSearchTest.dijkstra(model, start, dest);
+
+            SearchWorkspace workspace = SearchWorkspace.acquire(model);
+            ParallelSearch search = new ParallelSearch(model, helpers, 2 + round % 4, start % width, start / width, dest % width, dest / width);
+            boolean found = search.search(workspace);
+            if (expected < 0) {
+                assertFalse(found);
+            } else {
+                assertTrue(found);
+                int[] path = new int[search.countPathNodes()];
+                search.collectPath(path, path.length);
+                assertEquals(start, path[0]);
+                assertEquals(dest, path[path.length - 1]);
+                assertEquals(expected, JumpPointSearchTest.cost(model, path));
+                assertTrue(search.getRounds() >= path.length - 1);
+            }
+            SearchWorkspace.release(workspace);
+        }
+        helpers.shutdown();
+    }
+
+    @Test
+    public void pathfinderSearchesOnSeveralThreads() throws Exception {
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(300, 200, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                // Walls with gaps at alternating ends
+                return x % 50 == 25 && (x / 50 % 2 == 0 ? y < 190 : y > 10);
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return y % 7 == 0 ? 1.5f : 1f;
+            }
+        });
+        pathfinder.setEngine(GridPathfinder.ENGINE_PARALLEL);
+        pathfinder.setParallelism(4);
+        GridModel model = pathfinder.getGridModel();
+
+        int[] path = pathfinder.findPathNow(2, 100, 297, 100);
+        assertNotNull(path);
+        assertEquals(JumpPointSearchTest.dijkstra(model, 100 * 300 + 2, 100 * 300 + 297), JumpPointSearchTest.cost(model, path));
+
+        // Short queries are searched on the calling thread only, over all eight neighbors
+        path = pathfinder.findPathNow(0, 3, 10, 3);
+        assertNotNull(path);
+        assertEquals(100, JumpPointSearchTest.cost(model, path));
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void cancellingStopsThePartitions() throws Exception {
+        // Walls with gaps at alternating ends, so the search has to cover the whole board
+        boolean[] blocked = new boolean[1600 * 1600];
+        for (int x = 4; x < 1600; x += 4) {
+            for (int y = 0; y < 1600; y++) blocked[y * 1600 + x] = x % 8 == 0 ? y > 0 : y < 1599;
+        }
+        GridModel model = GridModelTest.compile(1600, 1600, blocked, null);
+        ExecutorService helpers = ParallelSearch.createHelpers();
+        final ParallelSearch search = new ParallelSearch(model, helpers, 4, 0, 800, 1599, 800);
+        final int[] status = new int[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                status[0] = search.step(0, 0);
+            }
+        };
+        thread.start();
+        Thread.sleep(20);
+        search.cancel();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertEquals(AStarSearch.CANCELLED, status[0]);
+        SearchWorkspace.release(search.workspace);
+        helpers.shutdown();
+    }
+
+    /**
+     * @return A random free node with an x-coordinate from @fromX inclusive to @toX exclusive
+     */
+    private static int freeNode(Random random, GridModel model, int fromX, int toX) {
+        int node;
+        do {
+            node = random.nextInt(model.height) * model.width + fromX + random.nextInt(toX - fromX);
+        } while (model.isBlocked(node));
+        return node;
+    }
+}
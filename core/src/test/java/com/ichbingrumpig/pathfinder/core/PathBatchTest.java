@@ -0,0 +1,122 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the paths of batches against Dijkstra's algorithm.
+ */
+public class PathBatchTest {
+
+    @Test
+    public void batchPathsHaveTheOptimalCost() throws Exception {
+        Random random = new Random(5);
+        GridPathfinder pathfinder = new GridPathfinder();
+        // Searches all eight neighbors of every node, like the backwards searches of the batch
+        pathfinder.setEngine(GridPathfinder.ENGINE_JUMP_POINT);
+        for (int round = 0; round < 20; round++) {
+            final int width = 10 + random.nextInt(30);
+            final int height = 10 + random.nextInt(30);
+            final boolean[] blocked = new boolean[width * height];
+            final float[] factors = new float[width * height];
+            for (int n = 0; n < factors.length; n++) {
+                int roll = random.nextInt(10);
+                blocked[n] = roll < 2;
+                factors[n] = roll == 9 ? 2.5f : 1f;
+            }
+            pathfinder.setGrid(width, height, new CellRules() {
+                @Override
+                public boolean isBlocked(int x, int y) {
+                    return blocked[y * width + x];
+                }
+
+                @Override
+                public float getTravellingFactor(int x, int y) {
+                    return factors[y * width + x];
+                }
+            });
+
+            // A crowd heading to one destination, a few identical queries and some single ones
+            List<PathRequest> requests = new ArrayList<>();
+            int destX = random.nextInt(width), destY = random.nextInt(height);
+            for (int i = 0; i < 8; i++) {
+                requests.add(new PathRequest(random.nextInt(width), random.nextInt(height), destX, destY));
+            }
+            PathRequest single = new PathRequest(random.nextInt(width), random.nextInt(height), random.nextInt(width), random.nextInt(height));
+            for (int i = 0; i < 2; i++) {
+                requests.add(new PathRequest(single.getStartX(), single.getStartY(), single.getDestX(), single.getDestY()));
+            }
+            for (int i = 0; i < 5; i++) {
+                requests.add(new PathRequest(random.nextInt(width), random.nextInt(height), random.nextInt(width), random.nextInt(height)));
+            }
+            Collections.shuffle(requests, random);
+
+            List<PathRequest> answered = pathfinder.findPaths(requests, GridPathfinder.PRIORITY_NORMAL, null).get(10, TimeUnit.SECONDS);
+            assertEquals(requests, answered);
+            GridModel model = pathfinder.getGridModel();
+            for (PathRequest request : answered) {
+                int start = request.getStartY() * width + request.getStartX();
+                int dest = request.getDestY() * width + request.getDestX();
+                int expected = model.isBlocked(start) ? -1 : JumpPointSearchTest.dijkstra(model, start, dest);
+                int[] path = request.getPath();
+                if (expected < 0) {
+                    assertNull(path);
+                } else {
+                    assertNotNull(path);
+                    assertEquals(start, path[0]);
+                    assertEquals(dest, path[path.length - 1]);
+                    assertEquals(expected, JumpPointSearchTest.cost(model, path));
+                }
+            }
+        }
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void listenerIsCalledOnceAllPathsAreFound() throws Exception {
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(20, 20, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return false;
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        });
+        List<PathRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            requests.add(new PathRequest(i, i % 3, 19 - i, 19));
+        }
+        final CountDownLatch called = new CountDownLatch(1);
+        final PathBatch[] completed = new PathBatch[1];
+        PathBatch batch = pathfinder.findPaths(requests, GridPathfinder.PRIORITY_HIGH, new OnBatchCompletedListener() {
+            @Override
+            public void onBatchCompleted(PathBatch batch) {
+                completed[0] = batch;
+                called.countDown();
+            }
+        });
+        assertTrue(called.await(10, TimeUnit.SECONDS));
+        assertSame(batch, completed[0]);
+        assertTrue(batch.isDone());
+        assertFalse(batch.cancel(true));
+        for (PathRequest request : batch.getRequests()) {
+            assertNotNull(request.getPath());
+        }
+
+        // Nothing to search for
+        assertTrue(pathfinder.findPaths(new ArrayList<PathRequest>(), GridPathfinder.PRIORITY_LOW, null).isDone());
+        pathfinder.shutdown();
+    }
+}
@@ -0,0 +1,150 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests eviction and invalidation of cached paths.
+ */
+public class PathCacheTest {
+
+    private final int[][] grid = new int[20][20];
+
+    private final GridModel model = new GridModel(20, 20);
+
+    /** Blocks every cell with a grid value of 1 */
+    private final CellRules rules = new CellRules() {
+        @Override
+        public boolean isBlocked(int x, int y) {
+            return grid[x][y] == 1;
+        }
+
+        @Override
+        public float getTravellingFactor(int x, int y) {
+            return 1f;
+        }
+    };
+
+    @Test
+    public void evictsLeastRecentlyUsedPaths() throws Exception {
+        PathCache cache = new PathCache(model, 2);
+        cache.put(1, 2, new int[] {2, 1}, 10, 0);
+        cache.put(3, 4, new int[] {4, 3}, 10, 0);
+        assertNotNull(cache.get(1, 2));
+        cache.put(5, 6, new int[] {6, 5}, 10, 0);
+
+        assertNull(cache.get(3, 4));
+        assertNotNull(cache.get(1, 2));
+        assertNotNull(cache.get(5, 6));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void removesOnlyPathsTheChangeMayAffect() throws Exception {
+        PathCache cache = new PathCache(model, 10);
+        // Straight paths along row 2 and row 15
+        cache.put(node(0, 2), node(9, 2), row(2, 0, 9), 90, 0);
+        cache.put(node(0, 15), node(9, 15), row(15, 0, 9), 90, 0);
+
+        // Blocks a cell next to the first path. Neither path runs through it and no detour via it is cheaper
+        grid[5][3] = 1;
+        model.update(rules, 5, 3, 6, 4);
+        assertEquals(2, cache.size());
+
+        // Blocks a cell on the first path
+        grid[5][2] = 1;
+        model.update(rules, 5, 2, 6, 3);
+        assertNull(cache.get(node(0, 2), node(9, 2)));
+        assertNotNull(cache.get(node(0, 15), node(9, 15)));
+    }
+
+    @Test
+    public void removesPathsAShortcutMayBeat() throws Exception {
+        PathCache cache = new PathCache(model, 10);
+        // A detour of cost 200 between two nodes 10 apart
+        cache.put(node(0, 10), node(10, 10), row(10, 0, 10), 200, 0);
+        cache.put(node(0, 0), node(5, 0), row(0, 0, 5), 50, 0);
+
+        // Opens a cell between them, which may be a shortcut for the detour only
+        model.update(rules, 5, 12, 6, 13);
+        assertNull(cache.get(node(0, 10), node(10, 10)));
+        assertNotNull(cache.get(node(0, 0), node(5, 0)));
+    }
+
+    @Test
+    public void shortcutsFollowTheNeighborhood() throws Exception {
+        model.setNeighborhood(GridPathfinder.NEIGHBORS_HEX);
+        PathCache cache = new PathCache(model, 10);
+        // On hexagonal boards the rows above and below are one straight step away
+        cache.put(node(0, 0), node(4, 4), new int[] {node(0, 0), node(0, 4), node(4, 4)}, 65, 0);
+
+        // A path via [2, 0] costs at least 20 + 40, less than the cached one
+        model.update(rules, 2, 0, 3, 1);
+        assertNull(cache.get(node(0, 0), node(4, 4)));
+    }
+
+    @Test
+    public void doesNotStorePathsFoundOnAnOutdatedGrid() throws Exception {
+        PathCache cache = new PathCache(model, 10);
+        grid[5][2] = 1;
+        model.update(rules, 5, 2, 6, 3);
+        // Found before the update
+        cache.put(node(0, 2), node(9, 2), row(2, 0, 9), 90, 0);
+        assertEquals(0, cache.size());
+        cache.put(node(0, 2), node(9, 2), row(2, 0, 9), 90, 1);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void searchesAreAnsweredFromTheCache() throws Exception {
+        PathCache cache = new PathCache(model, 10);
+        final int[][] paths = new int[2][];
+        for (int i = 0; i < 2; i++) {
+            final int index = i;
+            PathSearch search = new PathSearch(new JumpPointSearch(model, 1, 1, 18, 12), new OnPathComputedListener() {
+                @Override
+                public void onPathComputed(int[] path) {
+                    paths[index] = path;
+                }
+            }, GridPathfinder.PRIORITY_NORMAL, null, 0, 0, cache);
+            assertTrue(search.resume(0, 0));
+        }
+        assertNotNull(paths[0]);
+        assertNotNull(paths[1]);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        // Every node of the path, including those between jump points
+        assertEquals(18, cache.get(node(1, 1), node(18, 12)).length);
+    }
+
+    @Test
+    public void replacedCachesStopListeningToTheGrid() throws Exception {
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(20, 20, rules);
+        GridModel first = pathfinder.getGridModel();
+        pathfinder.setCacheSize(10);
+        pathfinder.setCacheSize(20);
+        assertEquals(1, first.listeners.size());
+
+        pathfinder.setGrid(20, 20, rules);
+        assertTrue(first.listeners.isEmpty());
+        assertEquals(1, pathfinder.getGridModel().listeners.size());
+
+        pathfinder.setCacheSize(0);
+        assertTrue(pathfinder.getGridModel().listeners.isEmpty());
+        pathfinder.shutdown();
+    }
+
+    private static int node(int x, int y) {
+        return y * 20 + x;
+    }
+
+    /** The nodes of a row from @left to @right */
+    private static int[] row(int y, int left, int right) {
+        int[] nodes = new int[right - left + 1];
+        for (int x = left; x <= right; x++) nodes[x - left] = node(x, y);
+        return nodes;
+    }
+}
@@ -0,0 +1,157 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the repaired paths of the planner against Dijkstra's algorithm while cells, the start and the destination change.
+ */
+public class PathPlannerTest {
+
+    @Test
+    public void repairedPathsHaveTheOptimalCost() throws Exception {
+        Random random = new Random(31);
+        for (int round = 0; round < 10; round++) {
+            final int width = 20 + random.nextInt(30), height = 20 + random.nextInt(30);
+            final boolean[] blocked = new boolean[width * height];
+            final float[] factors = new float[width * height];
+            for (int n = 0; n < blocked.length; n++) {
+                int roll = random.nextInt(10);
+                blocked[n] = roll < 2;
+                factors[n] = roll == 9 ? 2.5f : 1f;
+            }
+            GridPathfinder pathfinder = new GridPathfinder();
+            pathfinder.setGrid(width, height, new CellRules() {
+                @Override
+                public boolean isBlocked(int x, int y) {
+                    return blocked[y * width + x];
+                }
+
+                @Override
+                public float getTravellingFactor(int x, int y) {
+                    return factors[y * width + x];
+                }
+            });
+            GridModel model = pathfinder.getGridModel();
+            int start = random.nextInt(width * height), dest = random.nextInt(width * height);
+            PathPlanner planner = pathfinder.createPlanner(start % width, start / width, dest % width, dest / width);
+
+            for (int step = 0; step < 40; step++) {
+                int[] path = planner.plan();
+                int expected = model.areConnected(start, dest) ? JumpPointSearchTest.dijkstra(model, start, dest) : -1;
+                if (expected < 0) {
+                    assertNull(path);
+                } else {
+                    assertNotNull(path);
+                    assertEquals(start, path[0]);
+                    assertEquals(dest, path[path.length - 1]);
+                    assertEquals(expected, JumpPointSearchTest.cost(model, path));
+                }
+
+                int action = random.nextInt(4);
+                if (action == 0 && path != null && path.length > 1) {
+                    // The unit takes a step along its path
+                    start = path[1];
+                    planner.setStart(start % width, start / width);
+                } else if (action == 1) {
+                    // The target moves to a neighboring cell
+                    int x = Math.min(Math.max(dest % width + random.nextInt(3) - 1, 0), width - 1);
+                    int y = Math.min(Math.max(dest / width + random.nextInt(3) - 1, 0), height - 1);
+                    dest = y * width + x;
+                    planner.setDestination(x, y);
+                } else {
+                    // A few cells change their blocking or travelling factor
+                    int x = random.nextInt(width - 2), y = random.nextInt(height - 2);
+                    for (int n = 0; n < 3; n++) {
+                        int cell = (y + random.nextInt(3)) * width + x + random.nextInt(3);
+                        if (random.nextBoolean()) blocked[cell] = !blocked[cell];
+                        else factors[cell] = factors[cell] == 1f ? 3f : 1f;
+                    }
+                    pathfinder.updateCells(x, y, x + 3, y + 3);
+                }
+            }
+            planner.release();
+            pathfinder.shutdown();
+        }
+    }
+
+    @Test
+    public void smallChangesAreRepairedLocally() throws Exception {
+        final boolean[] blocked = new boolean[100 * 100];
+        GridPathfinder pathfinder = new GridPathfinder();
+        CellRules rules = new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return blocked[y * 100 + x];
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        };
+        pathfinder.setGrid(100, 100, rules);
+        PathPlanner planner = pathfinder.createPlanner(5, 50, 95, 50);
+        int[] path = planner.plan();
+        assertNotNull(path);
+
+        // Nothing changed, nothing to expand
+        assertArrayEquals(path, planner.plan());
+        assertEquals(0, planner.getExpandedNodes());
+
+        // Following the path costs nothing either
+        int sx = path[10] % 100, sy = path[10] / 100;
+        planner.setStart(sx, sy);
+        assertEquals(path.length - 10, planner.plan().length);
+        assertEquals(0, planner.getExpandedNodes());
+
+        // A wall ahead of the unit is repaired with fewer expansions than a new search
+        for (int y = 45; y < 56; y++) blocked[y * 100 + 20] = true;
+        pathfinder.updateCells(20, 45, 21, 56);
+        int[] detour = planner.plan();
+        assertNotNull(detour);
+        for (int node : detour) assertFalse(blocked[node]);
+        PathPlanner fresh = pathfinder.createPlanner(sx, sy, 95, 50);
+        assertEquals(fresh.plan().length, detour.length);
+        assertTrue(planner.getExpandedNodes() < fresh.getExpandedNodes());
+
+        fresh.release();
+        planner.release();
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void openedWallsShortenThePath() throws Exception {
+        // A wall at x = 10 with a gap at the bottom
+        final boolean[] blocked = new boolean[20 * 20];
+        for (int y = 0; y < 19; y++) blocked[y * 20 + 10] = true;
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(20, 20, new CellRules() {
+            @Override
+            public boolean isBlocked(int x, int y) {
+                return blocked[y * 20 + x];
+            }
+
+            @Override
+            public float getTravellingFactor(int x, int y) {
+                return 1f;
+            }
+        });
+        PathPlanner planner = pathfinder.createPlanner(0, 0, 19, 0);
+        int[] detour = planner.plan();
+        assertNotNull(detour);
+
+        blocked[10] = false;
+        pathfinder.updateCells(10, 0, 11, 1);
+        int[] path = planner.plan();
+        assertEquals(20, path.length);
+        assertArrayEquals(pathfinder.findPathNow(0, 0, 19, 0), path);
+        assertTrue(path.length < detour.length);
+
+        planner.release();
+        pathfinder.shutdown();
+    }
+}
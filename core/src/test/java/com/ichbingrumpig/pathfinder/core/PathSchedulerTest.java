@@ -0,0 +1,182 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests ordering, back-pressure, coalescing, cancellation and time slicing of searches.
+ */
+public class PathSchedulerTest {
+
+    private final GridModel model = new GridModel(10, 10);
+
+    private final List<String> finished = Collections.synchronizedList(new ArrayList<String>());
+
+    @Test
+    public void runsWaitingSearchesByPriority() throws Exception {
+        PathScheduler scheduler = new PathScheduler(1, 4);
+        final CountDownLatch blocking = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        // Keeps the only worker busy while the others are queued
+        assertTrue(scheduler.submit(search(new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] path) {
+                blocking.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, GridPathfinder.PRIORITY_NORMAL, null)));
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch done = new CountDownLatch(4);
+        Object unit = new Object();
+        assertTrue(scheduler.submit(search("low", done, GridPathfinder.PRIORITY_LOW, null)));
+        assertTrue(scheduler.submit(search("high", done, GridPathfinder.PRIORITY_HIGH, null)));
+        assertTrue(scheduler.submit(search("normal", done, GridPathfinder.PRIORITY_NORMAL, null)));
+        assertTrue(scheduler.submit(search("superseded", done, GridPathfinder.PRIORITY_NORMAL, unit)));
+        // Replaces the waiting search of the same unit, so the full queue does not matter
+        assertTrue(scheduler.submit(search("unit", done, GridPathfinder.PRIORITY_NORMAL, unit)));
+        assertFalse(scheduler.submit(search("rejected", done, GridPathfinder.PRIORITY_HIGH, null)));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertEquals(Arrays.asList("high", "normal", "unit", "low"), finished);
+    }
+
+    @Test
+    public void rejectedSearchKeepsThePreviousOne() throws Exception {
+        PathScheduler scheduler = new PathScheduler(1, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        Object unit = new Object();
+        // The unit's search keeps the only worker busy while it runs
+        assertTrue(scheduler.submit(new PathSearch(new AStarSearch(model, 0, 0, 9, 9) {
+            @Override
+            boolean begin() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.begin();
+            }
+        }, new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] path) {
+                finished.add("running");
+                done.countDown();
+            }
+        }, GridPathfinder.PRIORITY_NORMAL, unit, 0, 0, null)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(scheduler.submit(search("waiting", done, GridPathfinder.PRIORITY_NORMAL, null)));
+        // The queue is full and the running search has no place to give
+        assertFalse(scheduler.submit(search("rejected", done, GridPathfinder.PRIORITY_HIGH, unit)));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertEquals(Arrays.asList("running", "waiting"), finished);
+    }
+
+    @Test
+    public void cancelledSearchIsNeverDelivered() throws Exception {
+        PathScheduler scheduler = new PathScheduler(1, 4);
+        final CountDownLatch blocking = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        assertTrue(scheduler.submit(search(new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] path) {
+                blocking.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, GridPathfinder.PRIORITY_NORMAL, null)));
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch done = new CountDownLatch(1);
+        PathSearch cancelled = search("cancelled", done, GridPathfinder.PRIORITY_HIGH, null);
+        assertTrue(scheduler.submit(cancelled));
+        assertTrue(scheduler.submit(search("kept", done, GridPathfinder.PRIORITY_NORMAL, null)));
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertEquals(Arrays.asList("kept"), finished);
+    }
+
+    @Test
+    public void slicedSearchesFinish() throws Exception {
+        final int[][] paths = new int[2][];
+        PathSearch whole = new PathSearch(new AStarSearch(model, 0, 0, 9, 9), new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] path) {
+                paths[0] = path;
+            }
+        }, GridPathfinder.PRIORITY_NORMAL, null, 0, 0, null);
+        assertTrue(whole.resume(0, 0));
+        assertTrue(whole.isDone());
+
+        // Resumed by the caller, a few nodes at a time
+        PathSearch manual = new PathSearch(new AStarSearch(model, 0, 0, 9, 9), new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] path) {
+                paths[1] = path;
+            }
+        }, GridPathfinder.PRIORITY_NORMAL, null, 0, 0, null);
+        int calls = 1;
+        while (!manual.resume(3, 0)) calls++;
+        assertTrue(calls > 1);
+        assertNotNull(paths[0]);
+        assertNotNull(paths[1]);
+
+        // Requeued by the scheduler after each slice
+        PathScheduler scheduler = new PathScheduler(1, 1);
+        final int[][] scheduled = new int[1][];
+        final CountDownLatch done = new CountDownLatch(1);
+        assertTrue(scheduler.submit(new PathSearch(new AStarSearch(model, 0, 0, 9, 9), new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] path) {
+                scheduled[0] = path;
+                done.countDown();
+            }
+        }, GridPathfinder.PRIORITY_NORMAL, null, 3, 0, null)));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        assertNotNull(scheduled[0]);
+    }
+
+    private PathSearch search(final String name, final CountDownLatch done, int priority, Object requester) {
+        return search(new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] path) {
+                finished.add(name);
+                done.countDown();
+            }
+        }, priority, requester);
+    }
+
+    private PathSearch search(OnPathComputedListener listener, int priority, Object requester) {
+        return new PathSearch(new AStarSearch(model, 0, 0, 9, 9), listener, priority, requester, 0, 0, null);
+    }
+}
@@ -0,0 +1,123 @@
+package com.ichbingrumpig.pathfinder.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the metrics reported by searches and how they are added up.
+ */
+public class SearchStatisticsTest {
+
+    /** Blocks the column at x = 5, except for its bottom cell, and walls in the cell [8, 1] */
+    private final CellRules rules = new CellRules() {
+        @Override
+        public boolean isBlocked(int x, int y) {
+            return (x == 5 && y < 9) || (x >= 7 && x <= 9 && y <= 2 && !(x == 8 && y == 1));
+        }
+
+        @Override
+        public float getTravellingFactor(int x, int y) {
+            return 1f;
+        }
+    };
+
+    @Test
+    public void searchesReportTheirMetrics() throws Exception {
+        final List<SearchMetrics> reported = new ArrayList<>();
+        SearchStatistics statistics = new SearchStatistics();
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(10, 10, rules);
+        pathfinder.setCacheSize(8);
+        pathfinder.addOnSearchFinishedListener(statistics);
+        pathfinder.addOnSearchFinishedListener(new OnSearchFinishedListener() {
+            @Override
+            public void onSearchFinished(SearchMetrics metrics) {
+                reported.add(metrics);
+            }
+        });
+
+        int[] path = pathfinder.findPathNow(1, 1, 8, 8);
+        SearchMetrics found = reported.get(0);
+        assertEquals(SearchMetrics.RESULT_FOUND, found.getResult());
+        assertFalse(found.isCached());
+        assertEquals(path.length, found.getPathLength());
+        assertTrue(found.getExpandedNodes() >= path.length);
+        assertTrue(found.getGeneratedNodes() >= found.getExpandedNodes());
+        assertTrue(found.getPeakOpenNodes() > 0);
+
+        // The walled in cell is rejected without expanding a node
+        assertNull(pathfinder.findPathNow(1, 1, 8, 1));
+        SearchMetrics notFound = reported.get(1);
+        assertEquals(SearchMetrics.RESULT_NOT_FOUND, notFound.getResult());
+        assertEquals(0, notFound.getExpandedNodes());
+
+        pathfinder.findPathNow(1, 1, 8, 8);
+        assertTrue(reported.get(2).isCached());
+
+        PathSearch cancelled = pathfinder.startSearch(1, 1, 8, 8, new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] path) {
+                fail();
+            }
+        });
+        assertTrue(cancelled.cancel());
+        assertEquals(SearchMetrics.RESULT_CANCELLED, reported.get(3).getResult());
+
+        assertEquals(2, statistics.getSearchCount(SearchMetrics.RESULT_FOUND));
+        assertEquals(1, statistics.getSearchCount(SearchMetrics.RESULT_NOT_FOUND));
+        assertEquals(1, statistics.getSearchCount(SearchMetrics.RESULT_CANCELLED));
+        assertEquals(1, statistics.getCachedCount());
+        assertEquals(2, statistics.getPathLength().getCount());
+        assertEquals(path.length, statistics.getPathLength().getMax());
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void searchesReportTheEngineTheyRanOn() throws Exception {
+        final List<SearchMetrics> reported = new ArrayList<>();
+        GridPathfinder pathfinder = new GridPathfinder();
+        pathfinder.setGrid(10, 10, rules);
+        pathfinder.setEngine(GridPathfinder.ENGINE_HIERARCHICAL);
+        pathfinder.addOnSearchFinishedListener(new OnSearchFinishedListener() {
+            @Override
+            public void onSearchFinished(SearchMetrics metrics) {
+                reported.add(metrics);
+            }
+        });
+
+        pathfinder.findPathNow(1, 1, 8, 8);
+        assertEquals(GridPathfinder.ENGINE_HIERARCHICAL, reported.get(0).getEngine());
+
+        // Big agents and other neighborhoods fall back to A*
+        pathfinder.findPathNow(1, 1, 7, 7, 2);
+        assertEquals(GridPathfinder.ENGINE_A_STAR, reported.get(1).getEngine());
+        pathfinder.setEngine(GridPathfinder.ENGINE_JUMP_POINT);
+        pathfinder.setNeighborhood(GridPathfinder.NEIGHBORS_4);
+        pathfinder.findPathNow(1, 1, 8, 8);
+        assertEquals(GridPathfinder.ENGINE_A_STAR, reported.get(2).getEngine());
+        pathfinder.shutdown();
+    }
+
+    @Test
+    public void histogramCountsInPowersOfTwo() throws Exception {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 100; value++) histogram.record(value);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        // Values 32 to 63 share a bucket
+        assertEquals(32, histogram.getBucketCount(6));
+        assertEquals(63, histogram.getPercentile(50));
+        assertEquals(100, histogram.getPercentile(99));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+}
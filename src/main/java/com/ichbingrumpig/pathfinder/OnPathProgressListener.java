@@ -0,0 +1,19 @@
+package com.ichbingrumpig.pathfinder;
+
+import android.graphics.Path;
+
+/**
+ * This interface is used as a callback from searches that deliver their path in several versions.
+ * A quick approximate path is passed into {@link #onApproximatePathFound(Path)} first, so the unit
+ * can start moving along it. Once the search has refined it, the final path is passed into
+ * {@link #onPathFound(Path)}, or null if no path is possible.
+ */
+public interface OnPathProgressListener extends OnPathFoundListener {
+
+    /**
+     * Invoked once an approximate path was found, before the final path.
+     * Not invoked if no path is possible or if the final path is already waiting to be delivered.
+     * @param path The approximate @{@link Path} object. It may be longer than the final path.
+     */
+    void onApproximatePathFound(Path path);
+}
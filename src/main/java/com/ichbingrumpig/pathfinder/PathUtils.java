@@ -13,6 +13,8 @@ public class PathUtils {
 
     /**
      * Reverses the passed path.
+     * Paths written into a {@link com.ichbingrumpig.pathfinder.core.WaypointBuffer} already run from the start
+     * to the destination and don't need to be reversed.
      * @param path The path to be reversed
      * @return The reversed path
      */
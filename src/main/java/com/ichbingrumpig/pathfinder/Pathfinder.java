@@ -1,62 +1,107 @@
 package com.ichbingrumpig.pathfinder;
 
 import android.graphics.Path;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
-import android.util.Log;
-import android.util.SparseArray;
 
-import java.util.Comparator;
-import java.util.PriorityQueue;
+import com.ichbingrumpig.pathfinder.core.FlowField;
+import com.ichbingrumpig.pathfinder.core.GridPathfinder;
+import com.ichbingrumpig.pathfinder.core.OnBatchCompletedListener;
+import com.ichbingrumpig.pathfinder.core.OnSearchFinishedListener;
+import com.ichbingrumpig.pathfinder.core.OnWaypointsFoundListener;
+import com.ichbingrumpig.pathfinder.core.PathBatch;
+import com.ichbingrumpig.pathfinder.core.PathPlanner;
+import com.ichbingrumpig.pathfinder.core.PathRequest;
+import com.ichbingrumpig.pathfinder.core.PathSearch;
+import com.ichbingrumpig.pathfinder.core.SearchHandle;
+import com.ichbingrumpig.pathfinder.core.SearchStatistics;
+import com.ichbingrumpig.pathfinder.core.WaypointBuffer;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * The main class of this library
  * To use this library initialize the algorithm by calling {@link Pathfinder#initialize(Settings)}.
  * @see Settings
  *
+ * The static methods run on one shared {@link PathfinderInstance}. Games with several maps
+ * create one {@link PathfinderInstance} per map instead, each with its own grid and worker threads.
+ * The searches themselves run in the plain Java {@link GridPathfinder} of the core module.
  */
-public class Pathfinder implements Runnable {
-    /** The log tag for this class */
-    private static final String TAG = "Pathfinder";
+public class Pathfinder {
+    /** Priority for searches that are run before all others */
+    public static final int PRIORITY_HIGH = GridPathfinder.PRIORITY_HIGH;
 
-    /** The cost for travelling vertically or horizontally */
-    private static final int V_H_COST = 10;
+    /** The default priority of searches */
+    public static final int PRIORITY_NORMAL = GridPathfinder.PRIORITY_NORMAL;
 
-    /** The cost of travelling diagonally */
-    private static final int DIAGONAL_COST = 14;
+    /** Priority for searches that are only run when no other searches are waiting */
+    public static final int PRIORITY_LOW = GridPathfinder.PRIORITY_LOW;
 
-    /** The board dimensions */
-    private static int boardWidth, boardHeight;
+    /** Engine running the A* algorithm on every node */
+    public static final int ENGINE_A_STAR = GridPathfinder.ENGINE_A_STAR;
 
-    /** Stores key-value pairs with grid values and their travelling cost factors */
-    private static SparseArray<Float> travellingCostRules;
+    /** Engine running Jump Point Search, which skips ahead where the travelling factor is 1 */
+    public static final int ENGINE_JUMP_POINT = GridPathfinder.ENGINE_JUMP_POINT;
 
-    /** The settings for the algorithm */
-    private static Settings settings;
+    /** Engine running hierarchical pathfinding (HPA*), which finds long paths much faster, but not always the optimal one */
+    public static final int ENGINE_HIERARCHICAL = GridPathfinder.ENGINE_HIERARCHICAL;
 
-    /** Stores the starting time. For debugging purposes */
-    private long startStart;
+    /** Engine spreading each long search over several threads (HDA*), which finds the same paths as A* sooner on big boards */
+    public static final int ENGINE_PARALLEL = GridPathfinder.ENGINE_PARALLEL;
 
-    /** The starting coordinates */
-    private int startX, startY;
+    /** Waypoints on every cell of the path */
+    public static final int WAYPOINTS_ALL_CELLS = GridPathfinder.WAYPOINTS_ALL_CELLS;
 
-    /** The destination coordinates */
-    private int destX, destY;
+    /** Waypoints only where the path changes its direction, besides the start and the destination */
+    public static final int WAYPOINTS_CORNERS = GridPathfinder.WAYPOINTS_CORNERS;
 
-    /** Stored the rounds the while-loop has made. For debugging purposes. */
-    private int rounds = 0;
+    /** Waypoints of the path pulled tight, each one in line of sight of the one before */
+    public static final int WAYPOINTS_LINE_OF_SIGHT = GridPathfinder.WAYPOINTS_LINE_OF_SIGHT;
 
-    /** The closed set */
-    private boolean[][] closed;
+    /** Estimates the remaining cost by the octile distance, the cheapest way over an empty board. The default */
+    public static final int HEURISTIC_OCTILE = GridPathfinder.HEURISTIC_OCTILE;
 
-    /** The open set */
-    private PriorityQueue<Node> open;
+    /** Estimates the remaining cost by the straight line distance */
+    public static final int HEURISTIC_EUCLIDEAN = GridPathfinder.HEURISTIC_EUCLIDEAN;
 
-    /**
-     * The Callback interface
-     * Once the algorithm has finished, {@link OnPathFoundListener#onPathFound(Path)} is called,
-     * either with the resulting path object or null if no path is available.
-     */
-    private OnPathFoundListener onPathFoundListener;
+    /** Estimates the remaining cost via precomputed costs to a few landmarks, which is far closer on maps with walls and mazes */
+    public static final int HEURISTIC_LANDMARKS = GridPathfinder.HEURISTIC_LANDMARKS;
+
+    /** Estimates the remaining cost by the Manhattan distance, as former versions did */
+    public static final int HEURISTIC_MANHATTAN = GridPathfinder.HEURISTIC_MANHATTAN;
+
+    /** Paths step to all eight surrounding cells, also diagonally past the corners of blocked cells. The default */
+    public static final int NEIGHBORS_8 = GridPathfinder.NEIGHBORS_8;
+
+    /** Paths step to all eight surrounding cells, but only diagonally if both cells beside the step are free */
+    public static final int NEIGHBORS_8_NO_CORNER_CUTTING = GridPathfinder.NEIGHBORS_8_NO_CORNER_CUTTING;
+
+    /** Paths only step vertically and horizontally */
+    public static final int NEIGHBORS_4 = GridPathfinder.NEIGHBORS_4;
+
+    /** Paths step between hexagonal cells, every odd row shifted half a cell to the right. All six steps cost the same */
+    public static final int NEIGHBORS_HEX = GridPathfinder.NEIGHBORS_HEX;
+
+    /** The largest unit paths can be found for, in cells per side. See {@link #findPath(int, int, int, int, int, int, Object, OnPathFoundListener)} */
+    public static final int MAX_AGENT_SIZE = GridPathfinder.MAX_AGENT_SIZE;
+
+    /** Runs the listener calls of {@link #findPathProgressively(int, int, int, int, int, Object, Executor, OnPathProgressListener)} on the main thread */
+    public static final Executor MAIN_THREAD = new Executor() {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            handler.post(command);
+        }
+    };
+
+    /** The instance the static methods run on */
+    private static final PathfinderInstance instance = new PathfinderInstance();
 
     /**
      * Initializes the algorithm.
@@ -65,13 +110,140 @@ public class Pathfinder implements Runnable {
      * @param settings The settings for this implementation.
      */
     public static void initialize (@NonNull Settings settings) {
-        Pathfinder.settings = settings;
-        boardWidth = settings.getGrid().length;
-        boardHeight = settings.getGrid()[0].length;
-        travellingCostRules = settings.setTravellingCostRules();
-        Log.d(TAG, "Width and height of pathfinding grid: " + boardWidth + "|" + boardHeight);
-        Log.d(TAG, "Total of " + (boardWidth * boardHeight) + " pixels.");
-        Log.d(TAG, "Pathfinder initialized.");
+        instance.initialize(settings);
+    }
+
+    /**
+     * Initializes the algorithm like {@link #initialize(Settings)}, but loads the compiled grid from a file
+     * if it has been stored there from the same grid before, which is much faster for big grids.
+     * Otherwise the grid is compiled and stored in the file for the next start.
+     * The file is only checked against the grid values and the travelling cost rules:
+     * delete it when {@link Settings#isNodeBlocked(int, int)} blocks other values.
+     *
+     * @param settings The settings for this implementation.
+     * @param store The file holding the compiled grid, e.g. in the files directory of the app
+     */
+    public static void initialize (@NonNull Settings settings, @NonNull File store) {
+        instance.initialize(settings, store);
+    }
+
+    /**
+     * Sets the number of worker threads searches run on and how many searches may wait for a worker.
+     * By default there is one worker per available processor and up to 256 waiting searches.
+     * Searches that are already queued, including those running in time slices, still finish on the former workers.
+     *
+     * @param threads The number of worker threads
+     * @param queueCapacity The maximum number of waiting searches. Further searches are rejected.
+     */
+    public static void configureScheduler (int threads, int queueCapacity) {
+        instance.configureScheduler(threads, queueCapacity);
+    }
+
+    /**
+     * Selects the algorithm new searches run on.
+     * {@link #ENGINE_JUMP_POINT} expands far fewer nodes on maps that mostly have a travelling factor of 1
+     * and finds paths of the same cost. {@link #ENGINE_HIERARCHICAL} answers long queries on an abstract
+     * graph of the grid first, which is built once and then only patched where the grid changes.
+     * {@link #ENGINE_PARALLEL} searches long queries on one thread per available processor at once.
+     * By default {@link #ENGINE_A_STAR} is used.
+     *
+     * @param engine One of {@link #ENGINE_A_STAR}, {@link #ENGINE_JUMP_POINT}, {@link #ENGINE_HIERARCHICAL}
+     *               and {@link #ENGINE_PARALLEL}
+     */
+    public static void setEngine (int engine) {
+        instance.setEngine(engine);
+    }
+
+    /**
+     * Selects how new searches estimate the cost from a node to the destination.
+     * With a weight of 1 the cheapest path is found. A weight above 1 makes searches much faster
+     * on open maps, and the path costs at most that many times the cheapest one.
+     * By default {@link #HEURISTIC_OCTILE} is used with a weight of 1.
+     *
+     * @param heuristic One of {@link #HEURISTIC_OCTILE}, {@link #HEURISTIC_EUCLIDEAN}, {@link #HEURISTIC_LANDMARKS}
+     *                  and {@link #HEURISTIC_MANHATTAN}
+     * @param weight The estimate is multiplied with this weight. At least 1
+     */
+    public static void setHeuristic (int heuristic, float weight) {
+        instance.setHeuristic(heuristic, weight);
+    }
+
+    /**
+     * Selects the cells a path may step to from each cell, for new searches.
+     * {@link #ENGINE_JUMP_POINT} and {@link #ENGINE_HIERARCHICAL} rely on all eight neighbors,
+     * so they search with {@link #ENGINE_A_STAR} under the other modes. Waypoints assume square cells:
+     * on hexagonal boards every cell of the path is kept, and with four neighbors paths are at most reduced to
+     * their corners. By default {@link #NEIGHBORS_8} is used.
+     *
+     * @param mode One of {@link #NEIGHBORS_8}, {@link #NEIGHBORS_8_NO_CORNER_CUTTING}, {@link #NEIGHBORS_4}
+     *             and {@link #NEIGHBORS_HEX}
+     */
+    public static void setNeighborhood (int mode) {
+        instance.setNeighborhood(mode);
+    }
+
+    /**
+     * Caches the paths of recent searches, so searches between the same starting and destination
+     * point are answered without searching again. When the cache is full, the least recently used
+     * path is evicted. When the grid changes, only the paths the change may affect are removed.
+     * By default paths are not cached.
+     *
+     * @param maxPaths The maximum number of cached paths. 0 to turn the cache off
+     */
+    public static void setCacheSize (int maxPaths) {
+        instance.setCacheSize(maxPaths);
+    }
+
+    /**
+     * @return The number of searches answered from the cache since it was created or the algorithm was initialized
+     */
+    public static long getCacheHitCount () {
+        return instance.getCacheHitCount();
+    }
+
+    /**
+     * @return The number of searches the cache had no path for since it was created or the algorithm was initialized
+     */
+    public static long getCacheMissCount () {
+        return instance.getCacheMissCount();
+    }
+
+    /**
+     * Limits how long a search started by {@link #findPath(int, int, int, int, OnPathFoundListener)}
+     * keeps a worker thread busy. Once the limit is reached, the search goes back into the queue
+     * so that short searches are not held up by long ones, and continues where it stopped later on.
+     * Only applies to searches started afterwards. By default searches run without a limit.
+     * Long searches of {@link #ENGINE_PARALLEL} can't be split into time slices and run until they end.
+     *
+     * @param maxExpansions The maximum number of nodes expanded per time slice. 0 for no limit
+     * @param maxNanos The maximum duration of a time slice in nanoseconds. 0 for no limit
+     */
+    public static void setTimeSlice (int maxExpansions, long maxNanos) {
+        instance.setTimeSlice(maxExpansions, maxNanos);
+    }
+
+    /**
+     * Tells the algorithm that the game grid has changed in the given region.
+     * Only this region of the compiled grid is updated, which is much faster than
+     * calling {@link #initialize(Settings)} again. Running searches that have already
+     * looked at nodes in this region start over.
+     *
+     * @param region The changed region of the game grid. Right and bottom are exclusive.
+     */
+    public static void updateCells (@NonNull Rect region) {
+        instance.updateCells(region);
+    }
+
+    /**
+     * Sets the value of one cell in the game grid and updates the algorithm accordingly.
+     * See {@link #updateCells(Rect)}.
+     *
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @param value The new grid value of the cell
+     */
+    public static void setCell (int x, int y, int value) {
+        instance.setCell(x, y, value);
     }
 
     /**
@@ -83,174 +255,195 @@ public class Pathfinder implements Runnable {
      * @param destX The x-coordinate of the destination point
      * @param destY The y-coordinate of the destination point
      * @param onPathFoundListener The callback interface, see {@link OnPathFoundListener#onPathFound(Path)}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
      */
-    public static void findPath (int startX, int startY, int destX, int destY, @NonNull OnPathFoundListener onPathFoundListener) {
-        if (settings == null) throw new IllegalArgumentException("Pathfinder not initialized! Pathfinder#initialize must be called before finding an algorithm.");
-        Log.d(TAG, "Starting new thread.");
-        new Thread(new Pathfinder(startX, startY, destX, destY, onPathFoundListener)).start();
+    public static SearchHandle findPath (int startX, int startY, int destX, int destY, @NonNull OnPathFoundListener onPathFoundListener) {
+        return instance.findPath(startX, startY, destX, destY, onPathFoundListener);
     }
 
     /**
-     * Constructor for a new algorithm object.
+     * Implementation of the A* pathfinding algorithm.
+     * Findes the optimal path between two points based on a grid of Nodes.
+     *
+     * The search waits for a worker thread together with other searches, ordered by priority.
+     * If a search for the same requester has not finished yet, it is cancelled
+     * and its listener is never called.
      *
      * @param startX The x-coordinate of the starting point
      * @param startY The y-coordinate of the starting point
      * @param destX The x-coordinate of the destination point
      * @param destY The y-coordinate of the destination point
+     * @param priority One of {@link #PRIORITY_HIGH}, {@link #PRIORITY_NORMAL} and {@link #PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
      * @param onPathFoundListener The callback interface, see {@link OnPathFoundListener#onPathFound(Path)}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
      */
-    private Pathfinder(int startX, int startY, int destX, int destY, OnPathFoundListener onPathFoundListener) {
-        startStart = System.currentTimeMillis();
-        this.startX = startX;
-        this.startY = startY;
-        this.destX = destX;
-        this.destY = destY;
-        this.onPathFoundListener = onPathFoundListener;
+    public static SearchHandle findPath (int startX, int startY, int destX, int destY, int priority, Object requester, @NonNull OnPathFoundListener onPathFoundListener) {
+        return instance.findPath(startX, startY, destX, destY, priority, requester, onPathFoundListener);
     }
 
-    @Override
-    public void run() {
-        long startGrid = System.currentTimeMillis();
-
-        // Set up the node grid
-        Node[][] nodes = new Node[boardWidth][boardHeight];
-        for (int j = 0; j < boardHeight; j++) {
-            for (int i = 0; i < boardWidth; i++) {
-                if (settings.isNodeBlocked(i, j)) continue;
-                nodes[i][j] = new Node(i, j);
-                nodes[i][j].heuristicCost = (Math.abs(i - destX) + Math.abs(j - destY)) * 10;
-                nodes[i][j].travellingFactor = travellingCostRules.get(settings.getGrid()[i][j], 1f);
-            }
-        }
-        Log.d(TAG, "Setting up the grid took " + (System.currentTimeMillis() - startGrid) + " Milliseconds");
-
-        nodes[destX][destY].heuristicCost = 0;
-
-        // Initialize comparator for PriorityQueue (open set)
-        Comparator<Node> comparator = new Comparator<Node>() {
-            @Override
-            public int compare(Node n1, Node n2) {
-                return n1.finalCost < n2.finalCost ? -1 :
-                        n1.finalCost > n2.finalCost ? 1 :
-                        0;
-            }
-        };
-
-        // Initialize the closed and open set
-        closed = new boolean[boardWidth][boardHeight];
-        open = new PriorityQueue<>(1, comparator);
-
-        // Add the starting node to the open set
-        open.add(nodes[startX][startY]);
-
-        Log.d(TAG, "Beginning while loop");
-        final long startWhile = System.currentTimeMillis();
-
-        while (true) {
-            rounds++;
-
-            // Grab node from PriorityQueue with lowest f-cost
-            Node current = open.poll();
-
-            // No path possible -> return null
-            if (current == null) {
-                Log.d(TAG, "No Path possible!");
-                onPathFoundListener.onPathFound(null);
-                break;
-            }
-
-            // Path was found -> return path via Interface
-            if (current.x == destX && current.y == destY) {
-                Log.d(TAG, "Path found! Building and returning...");
-                Log.d(TAG, "Complete algorithm took " + (System.currentTimeMillis() - startStart) + " Miliseconds");
-                Log.d(TAG, "While-Loop alone took " + (System.currentTimeMillis() - startWhile) + " Miliseconds and made " + rounds + " Rounds");
-
-                Path path = new Path();
-                path.moveTo(current.x, current.y);
-                while (current.parent != null) {
-                    path.lineTo(current.parent.x, current.parent.y);
-                    current = current.parent;
-                }
-                onPathFoundListener.onPathFound(path);
-                break;
-            }
-
-            // Add the current node to the closed set
-            closed[current.x][current.y] = true;
-
-            // Neighboring node to @current
-            Node n;
-
-            // Neighbor to the left
-            if (current.x - 1 > 0) {
-                n = nodes[current.x - 1][current.y];
-                checkAndUpdateCost(current, n, V_H_COST);
-
-                // Top-left
-                if (current.y - 1 >= 0) {
-                    n = nodes[current.x - 1][current.y - 1];
-                    checkAndUpdateCost(current, n, DIAGONAL_COST);
-                }
-
-                // Bottom-left
-                if (current.y + 1 < boardHeight) {
-                    n = nodes[current.x - 1][current.y + 1];
-                    checkAndUpdateCost(current, n, DIAGONAL_COST);
-                }
-            }
-
-            // Neighbor to the top
-            if (current.y - 1 >= 0) {
-                n = nodes[current.x][current.y - 1];
-                checkAndUpdateCost(current, n, V_H_COST);
-            }
-
-            // Neighbor to the bottom
-            if (current.y + 1 < boardHeight) {
-                n = nodes[current.x][current.y + 1];
-                checkAndUpdateCost(current, n, V_H_COST);
-            }
-
-            // Neighbor to the right
-            if (current.x + 1 < boardWidth) {
-                n = nodes[current.x + 1][current.y];
-                checkAndUpdateCost(current, n, V_H_COST);
-
-                // Top right
-                if (current.y - 1 >= 0) {
-                    n = nodes[current.x + 1][current.y - 1];
-                    checkAndUpdateCost(current, n, DIAGONAL_COST);
-                }
-
-                // Bottom right
-                if (current.y + 1 < boardHeight) {
-                    n = nodes[current.x + 1][current.y + 1];
-                    checkAndUpdateCost(current, n, DIAGONAL_COST);
-                }
-            }
-        }
-        Log.i(TAG, "Returning. Closing thread");
+    /**
+     * Finds a path like {@link #findPath(int, int, int, int, int, Object, OnPathFoundListener)} for a unit larger
+     * than one cell, e.g. a siege engine covering 3x3 cells. The unit is placed by its top-left cell: the start,
+     * the destination and the path are where that cell goes. The path only leads where the whole unit fits,
+     * so it needs no further checks.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param agentSize The width and height of the unit in cells, from 1 to {@link #MAX_AGENT_SIZE}
+     * @param priority One of {@link #PRIORITY_HIGH}, {@link #PRIORITY_NORMAL} and {@link #PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
+     * @param onPathFoundListener The callback interface, see {@link OnPathFoundListener#onPathFound(Path)}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
+     */
+    public static SearchHandle findPath (int startX, int startY, int destX, int destY, int agentSize, int priority, Object requester, @NonNull OnPathFoundListener onPathFoundListener) {
+        return instance.findPath(startX, startY, destX, destY, agentSize, priority, requester, onPathFoundListener);
     }
 
     /**
-     * Evaluates the cost of travelling to the new Node n.
-     * @param current The current node @n is the neighbor of
-     * @param n The new node -> @current's "neighbor"
-     * @param cost The cost of travelling
+     * Finds a path like {@link #findPath(int, int, int, int, int, Object, OnPathFoundListener)}, but delivers
+     * a quick approximate path first, so the unit can start moving, and the final path once the search has refined it.
+     * The approximate path is found by a search weighted towards the destination and costs at most 3 times as much.
+     * Pass the executor of the thread that moves the units, e.g. {@link #MAIN_THREAD} or the game thread,
+     * so the paths arrive there without another handoff.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param priority One of {@link #PRIORITY_HIGH}, {@link #PRIORITY_NORMAL} and {@link #PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
+     * @param executor Runs the calls of the listener in order. Null to call it on the worker thread
+     * @param onPathProgressListener The callback interface, see {@link OnPathProgressListener}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
      */
-    private void checkAndUpdateCost(Node current, Node n, int cost) {
-        if (n == null || closed[n.x][n.y] || settings.isNodeBlocked(n.x, n.y)) return;
-
-        // The new node's final cost
-        //                       cost of travelling to @current      +  n's heuristic cost   +        n's travelling cost
-        int nFinalCost = (current.finalCost - current.heuristicCost) +    n.heuristicCost    +      (int) (cost * n.travellingFactor); // * travellingFactor;
-
-        boolean nIsInOpen = open.contains(n);
-        if (!nIsInOpen || nFinalCost < n.finalCost) {
-            n.finalCost = nFinalCost;
-            n.parent = current;
-            if (!nIsInOpen)
-                open.add(n);
-        }
+    public static SearchHandle findPathProgressively (int startX, int startY, int destX, int destY, int priority, Object requester,
+                                                      Executor executor, @NonNull OnPathProgressListener onPathProgressListener) {
+        return instance.findPathProgressively(startX, startY, destX, destY, priority, requester, executor, onPathProgressListener);
+    }
+
+    /**
+     * Finds a path like {@link #findPath(int, int, int, int, int, Object, OnPathFoundListener)}, but writes
+     * its waypoints into a reusable buffer from the start to the destination instead of building a {@link Path}.
+     * Keep one buffer per unit: following paths then allocates nothing and needs no {@link PathUtils#reversePath(Path)}.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param priority One of {@link #PRIORITY_HIGH}, {@link #PRIORITY_NORMAL} and {@link #PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
+     * @param waypoints One of {@link #WAYPOINTS_ALL_CELLS}, {@link #WAYPOINTS_CORNERS} and {@link #WAYPOINTS_LINE_OF_SIGHT}
+     * @param buffer Receives the waypoints. Must not be used until the listener has been invoked
+     * @param onWaypointsFoundListener The callback interface, see {@link OnWaypointsFoundListener#onWaypointsFound(WaypointBuffer)}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
+     */
+    public static SearchHandle findPath (int startX, int startY, int destX, int destY, int priority, Object requester,
+                                         int waypoints, @NonNull WaypointBuffer buffer, @NonNull OnWaypointsFoundListener onWaypointsFoundListener) {
+        return instance.findPath(startX, startY, destX, destY, priority, requester, waypoints, buffer, onWaypointsFoundListener);
+    }
+
+    /**
+     * Reports the metrics of every search started afterwards: its times, the nodes it has expanded,
+     * the size of its open set, its path length and result. Register a {@link SearchStatistics}
+     * to add them up, e.g. for a dashboard. As long as no listener is registered, nothing is measured.
+     *
+     * @param onSearchFinishedListener Invoked on the thread of the search once it has finished
+     */
+    public static void addOnSearchFinishedListener (@NonNull OnSearchFinishedListener onSearchFinishedListener) {
+        instance.addOnSearchFinishedListener(onSearchFinishedListener);
+    }
+
+    /**
+     * @param onSearchFinishedListener A listener added by {@link #addOnSearchFinishedListener(OnSearchFinishedListener)}
+     */
+    public static void removeOnSearchFinishedListener (@NonNull OnSearchFinishedListener onSearchFinishedListener) {
+        instance.removeOnSearchFinishedListener(onSearchFinishedListener);
+    }
+
+    /**
+     * Tells in constant time if a path between two points is possible at all.
+     * Searches between points that can't reach each other fail this way without searching.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @return False if no path is possible
+     */
+    public static boolean isReachable (int startX, int startY, int destX, int destY) {
+        return instance.isReachable(startX, startY, destX, destY);
+    }
+
+    /**
+     * Finds the paths of many queries together on the worker threads, which is much cheaper than
+     * searching for each one on its own, e.g. when a whole squad is ordered to the same place.
+     * The paths are the node indices (y * width + x) from the start to the destination, see {@link PathRequest#getPath()}.
+     *
+     * @param requests The queries. Must not be changed until the batch has completed
+     * @param priority One of {@link #PRIORITY_HIGH}, {@link #PRIORITY_NORMAL} and {@link #PRIORITY_LOW}
+     * @param onBatchCompletedListener Invoked on a worker thread once all queries have been answered. May be null
+     * @return The batch, to wait for or cancel
+     */
+    public static PathBatch findPaths (@NonNull List<PathRequest> requests, int priority, OnBatchCompletedListener onBatchCompletedListener) {
+        return instance.findPaths(requests, priority, onBatchCompletedListener);
+    }
+
+    /**
+     * Creates a search that is run by the caller instead of a worker thread.
+     * Call {@link PathSearch#resume(int, long)} with a budget, e.g. once per frame from the game loop,
+     * until it returns true. The listener is invoked from within the last call.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param onPathFoundListener The callback interface, see {@link OnPathFoundListener#onPathFound(Path)}
+     * @return The search, not started yet
+     */
+    public static PathSearch startSearch (int startX, int startY, int destX, int destY, @NonNull OnPathFoundListener onPathFoundListener) {
+        return instance.startSearch(startX, startY, destX, destY, onPathFoundListener);
+    }
+
+    /**
+     * Creates a planner for one unit that keeps its search between paths and only repairs it when cells change,
+     * the unit moves on or its target moves, e.g. for units chasing a moving target. Call {@link PathPlanner#plan()}
+     * on the calling thread whenever the unit needs its path.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @return The planner. Release it via {@link PathPlanner#release()} once the unit no longer needs it
+     */
+    public static PathPlanner createPlanner (int startX, int startY, int destX, int destY) {
+        return instance.createPlanner(startX, startY, destX, destY);
+    }
+
+    /**
+     * Computes the cost and direction of travelling from every node to the destination in one search.
+     * Many units heading to the same destination can follow the flow field instead of each one
+     * searching for its own path. The search runs on the calling thread.
+     *
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @return The flow field towards the destination
+     */
+    public static FlowField createFlowField (int destX, int destY) {
+        return instance.createFlowField(destX, destY);
+    }
+
+    /**
+     * Computes the cost and direction of travelling from every node to the nearest of the targets in one search.
+     * See {@link #createFlowField(int, int)}.
+     *
+     * @param targetsX The x-coordinates of the targets
+     * @param targetsY The y-coordinates of the targets, in the same order
+     * @return The flow field towards the nearest target
+     */
+    public static FlowField createFlowField (@NonNull int[] targetsX, @NonNull int[] targetsY) {
+        return instance.createFlowField(targetsX, targetsY);
     }
 }
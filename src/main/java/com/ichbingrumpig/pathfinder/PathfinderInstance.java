@@ -0,0 +1,570 @@
+package com.ichbingrumpig.pathfinder;
+
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.ichbingrumpig.pathfinder.core.CellRules;
+import com.ichbingrumpig.pathfinder.core.FlowField;
+import com.ichbingrumpig.pathfinder.core.GridPathfinder;
+import com.ichbingrumpig.pathfinder.core.OnBatchCompletedListener;
+import com.ichbingrumpig.pathfinder.core.OnPathComputedListener;
+import com.ichbingrumpig.pathfinder.core.OnPathRefinedListener;
+import com.ichbingrumpig.pathfinder.core.OnSearchFinishedListener;
+import com.ichbingrumpig.pathfinder.core.OnWaypointsFoundListener;
+import com.ichbingrumpig.pathfinder.core.PathBatch;
+import com.ichbingrumpig.pathfinder.core.PathPlanner;
+import com.ichbingrumpig.pathfinder.core.PathRequest;
+import com.ichbingrumpig.pathfinder.core.PathSearch;
+import com.ichbingrumpig.pathfinder.core.SearchHandle;
+import com.ichbingrumpig.pathfinder.core.SearchStatistics;
+import com.ichbingrumpig.pathfinder.core.WaypointBuffer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * One pathfinder with its own grid, worker threads, cache and settings.
+ * Games with several maps, e.g. an overworld and a dungeon or one map per match on a server,
+ * create one instance per map: searches, updates and settings of one instance never affect another.
+ * Initialize each instance by calling {@link PathfinderInstance#initialize(Settings)}.
+ * The static methods of {@link Pathfinder} run on one shared instance.
+ * @see Settings
+ */
+public class PathfinderInstance {
+    /** The log tag for this class */
+    private static final String TAG = "Pathfinder";
+
+    /** The settings for the algorithm */
+    private Settings settings;
+
+    /** Runs the searches */
+    private final GridPathfinder core = new GridPathfinder();
+
+    /**
+     * Initializes the algorithm.
+     * The settings must return three variables:
+     *
+     * @param settings The settings for this implementation.
+     */
+    public void initialize (@NonNull Settings settings) {
+        long startCompile = System.currentTimeMillis();
+        int[][] grid = settings.getGrid();
+        core.setGrid(grid.length, grid[0].length, new SettingsRules(settings));
+        this.settings = settings;
+        Log.d(TAG, "Width and height of pathfinding grid: " + grid.length + "|" + grid[0].length);
+        Log.d(TAG, "Total of " + grid.length * grid[0].length + " pixels.");
+        Log.d(TAG, "Compiling the grid took " + (System.currentTimeMillis() - startCompile) + " Milliseconds");
+        Log.d(TAG, "Pathfinder initialized.");
+    }
+
+    /**
+     * Initializes the algorithm like {@link #initialize(Settings)}, but loads the compiled grid from a file
+     * if it has been stored there from the same grid before, which is much faster for big grids.
+     * Otherwise the grid is compiled and stored in the file for the next start.
+     * The file is only checked against the grid values and the travelling cost rules:
+     * delete it when {@link Settings#isNodeBlocked(int, int)} blocks other values.
+     *
+     * @param settings The settings for this implementation.
+     * @param store The file holding the compiled grid, e.g. in the files directory of the app
+     */
+    public void initialize (@NonNull Settings settings, @NonNull File store) {
+        long startLoad = System.currentTimeMillis();
+        int[][] grid = settings.getGrid();
+        SettingsRules rules = new SettingsRules(settings);
+        long checksum = checksum(grid, rules.travellingCostRules);
+        boolean loaded = false;
+        try {
+            loaded = core.loadGrid(store, checksum, rules);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not load the stored grid from " + store, e);
+        }
+        if (!loaded) {
+            core.setGrid(grid.length, grid[0].length, rules);
+            try {
+                core.saveGrid(store, checksum);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not store the grid in " + store, e);
+            }
+        }
+        this.settings = settings;
+        Log.d(TAG, (loaded ? "Loading" : "Compiling and storing") + " the grid took " + (System.currentTimeMillis() - startLoad) + " Milliseconds");
+        Log.d(TAG, "Pathfinder initialized.");
+    }
+
+    /**
+     * Sets the number of worker threads searches run on and how many searches may wait for a worker.
+     * By default there is one worker per available processor and up to 256 waiting searches.
+     * Searches that are already queued, including those running in time slices, still finish on the former workers.
+     *
+     * @param threads The number of worker threads
+     * @param queueCapacity The maximum number of waiting searches. Further searches are rejected.
+     */
+    public void configureScheduler (int threads, int queueCapacity) {
+        core.configureScheduler(threads, queueCapacity);
+        Log.d(TAG, "Scheduler configured with " + threads + " threads and a queue of " + queueCapacity + " searches.");
+    }
+
+    /**
+     * Selects the algorithm new searches run on.
+     * {@link Pathfinder#ENGINE_JUMP_POINT} expands far fewer nodes on maps that mostly have a travelling factor of 1
+     * and finds paths of the same cost. {@link Pathfinder#ENGINE_HIERARCHICAL} answers long queries on an abstract
+     * graph of the grid first, which is built once and then only patched where the grid changes.
+     * {@link Pathfinder#ENGINE_PARALLEL} searches long queries on one thread per available processor at once.
+     * By default {@link Pathfinder#ENGINE_A_STAR} is used.
+     *
+     * @param engine One of {@link Pathfinder#ENGINE_A_STAR}, {@link Pathfinder#ENGINE_JUMP_POINT}, {@link Pathfinder#ENGINE_HIERARCHICAL}
+     *               and {@link Pathfinder#ENGINE_PARALLEL}
+     */
+    public void setEngine (int engine) {
+        core.setEngine(engine);
+    }
+
+    /**
+     * Selects how new searches estimate the cost from a node to the destination.
+     * With a weight of 1 the cheapest path is found. A weight above 1 makes searches much faster
+     * on open maps, and the path costs at most that many times the cheapest one.
+     * By default {@link Pathfinder#HEURISTIC_OCTILE} is used with a weight of 1.
+     *
+     * @param heuristic One of {@link Pathfinder#HEURISTIC_OCTILE}, {@link Pathfinder#HEURISTIC_EUCLIDEAN}, {@link Pathfinder#HEURISTIC_LANDMARKS}
+     *                  and {@link Pathfinder#HEURISTIC_MANHATTAN}
+     * @param weight The estimate is multiplied with this weight. At least 1
+     */
+    public void setHeuristic (int heuristic, float weight) {
+        long startCompute = System.currentTimeMillis();
+        core.setHeuristic(heuristic, weight);
+        Log.d(TAG, "Heuristic " + heuristic + " with a weight of " + weight + " set in " + (System.currentTimeMillis() - startCompute) + " Milliseconds");
+    }
+
+    /**
+     * Selects the cells a path may step to from each cell, for new searches.
+     * {@link Pathfinder#ENGINE_JUMP_POINT} and {@link Pathfinder#ENGINE_HIERARCHICAL} rely on all eight neighbors,
+     * so they search with {@link Pathfinder#ENGINE_A_STAR} under the other modes. Waypoints assume square cells:
+     * on hexagonal boards every cell of the path is kept, and with four neighbors paths are at most reduced to
+     * their corners. By default {@link Pathfinder#NEIGHBORS_8} is used.
+     *
+     * @param mode One of {@link Pathfinder#NEIGHBORS_8}, {@link Pathfinder#NEIGHBORS_8_NO_CORNER_CUTTING}, {@link Pathfinder#NEIGHBORS_4}
+     *             and {@link Pathfinder#NEIGHBORS_HEX}
+     */
+    public void setNeighborhood (int mode) {
+        long startCompute = System.currentTimeMillis();
+        core.setNeighborhood(mode);
+        Log.d(TAG, "Neighborhood " + mode + " set in " + (System.currentTimeMillis() - startCompute) + " Milliseconds");
+    }
+
+    /**
+     * Caches the paths of recent searches, so searches between the same starting and destination
+     * point are answered without searching again. When the cache is full, the least recently used
+     * path is evicted. When the grid changes, only the paths the change may affect are removed.
+     * By default paths are not cached.
+     *
+     * @param maxPaths The maximum number of cached paths. 0 to turn the cache off
+     */
+    public void setCacheSize (int maxPaths) {
+        core.setCacheSize(maxPaths);
+    }
+
+    /**
+     * @return The number of searches answered from the cache since it was created or the algorithm was initialized
+     */
+    public long getCacheHitCount () {
+        return core.getCacheHitCount();
+    }
+
+    /**
+     * @return The number of searches the cache had no path for since it was created or the algorithm was initialized
+     */
+    public long getCacheMissCount () {
+        return core.getCacheMissCount();
+    }
+
+    /**
+     * Limits how long a search started by {@link #findPath(int, int, int, int, OnPathFoundListener)}
+     * keeps a worker thread busy. Once the limit is reached, the search goes back into the queue
+     * so that short searches are not held up by long ones, and continues where it stopped later on.
+     * Only applies to searches started afterwards. By default searches run without a limit.
+     * Long searches of {@link Pathfinder#ENGINE_PARALLEL} can't be split into time slices and run until they end.
+     *
+     * @param maxExpansions The maximum number of nodes expanded per time slice. 0 for no limit
+     * @param maxNanos The maximum duration of a time slice in nanoseconds. 0 for no limit
+     */
+    public void setTimeSlice (int maxExpansions, long maxNanos) {
+        core.setTimeSlice(maxExpansions, maxNanos);
+    }
+
+    /**
+     * Tells the algorithm that the game grid has changed in the given region.
+     * Only this region of the compiled grid is updated, which is much faster than
+     * calling {@link #initialize(Settings)} again. Running searches that have already
+     * looked at nodes in this region start over.
+     *
+     * @param region The changed region of the game grid. Right and bottom are exclusive.
+     */
+    public void updateCells (@NonNull Rect region) {
+        if (settings == null) throw new IllegalArgumentException("Pathfinder not initialized! PathfinderInstance#initialize must be called before updating the grid.");
+        core.updateCells(region.left, region.top, region.right, region.bottom);
+    }
+
+    /**
+     * Sets the value of one cell in the game grid and updates the algorithm accordingly.
+     * See {@link #updateCells(Rect)}.
+     *
+     * @param x The x-coordinate of the cell
+     * @param y The y-coordinate of the cell
+     * @param value The new grid value of the cell
+     */
+    public void setCell (int x, int y, int value) {
+        if (settings == null) throw new IllegalArgumentException("Pathfinder not initialized! PathfinderInstance#initialize must be called before updating the grid.");
+        settings.getGrid()[x][y] = value;
+        core.updateCells(x, y, x + 1, y + 1);
+    }
+
+    /**
+     * Implementation of the A* pathfinding algorithm.
+     * Findes the optimal path between two points based on a grid of Nodes.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param onPathFoundListener The callback interface, see {@link OnPathFoundListener#onPathFound(Path)}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
+     */
+    public SearchHandle findPath (int startX, int startY, int destX, int destY, @NonNull OnPathFoundListener onPathFoundListener) {
+        return findPath(startX, startY, destX, destY, Pathfinder.PRIORITY_NORMAL, null, onPathFoundListener);
+    }
+
+    /**
+     * Implementation of the A* pathfinding algorithm.
+     * Findes the optimal path between two points based on a grid of Nodes.
+     *
+     * The search waits for a worker thread together with other searches, ordered by priority.
+     * If a search for the same requester has not finished yet, it is cancelled
+     * and its listener is never called.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param priority One of {@link Pathfinder#PRIORITY_HIGH}, {@link Pathfinder#PRIORITY_NORMAL} and {@link Pathfinder#PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
+     * @param onPathFoundListener The callback interface, see {@link OnPathFoundListener#onPathFound(Path)}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
+     */
+    public SearchHandle findPath (int startX, int startY, int destX, int destY, int priority, Object requester, @NonNull OnPathFoundListener onPathFoundListener) {
+        return findPath(startX, startY, destX, destY, 1, priority, requester, onPathFoundListener);
+    }
+
+    /**
+     * Finds a path like {@link #findPath(int, int, int, int, int, Object, OnPathFoundListener)} for a unit larger
+     * than one cell, e.g. a siege engine covering 3x3 cells. The unit is placed by its top-left cell: the start,
+     * the destination and the path are where that cell goes. The path only leads where the whole unit fits,
+     * so it needs no further checks.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param agentSize The width and height of the unit in cells, from 1 to {@link Pathfinder#MAX_AGENT_SIZE}
+     * @param priority One of {@link Pathfinder#PRIORITY_HIGH}, {@link Pathfinder#PRIORITY_NORMAL} and {@link Pathfinder#PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
+     * @param onPathFoundListener The callback interface, see {@link OnPathFoundListener#onPathFound(Path)}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
+     */
+    public SearchHandle findPath (int startX, int startY, int destX, int destY, int agentSize, int priority, Object requester, @NonNull OnPathFoundListener onPathFoundListener) {
+        if (settings == null) throw new IllegalArgumentException("Pathfinder not initialized! PathfinderInstance#initialize must be called before finding an algorithm.");
+        SearchHandle search = core.findPath(startX, startY, destX, destY, agentSize, priority, requester, toPath(onPathFoundListener));
+        if (search == null) Log.w(TAG, "Too many searches waiting. Rejecting search.");
+        return search;
+    }
+
+    /**
+     * Finds a path like {@link #findPath(int, int, int, int, int, Object, OnPathFoundListener)}, but delivers
+     * a quick approximate path first, so the unit can start moving, and the final path once the search has refined it.
+     * The approximate path is found by a search weighted towards the destination and costs at most 3 times as much.
+     * Pass the executor of the thread that moves the units, e.g. {@link Pathfinder#MAIN_THREAD} or the game thread,
+     * so the paths arrive there without another handoff.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param priority One of {@link Pathfinder#PRIORITY_HIGH}, {@link Pathfinder#PRIORITY_NORMAL} and {@link Pathfinder#PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
+     * @param executor Runs the calls of the listener in order. Null to call it on the worker thread
+     * @param onPathProgressListener The callback interface, see {@link OnPathProgressListener}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
+     */
+    public SearchHandle findPathProgressively (int startX, int startY, int destX, int destY, int priority, Object requester,
+                                               Executor executor, @NonNull OnPathProgressListener onPathProgressListener) {
+        if (settings == null) throw new IllegalArgumentException("Pathfinder not initialized! PathfinderInstance#initialize must be called before finding an algorithm.");
+        SearchHandle search = core.findPathProgressively(startX, startY, destX, destY, priority, requester, executor, toPaths(onPathProgressListener));
+        if (search == null) Log.w(TAG, "Too many searches waiting. Rejecting search.");
+        return search;
+    }
+
+    /**
+     * Finds a path like {@link #findPath(int, int, int, int, int, Object, OnPathFoundListener)}, but writes
+     * its waypoints into a reusable buffer from the start to the destination instead of building a {@link Path}.
+     * Keep one buffer per unit: following paths then allocates nothing and needs no {@link PathUtils#reversePath(Path)}.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param priority One of {@link Pathfinder#PRIORITY_HIGH}, {@link Pathfinder#PRIORITY_NORMAL} and {@link Pathfinder#PRIORITY_LOW}
+     * @param requester The object the path is searched for, e.g. a unit. May be null.
+     * @param waypoints One of {@link Pathfinder#WAYPOINTS_ALL_CELLS}, {@link Pathfinder#WAYPOINTS_CORNERS} and {@link Pathfinder#WAYPOINTS_LINE_OF_SIGHT}
+     * @param buffer Receives the waypoints. Must not be used until the listener has been invoked
+     * @param onWaypointsFoundListener The callback interface, see {@link OnWaypointsFoundListener#onWaypointsFound(WaypointBuffer)}
+     * @return A handle to cancel the search or null if too many searches are waiting and this one was rejected
+     */
+    public SearchHandle findPath (int startX, int startY, int destX, int destY, int priority, Object requester,
+                                         int waypoints, @NonNull WaypointBuffer buffer, @NonNull OnWaypointsFoundListener onWaypointsFoundListener) {
+        if (settings == null) throw new IllegalArgumentException("Pathfinder not initialized! PathfinderInstance#initialize must be called before finding an algorithm.");
+        SearchHandle search = core.findPath(startX, startY, destX, destY, priority, requester, waypoints, buffer, onWaypointsFoundListener);
+        if (search == null) Log.w(TAG, "Too many searches waiting. Rejecting search.");
+        return search;
+    }
+
+    /**
+     * Reports the metrics of every search started afterwards: its times, the nodes it has expanded,
+     * the size of its open set, its path length and result. Register a {@link SearchStatistics}
+     * to add them up, e.g. for a dashboard. As long as no listener is registered, nothing is measured.
+     *
+     * @param onSearchFinishedListener Invoked on the thread of the search once it has finished
+     */
+    public void addOnSearchFinishedListener (@NonNull OnSearchFinishedListener onSearchFinishedListener) {
+        core.addOnSearchFinishedListener(onSearchFinishedListener);
+    }
+
+    /**
+     * @param onSearchFinishedListener A listener added by {@link #addOnSearchFinishedListener(OnSearchFinishedListener)}
+     */
+    public void removeOnSearchFinishedListener (@NonNull OnSearchFinishedListener onSearchFinishedListener) {
+        core.removeOnSearchFinishedListener(onSearchFinishedListener);
+    }
+
+    /**
+     * Tells in constant time if a path between two points is possible at all.
+     * Searches between points that can't reach each other fail this way without searching.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @return False if no path is possible
+     */
+    public boolean isReachable (int startX, int startY, int destX, int destY) {
+        if (settings == null) throw new IllegalArgumentException("Pathfinder not initialized! PathfinderInstance#initialize must be called before checking reachability.");
+        return core.isReachable(startX, startY, destX, destY);
+    }
+
+    /**
+     * Finds the paths of many queries together on the worker threads, which is much cheaper than
+     * searching for each one on its own, e.g. when a whole squad is ordered to the same place.
+     * The paths are the node indices (y * width + x) from the start to the destination, see {@link PathRequest#getPath()}.
+     *
+     * @param requests The queries. Must not be changed until the batch has completed
+     * @param priority One of {@link Pathfinder#PRIORITY_HIGH}, {@link Pathfinder#PRIORITY_NORMAL} and {@link Pathfinder#PRIORITY_LOW}
+     * @param onBatchCompletedListener Invoked on a worker thread once all queries have been answered. May be null
+     * @return The batch, to wait for or cancel
+     */
+    public PathBatch findPaths (@NonNull List<PathRequest> requests, int priority, OnBatchCompletedListener onBatchCompletedListener) {
+        if (settings == null) throw new IllegalArgumentException("Pathfinder not initialized! PathfinderInstance#initialize must be called before finding an algorithm.");
+        if (Log.isLoggable(TAG, Log.DEBUG)) Log.d(TAG, "Finding " + requests.size() + " paths in one batch.");
+        return core.findPaths(requests, priority, onBatchCompletedListener);
+    }
+
+    /**
+     * Creates a search that is run by the caller instead of a worker thread.
+     * Call {@link PathSearch#resume(int, long)} with a budget, e.g. once per frame from the game loop,
+     * until it returns true. The listener is invoked from within the last call.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @param onPathFoundListener The callback interface, see {@link OnPathFoundListener#onPathFound(Path)}
+     * @return The search, not started yet
+     */
+    public PathSearch startSearch (int startX, int startY, int destX, int destY, @NonNull OnPathFoundListener onPathFoundListener) {
+        if (settings == null) throw new IllegalArgumentException("Pathfinder not initialized! PathfinderInstance#initialize must be called before finding an algorithm.");
+        return core.startSearch(startX, startY, destX, destY, toPath(onPathFoundListener));
+    }
+
+    /**
+     * Creates a planner for one unit that keeps its search between paths and only repairs it when cells change,
+     * the unit moves on or its target moves, e.g. for units chasing a moving target. Call {@link PathPlanner#plan()}
+     * on the calling thread whenever the unit needs its path.
+     *
+     * @param startX The x-coordinate of the starting point
+     * @param startY The y-coordinate of the starting point
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @return The planner. Release it via {@link PathPlanner#release()} once the unit no longer needs it
+     */
+    public PathPlanner createPlanner (int startX, int startY, int destX, int destY) {
+        if (settings == null) throw new IllegalArgumentException("Pathfinder not initialized! PathfinderInstance#initialize must be called before planning a path.");
+        return core.createPlanner(startX, startY, destX, destY);
+    }
+
+    /**
+     * Computes the cost and direction of travelling from every node to the destination in one search.
+     * Many units heading to the same destination can follow the flow field instead of each one
+     * searching for its own path. The search runs on the calling thread.
+     *
+     * @param destX The x-coordinate of the destination point
+     * @param destY The y-coordinate of the destination point
+     * @return The flow field towards the destination
+     */
+    public FlowField createFlowField (int destX, int destY) {
+        return createFlowField(new int[] {destX}, new int[] {destY});
+    }
+
+    /**
+     * Computes the cost and direction of travelling from every node to the nearest of the targets in one search.
+     * See {@link #createFlowField(int, int)}.
+     *
+     * @param targetsX The x-coordinates of the targets
+     * @param targetsY The y-coordinates of the targets, in the same order
+     * @return The flow field towards the nearest target
+     */
+    public FlowField createFlowField (@NonNull int[] targetsX, @NonNull int[] targetsY) {
+        if (settings == null) throw new IllegalArgumentException("Pathfinder not initialized! PathfinderInstance#initialize must be called before creating a flow field.");
+        long startCompute = System.currentTimeMillis();
+        FlowField field = core.createFlowField(targetsX, targetsY);
+        Log.d(TAG, "Flow field to " + targetsX.length + " targets took " + (System.currentTimeMillis() - startCompute) + " Milliseconds");
+        return field;
+    }
+
+    /**
+     * Stops the worker threads of this instance once all queued searches have finished.
+     * Call it when the map is no longer needed. The instance must not be used afterwards.
+     */
+    public void shutdown () {
+        core.shutdown();
+    }
+
+    /**
+     * @param grid The grid values
+     * @param travellingCostRules The travelling cost rules. May be null
+     * @return A checksum (FNV-1a) of the grid and the rules, which changes with any of their values
+     */
+    private static long checksum (int[][] grid, SparseArray<Float> travellingCostRules) {
+        long checksum = 0xCBF29CE484222325L;
+        checksum = (checksum ^ grid.length) * 0x100000001B3L;
+        checksum = (checksum ^ grid[0].length) * 0x100000001B3L;
+        for (int[] column : grid) {
+            for (int value : column) {
+                checksum = (checksum ^ value) * 0x100000001B3L;
+            }
+        }
+        if (travellingCostRules != null) {
+            for (int i = 0; i < travellingCostRules.size(); i++) {
+                checksum = (checksum ^ travellingCostRules.keyAt(i)) * 0x100000001B3L;
+                checksum = (checksum ^ Float.floatToIntBits(travellingCostRules.valueAt(i))) * 0x100000001B3L;
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Wraps a listener so it receives the waypoints of the core as a {@link Path}.
+     * The path runs from the destination back to the start.
+     *
+     * @param onPathFoundListener The listener of the caller
+     * @return The listener for the core
+     */
+    private OnPathComputedListener toPath (final OnPathFoundListener onPathFoundListener) {
+        // Searches only pay for logging while it is turned on, e.g. via "adb shell setprop log.tag.Pathfinder DEBUG"
+        final boolean logging = Log.isLoggable(TAG, Log.DEBUG);
+        final long startStart = logging ? System.currentTimeMillis() : 0;
+        final int width = settings.getGrid().length;
+        return new OnPathComputedListener() {
+            @Override
+            public void onPathComputed(int[] nodes) {
+                if (nodes == null) {
+                    if (logging) Log.d(TAG, "No Path possible!");
+                    onPathFoundListener.onPathFound(null);
+                    return;
+                }
+                if (logging) {
+                    Log.d(TAG, "Path found! Building and returning...");
+                    Log.d(TAG, "Complete algorithm took " + (System.currentTimeMillis() - startStart) + " Miliseconds");
+                }
+                onPathFoundListener.onPathFound(buildPath(nodes, width));
+            }
+        };
+    }
+
+    /**
+     * Wraps a listener so it receives the approximate and the final waypoints of the core as {@link Path}s.
+     * The paths run from the destination back to the start.
+     *
+     * @param onPathProgressListener The listener of the caller
+     * @return The listener for the core
+     */
+    private OnPathRefinedListener toPaths (final OnPathProgressListener onPathProgressListener) {
+        final OnPathComputedListener onPathComputedListener = toPath(onPathProgressListener);
+        final int width = settings.getGrid().length;
+        return new OnPathRefinedListener() {
+            @Override
+            public void onApproximatePathComputed(int[] nodes) {
+                onPathProgressListener.onApproximatePathFound(buildPath(nodes, width));
+            }
+
+            @Override
+            public void onPathComputed(int[] nodes) {
+                onPathComputedListener.onPathComputed(nodes);
+            }
+        };
+    }
+
+    /**
+     * @param nodes The node indices of the path from the start to the destination
+     * @param width The width of the grid
+     * @return The path from the destination back to the start
+     */
+    private static Path buildPath (int[] nodes, int width) {
+        Path path = new Path();
+        int last = nodes.length - 1;
+        path.moveTo(nodes[last] % width, nodes[last] / width);
+        for (int i = last - 1; i >= 0; i--) {
+            path.lineTo(nodes[i] % width, nodes[i] / width);
+        }
+        return path;
+    }
+
+    /**
+     * The cell rules of the core, read from the {@link Settings}.
+     * The travelling cost rules are read once, when the algorithm is initialized.
+     */
+    private static class SettingsRules implements CellRules {
+
+        /** The settings for the algorithm */
+        private final Settings settings;
+
+        /** The travelling cost rules the algorithm was initialized with. May be null */
+        private final SparseArray<Float> travellingCostRules;
+
+        SettingsRules(Settings settings) {
+            this.settings = settings;
+            travellingCostRules = settings.setTravellingCostRules();
+        }
+
+        @Override
+        public boolean isBlocked(int x, int y) {
+            return settings.isNodeBlocked(x, y);
+        }
+
+        @Override
+        public float getTravellingFactor(int x, int y) {
+            return travellingCostRules == null ? 1f : travellingCostRules.get(settings.getGrid()[x][y], 1f);
+        }
+    }
+}
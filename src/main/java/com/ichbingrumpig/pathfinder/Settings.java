@@ -8,7 +8,7 @@ import android.util.SparseArray;
  * via this interface.
  *
  * {@link #getGrid()}:
- * The algorithm needs the game defining grid to create the {@link Node} array.
+ * The algorithm needs the game defining grid to create its Nodes.
  * Override {@link #getGrid()} to return this game grid.
  *
  * {@link #setTravellingCostRules()}: